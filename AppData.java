@@ -0,0 +1,28 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Location of the files the application keeps between runs. Defaults to
+ * ~/.napuli-oven and can be moved with -Dnapuli.data.dir=...
+ */
+final class AppData {
+    private AppData() {
+    }
+
+    static Path dir() throws IOException {
+        String configured = System.getProperty("napuli.data.dir");
+        Path dir = configured != null
+            ? Paths.get(configured)
+            : Paths.get(System.getProperty("user.home"), ".napuli-oven");
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    static Path file(String name) throws IOException {
+        return dir().resolve(name);
+    }
+}
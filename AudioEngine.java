@@ -0,0 +1,210 @@
+package com.mycompany.pizzaordersystem;
+
+import javax.sound.sampled.*;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small software mixer for UI sounds. Sound assets are decoded once into
+ * direct PCM buffers, and a dedicated thread mixes up to MAX_VOICES
+ * overlapping voices into a single SourceDataLine. play() only enqueues a
+ * trigger, so it never blocks the EDT; triggers beyond the queue capacity
+ * are dropped rather than delayed.
+ */
+final class AudioEngine {
+    enum Sound {
+        CLICK("click.wav", 1200, 35),
+        ADD("add.wav", 880, 120),
+        CHECKOUT("checkout.wav", 660, 400);
+
+        final String resource;
+        // Fallback tone used when the asset is missing
+        final int toneHz;
+        final int toneMs;
+
+        Sound(String resource, int toneHz, int toneMs) {
+            this.resource = resource;
+            this.toneHz = toneHz;
+            this.toneMs = toneMs;
+        }
+    }
+
+    static final AudioFormat FORMAT = new AudioFormat(44100, 16, 1, true, false);
+    private static final int MAX_VOICES = 8;
+    private static final int QUEUE_CAPACITY = 32;
+    // ~11.6 ms per mix chunk at 44.1 kHz
+    private static final int CHUNK_FRAMES = 512;
+    private static final int LINE_BUFFER_FRAMES = CHUNK_FRAMES * 4;
+
+    private final ArrayBlockingQueue<Sound> triggers = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ShortBuffer[] samples = new ShortBuffer[Sound.values().length];
+    private final ShortBuffer[] voices = new ShortBuffer[MAX_VOICES];
+    private final int[] mix = new int[CHUNK_FRAMES];
+    private final byte[] out = new byte[CHUNK_FRAMES * 2];
+    private final Thread mixerThread;
+    private volatile boolean running = true;
+    private volatile boolean ready;
+
+    private AudioEngine() {
+        mixerThread = new Thread(this::run, "audio-mixer");
+        mixerThread.setDaemon(true);
+        mixerThread.setPriority(Thread.MAX_PRIORITY);
+    }
+
+    /** Starts the mixer; decoding and line acquisition happen on the mixer thread. */
+    static AudioEngine start() {
+        AudioEngine engine = new AudioEngine();
+        engine.mixerThread.start();
+        return engine;
+    }
+
+    /** Non-blocking trigger, safe to call from any thread. */
+    void play(Sound sound) {
+        if (ready) {
+            triggers.offer(sound);
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        mixerThread.interrupt();
+    }
+
+    private void run() {
+        for (Sound sound : Sound.values()) {
+            samples[sound.ordinal()] = decode(sound);
+        }
+        SourceDataLine line;
+        try {
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, LINE_BUFFER_FRAMES * FORMAT.getFrameSize());
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            // No audio device: stay silent rather than failing the UI
+            System.err.println("Audio disabled: " + e.getMessage());
+            return;
+        }
+        ready = true;
+        try {
+            while (running) {
+                if (activeVoices() == 0) {
+                    // Idle: wait for a trigger instead of streaming silence
+                    Sound sound = triggers.poll(100, TimeUnit.MILLISECONDS);
+                    if (sound == null) {
+                        continue;
+                    }
+                    startVoice(sound);
+                }
+                Sound sound;
+                while ((sound = triggers.poll()) != null) {
+                    startVoice(sound);
+                }
+                mixChunk();
+                line.write(out, 0, out.length);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ready = false;
+            line.drain();
+            line.close();
+        }
+    }
+
+    private int activeVoices() {
+        int active = 0;
+        for (ShortBuffer voice : voices) {
+            if (voice != null) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    private void startVoice(Sound sound) {
+        ShortBuffer pcm = samples[sound.ordinal()];
+        int slot = 0;
+        int oldestRemaining = Integer.MAX_VALUE;
+        for (int i = 0; i < voices.length; i++) {
+            if (voices[i] == null) {
+                slot = i;
+                oldestRemaining = -1;
+                break;
+            }
+            // Steal the voice closest to finishing when all are busy
+            if (voices[i].remaining() < oldestRemaining) {
+                oldestRemaining = voices[i].remaining();
+                slot = i;
+            }
+        }
+        voices[slot] = pcm.duplicate();
+    }
+
+    private void mixChunk() {
+        Arrays.fill(mix, 0);
+        for (int v = 0; v < voices.length; v++) {
+            ShortBuffer voice = voices[v];
+            if (voice == null) {
+                continue;
+            }
+            int n = Math.min(CHUNK_FRAMES, voice.remaining());
+            for (int i = 0; i < n; i++) {
+                mix[i] += voice.get();
+            }
+            if (!voice.hasRemaining()) {
+                voices[v] = null;
+            }
+        }
+        for (int i = 0; i < CHUNK_FRAMES; i++) {
+            int s = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+            out[2 * i] = (byte) s;
+            out[2 * i + 1] = (byte) (s >> 8);
+        }
+    }
+
+    private static ShortBuffer decode(Sound sound) {
+        try (InputStream is = AudioEngine.class.getResourceAsStream("/sounds/" + sound.resource)) {
+            if (is != null) {
+                AudioInputStream source = AudioSystem.getAudioInputStream(new BufferedInputStream(is));
+                AudioInputStream pcm = AudioSystem.getAudioInputStream(FORMAT, source);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] chunk = new byte[8192];
+                int read;
+                while ((read = pcm.read(chunk)) > 0) {
+                    bytes.write(chunk, 0, read);
+                }
+                return toDirect(bytes.toByteArray());
+            }
+        } catch (IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+            System.err.println("Could not decode " + sound.resource + ": " + e.getMessage());
+        }
+        return tone(sound.toneHz, sound.toneMs);
+    }
+
+    // Short sine blip with a linear fade-out, used when no asset is bundled
+    private static ShortBuffer tone(int hz, int ms) {
+        int frames = (int) (FORMAT.getSampleRate() * ms / 1000);
+        byte[] pcm = new byte[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            double envelope = 1.0 - (double) i / frames;
+            short s = (short) (Math.sin(2 * Math.PI * hz * i / FORMAT.getSampleRate()) * envelope * 8000);
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        return toDirect(pcm);
+    }
+
+    private static ShortBuffer toDirect(byte[] pcm) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(pcm).flip();
+        return buffer.asShortBuffer().asReadOnlyBuffer();
+    }
+}
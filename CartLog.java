@@ -0,0 +1,255 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * History of cart edits as fixed-width commands. Each command is packed
+ * into one long (op, item id, quantity, unit price in baisa) and kept in a
+ * ring buffer, so undo and redo just move a cursor and re-apply one slot.
+ * Edits that belong together, like the removals of a cleared cart, are
+ * linked and undone as one step. Once MAX_COMMANDS is reached the oldest
+ * commands are overwritten.
+ *
+ * The log exports to a small binary file that replay() applies to any
+ * Cart without a UI; see CartReplay.
+ */
+final class CartLog {
+    interface Cart {
+        void add(String item, int quantity, double unitPrice);
+
+        void remove(String item, int quantity, double unitPrice);
+    }
+
+    /** Plain in-memory cart with the same arithmetic as the order screen. */
+    static final class MapCart implements Cart {
+        final Map<String, Integer> items = new LinkedHashMap<>();
+        double total;
+
+        @Override
+        public void add(String item, int quantity, double unitPrice) {
+            items.merge(item, quantity, Integer::sum);
+            total += unitPrice * quantity;
+        }
+
+        @Override
+        public void remove(String item, int quantity, double unitPrice) {
+            int left = items.getOrDefault(item, 0) - quantity;
+            if (left <= 0) {
+                items.remove(item);
+            } else {
+                items.put(item, left);
+            }
+            total -= unitPrice * quantity;
+        }
+    }
+
+    static final int ADD = 1;
+    static final int REMOVE = 2;
+
+    private static final int MAGIC = 0x4E50434C; // "NPCL"
+    private static final int VERSION = 1;
+    private static final int MAX_COMMANDS = 1 << 20;
+
+    // Layout: op(4) | linked(1) | item(16) | quantity(16) | price in baisa(27)
+    private static final int OP_SHIFT = 60;
+    private static final int LINK_SHIFT = 59;
+    private static final int ITEM_SHIFT = 43;
+    private static final int QTY_SHIFT = 27;
+    private static final long ITEM_MASK = 0xFFFFL;
+    private static final long QTY_MASK = 0xFFFFL;
+    private static final long PRICE_MASK = (1L << 27) - 1;
+
+    private final Cart cart;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private long[] commands = new long[256];
+    // Absolute sequence numbers; slots are seq % capacity
+    private long first;
+    private long cursor;
+    private long end;
+    private boolean grouping;
+
+    CartLog(Cart cart) {
+        this.cart = cart;
+    }
+
+    void add(String item, int quantity, double unitPrice) {
+        record(encode(ADD, item, quantity, unitPrice));
+    }
+
+    void remove(String item, int quantity, double unitPrice) {
+        record(encode(REMOVE, item, quantity, unitPrice));
+    }
+
+    /** Commands recorded until endGroup() are undone and redone together. */
+    void beginGroup() {
+        grouping = true;
+    }
+
+    void endGroup() {
+        grouping = false;
+        if (cursor > first) {
+            // Unlink the last command so the group ends there
+            int slot = slot(cursor - 1);
+            commands[slot] &= ~(1L << LINK_SHIFT);
+        }
+    }
+
+    /** Forgets every command, e.g. once the cart has been ordered; the cart itself is left alone. */
+    void clear() {
+        first = cursor;
+        end = cursor;
+        grouping = false;
+    }
+
+    boolean canUndo() {
+        return cursor > first;
+    }
+
+    boolean canRedo() {
+        return cursor < end;
+    }
+
+    boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        do {
+            cursor--;
+            invert(commands[slot(cursor)]);
+        } while (cursor > first && isLinked(commands[slot(cursor - 1)]));
+        return true;
+    }
+
+    boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        long command;
+        do {
+            command = commands[slot(cursor)];
+            apply(command, cart, names);
+            cursor++;
+        } while (isLinked(command) && cursor < end);
+        return true;
+    }
+
+    int size() {
+        return (int) (cursor - first);
+    }
+
+    /** Writes the applied commands (not the redo tail) with their item names. */
+    void export(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            out.writeInt(size());
+            for (long seq = first; seq < cursor; seq++) {
+                out.writeLong(commands[slot(seq)]);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Applies an exported log to the cart; returns the number of commands replayed. */
+    static int replay(Path file, Cart cart) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file.getFileName() + " is not a cart log");
+            }
+            int nameCount = in.readInt();
+            List<String> names = new ArrayList<>(nameCount);
+            for (int i = 0; i < nameCount; i++) {
+                names.add(in.readUTF());
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                apply(in.readLong(), cart, names);
+            }
+            return count;
+        }
+    }
+
+    private void record(long command) {
+        if (grouping) {
+            command |= 1L << LINK_SHIFT;
+        }
+        apply(command, cart, names);
+        // A new edit discards whatever could have been redone
+        end = cursor;
+        if (end - first == commands.length) {
+            if (commands.length < MAX_COMMANDS) {
+                grow();
+            } else {
+                first++;
+            }
+        }
+        commands[slot(end)] = command;
+        cursor = ++end;
+    }
+
+    private void grow() {
+        long[] bigger = new long[commands.length * 2];
+        for (long seq = first; seq < end; seq++) {
+            bigger[(int) (seq & (bigger.length - 1))] = commands[slot(seq)];
+        }
+        commands = bigger;
+    }
+
+    private int slot(long seq) {
+        return (int) (seq & (commands.length - 1));
+    }
+
+    private long encode(int op, String item, int quantity, double unitPrice) {
+        Integer id = ids.get(item);
+        if (id == null) {
+            if (names.size() > ITEM_MASK) {
+                throw new IllegalStateException("Too many distinct cart items");
+            }
+            id = names.size();
+            names.add(item);
+            ids.put(item, id);
+        }
+        long baisa = Math.round(unitPrice * 1000);
+        if (quantity <= 0 || quantity > QTY_MASK || baisa < 0 || baisa > PRICE_MASK) {
+            throw new IllegalArgumentException("Cart edit out of range: " + quantity + " x " + unitPrice);
+        }
+        return (long) op << OP_SHIFT | (long) id << ITEM_SHIFT | (long) quantity << QTY_SHIFT | baisa;
+    }
+
+    private void invert(long command) {
+        int op = (int) (command >>> OP_SHIFT);
+        apply((command & ~(0xFL << OP_SHIFT)) | (long) (op == ADD ? REMOVE : ADD) << OP_SHIFT, cart, names);
+    }
+
+    private static boolean isLinked(long command) {
+        return (command & (1L << LINK_SHIFT)) != 0;
+    }
+
+    private static void apply(long command, Cart cart, List<String> names) {
+        int op = (int) (command >>> OP_SHIFT);
+        String item = names.get((int) ((command >>> ITEM_SHIFT) & ITEM_MASK));
+        int quantity = (int) ((command >>> QTY_SHIFT) & QTY_MASK);
+        double unitPrice = (command & PRICE_MASK) / 1000.0;
+        if (op == ADD) {
+            cart.add(item, quantity, unitPrice);
+        } else if (op == REMOVE) {
+            cart.remove(item, quantity, unitPrice);
+        } else {
+            throw new IllegalArgumentException("Unknown cart command " + op);
+        }
+    }
+}
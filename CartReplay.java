@@ -0,0 +1,41 @@
+package com.mycompany.pizzaordersystem;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Replays an exported cart log without the UI, as fast as possible, and
+ * prints the resulting cart plus replay throughput.
+ *
+ * Usage: java com.mycompany.pizzaordersystem.CartReplay session.npcl [rounds]
+ */
+final class CartReplay {
+    private CartReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: CartReplay <cart log> [rounds]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        CartLog.MapCart cart = null;
+        long commands = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            cart = new CartLog.MapCart();
+            commands += CartLog.replay(file, cart);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        for (Map.Entry<String, Integer> entry : cart.items.entrySet()) {
+            System.out.println(entry.getKey() + " x" + entry.getValue());
+        }
+        System.out.printf("TOTAL: OMR %.3f%n", cart.total);
+        System.out.printf("%d commands in %.1f ms (%.0f commands/s)%n",
+            commands, elapsed / 1e6, commands / (elapsed / 1e9));
+    }
+}
@@ -0,0 +1,662 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shares one cart between counter terminals through a common directory.
+ * Each terminal appends to its own log file there and tails everyone
+ * else's. State is made of CRDTs, so applying entries in any order, more
+ * than once or after a restart always converges:
+ *
+ *  - cart lines are PN-counters: every terminal publishes its own running
+ *    totals of added and removed units, and merging keeps the maximum;
+ *  - line details (price, menu item, customizations) and customer details
+ *    are last-writer-wins registers ordered by (timestamp, terminal);
+ *  - placed orders are a grow-only set.
+ *
+ * Checkout is coordinated with claims. A terminal about to order the cart
+ * publishes a claim on it (the cart's generation is the number of orders
+ * placed so far), waits CLAIM_SETTLE_MILLIS for competing claims to arrive
+ * and goes ahead only if its claim is the earliest one still standing.
+ * A failed checkout withdraws its claim; a placed order starts the next
+ * generation. Terminals whose logs reach each other more slowly than the
+ * settle time can still both win, so raise -Dnapuli.replica.claimSettleMillis
+ * on slow shared directories.
+ *
+ * Once its log passes COMPACT_BYTES a terminal replaces it with a snapshot
+ * of what it contributed: its latest totals and registers, its orders and
+ * its standing claim. The snapshot goes under the next epoch's name
+ * ("terminal~2.crdt") and the old log is deleted, so tailers read the new
+ * file from the start and, entries being idempotent, simply apply it
+ * again. A terminal that never starts again keeps its last log as it is.
+ */
+final class CartReplicator {
+    interface Listener {
+        /**
+         * A remote entry changed a line; called on the replication thread.
+         * Read the current quantity() when handling it, not the value at
+         * notification time, so local edits made meanwhile are not lost.
+         */
+        void lineChanged(String line);
+
+        /** A remote entry won a customer-details register. */
+        void customerChanged(String field);
+
+        /** Another terminal placed an order; not called for orders placed before start(). */
+        default void orderPlaced(String id, String summary) {
+        }
+    }
+
+    static final class LineDetails {
+        final double unitPrice;
+        final String item;
+        final List<String> customizations;
+
+        LineDetails(double unitPrice, String item, List<String> customizations) {
+            this.unitPrice = unitPrice;
+            this.item = item;
+            this.customizations = customizations;
+        }
+    }
+
+    private static final class Register<T> {
+        final long timestamp;
+        final String replica;
+        final T value;
+
+        Register(long timestamp, String replica, T value) {
+            this.timestamp = timestamp;
+            this.replica = replica;
+            this.value = value;
+        }
+
+        boolean beats(Register<?> other) {
+            return other == null || timestamp > other.timestamp
+                || (timestamp == other.timestamp && replica.compareTo(other.replica) > 0);
+        }
+    }
+
+    // Per-terminal totals of one line: replica -> {added, removed}
+    private static final class PNCounter {
+        final Map<String, long[]> totals = new HashMap<>();
+
+        long value() {
+            long value = 0;
+            for (long[] pn : totals.values()) {
+                value += pn[0] - pn[1];
+            }
+            return value;
+        }
+
+        // Returns true when the entry moved this terminal's totals forward
+        boolean merge(String replica, long added, long removed) {
+            long[] pn = totals.computeIfAbsent(replica, r -> new long[2]);
+            boolean changed = added > pn[0] || removed > pn[1];
+            pn[0] = Math.max(pn[0], added);
+            pn[1] = Math.max(pn[1], removed);
+            return changed;
+        }
+    }
+
+    private static final class Claim {
+        final long generation;
+        final long timestamp;
+        final String replica;
+        final long orderId;
+        boolean withdrawn;
+
+        Claim(long generation, long timestamp, String replica, long orderId) {
+            this.generation = generation;
+            this.timestamp = timestamp;
+            this.replica = replica;
+            this.orderId = orderId;
+        }
+
+        boolean before(Claim other) {
+            if (timestamp != other.timestamp) {
+                return timestamp < other.timestamp;
+            }
+            int byReplica = replica.compareTo(other.replica);
+            return byReplica != 0 ? byReplica < 0 : orderId < other.orderId;
+        }
+    }
+
+    private static final String SUFFIX = ".crdt";
+    private static final char EPOCH = '~';
+    private static final long COMPACT_BYTES = Long.getLong("napuli.replica.compactBytes", 1L << 20);
+    private static final long POLL_MILLIS = 5;
+    private static final long CLAIM_SETTLE_MILLIS = Long.getLong("napuli.replica.claimSettleMillis", 50L);
+    // Claims older than this belong to a terminal that died mid-checkout
+    private static final long CLAIM_EXPIRY_MILLIS = 60_000;
+
+    private final Path dir;
+    private final String replica;
+    private Path ownLog;
+    private int epoch;
+    private long ownBytes;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, PNCounter> lines = new TreeMap<>();
+    private final Map<String, Register<LineDetails>> details = new HashMap<>();
+    private final Map<String, Register<String>> customer = new TreeMap<>();
+    private final Map<String, String> orders = new TreeMap<>();
+    // "replica:orderId" -> claim, for the current and recent generations
+    private final Map<String, Claim> claims = new HashMap<>();
+    private final Map<Path, Long> offsets = new HashMap<>();
+    // Bytes of an entry still being appended; decoded once its newline arrives
+    private final Map<Path, ByteArrayOutputStream> partial = new HashMap<>();
+    private long clock;
+    private Thread tailer;
+    private volatile boolean running;
+    private boolean caughtUp;
+
+    CartReplicator(Path dir, String replica) throws IOException {
+        if (replica.isEmpty() || replica.contains("/") || replica.contains(":") || replica.indexOf(EPOCH) >= 0
+                || !replica.equals(clean(replica))) {
+            throw new IllegalArgumentException("Bad terminal name '" + replica + "'");
+        }
+        this.dir = dir;
+        this.replica = replica;
+        Files.createDirectories(dir);
+        // The newest epoch is the live log; an older one is left only by a crash mid-compaction
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path log : stream) {
+                if (sourceOf(log).equals(replica)) {
+                    epoch = Math.max(epoch, epochOf(log));
+                }
+            }
+        }
+        this.ownLog = logFile(epoch);
+        this.ownBytes = Files.exists(ownLog) ? Files.size(ownLog) : 0;
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    String replica() {
+        return replica;
+    }
+
+    /** Reads every existing log, then keeps tailing them in the background. */
+    synchronized void start() throws IOException {
+        if (tailer != null) {
+            return;
+        }
+        poll();
+        caughtUp = true;
+        if (ownBytes > COMPACT_BYTES) {
+            compact();
+        }
+        running = true;
+        tailer = new Thread(this::tailLoop, "cart-replication");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    synchronized void shutdown() {
+        running = false;
+        if (tailer != null) {
+            tailer.interrupt();
+            tailer = null;
+        }
+    }
+
+    /**
+     * Replaces this terminal's log with a snapshot of its own entries under
+     * the next epoch's name. The tailer calls it once the log passes
+     * COMPACT_BYTES.
+     */
+    synchronized void compact() throws IOException {
+        StringBuilder snapshot = new StringBuilder();
+        for (Map.Entry<String, PNCounter> e : lines.entrySet()) {
+            long[] own = e.getValue().totals.get(replica);
+            if (own != null) {
+                appendTotals(snapshot, e.getKey(), own);
+            }
+        }
+        for (Map.Entry<String, Register<LineDetails>> e : details.entrySet()) {
+            if (e.getValue().replica.equals(replica)) {
+                appendDetails(snapshot, e.getKey(), e.getValue());
+            }
+        }
+        for (Map.Entry<String, Register<String>> e : customer.entrySet()) {
+            if (e.getValue().replica.equals(replica)) {
+                appendCustomer(snapshot, e.getKey(), e.getValue());
+            }
+        }
+        // Orders before claims: a claim only counts while its generation is still open
+        for (Map.Entry<String, String> e : orders.entrySet()) {
+            if (e.getKey().startsWith(replica + ":")) {
+                snapshot.append("O\t").append(e.getKey()).append('\t').append(clean(e.getValue())).append('\n');
+            }
+        }
+        for (Claim claim : claims.values()) {
+            if (claim.replica.equals(replica) && !claim.withdrawn && claim.generation >= orders.size()) {
+                appendClaim(snapshot, claim);
+            }
+        }
+        byte[] bytes = snapshot.toString().getBytes(StandardCharsets.UTF_8);
+        // Written aside and moved into place, so no tailer ever sees half a snapshot
+        Path next = logFile(epoch + 1);
+        Path temp = next.resolveSibling(next.getFileName() + ".tmp");
+        Files.write(temp, bytes);
+        Files.move(temp, next, StandardCopyOption.ATOMIC_MOVE);
+        epoch++;
+        ownLog = next;
+        ownBytes = bytes.length;
+        // A tailer that still had an old log open picks the snapshot up next poll
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path log : stream) {
+                if (sourceOf(log).equals(replica) && epochOf(log) < epoch) {
+                    Files.deleteIfExists(log);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Cart replication: could not delete an old log: " + e.getMessage());
+        }
+    }
+
+    /** Local edit: adds or removes units of a line and publishes the new totals. */
+    synchronized void change(String line, int delta, double unitPrice, String item, List<String> customizations) {
+        PNCounter counter = lines.computeIfAbsent(line, l -> new PNCounter());
+        long[] own = counter.totals.computeIfAbsent(replica, r -> new long[2]);
+        if (delta > 0) {
+            // Concurrent removals of the same unit can leave the line below zero;
+            // an add starts again from an empty line rather than paying that back
+            own[0] += delta - Math.min(0, counter.value());
+        } else {
+            own[1] -= delta;
+        }
+        StringBuilder entry = new StringBuilder();
+        Register<LineDetails> current = details.get(line);
+        LineDetails next = new LineDetails(unitPrice, item, customizations);
+        if (current == null || !sameDetails(current.value, next)) {
+            Register<LineDetails> register = new Register<>(tick(), replica, next);
+            details.put(line, register);
+            appendDetails(entry, line, register);
+        }
+        appendTotals(entry, line, own);
+        append(entry);
+    }
+
+    synchronized void setCustomer(String field, String value) {
+        Register<String> register = new Register<>(tick(), replica, value);
+        customer.put(field, register);
+        append(appendCustomer(new StringBuilder(), field, register));
+    }
+
+    /**
+     * Claims the cart for a local checkout of the given lines (line ->
+     * quantity, as this terminal sees them). Blocks for the settle time, so
+     * call it off the EDT. Throws IllegalArgumentException, with the claim
+     * already withdrawn, when another terminal holds the cart, ordered it
+     * meanwhile or changed it.
+     */
+    void claimCheckout(long orderId, Map<String, Integer> lines) {
+        Claim own;
+        synchronized (this) {
+            long generation = orders.size();
+            Claim holder = holder(generation);
+            if (holder != null) {
+                throw new IllegalArgumentException("This cart is being checked out on " + holder.replica + ".");
+            }
+            own = new Claim(generation, tick(), replica, orderId);
+            claims.put(replica + ":" + orderId, own);
+            append(appendClaim(new StringBuilder(), own));
+        }
+        try {
+            Thread.sleep(CLAIM_SETTLE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            withdrawCheckout(orderId);
+            throw new IllegalArgumentException("Checkout was interrupted, please try again.");
+        }
+        String problem = null;
+        synchronized (this) {
+            Claim holder = holder(own.generation);
+            if (orders.size() != own.generation) {
+                problem = "This cart was just ordered on another terminal.";
+            } else if (holder != own) {
+                problem = "This cart is being checked out on " + holder.replica + ".";
+            } else if (!quantities().equals(lines)) {
+                problem = "The cart was changed on another terminal, please check it and try again.";
+            }
+        }
+        if (problem != null) {
+            withdrawCheckout(orderId);
+            throw new IllegalArgumentException(problem);
+        }
+    }
+
+    /** Gives up a claim after a failed checkout, so other terminals can order the cart. */
+    synchronized void withdrawCheckout(long orderId) {
+        Claim claim = claims.get(replica + ":" + orderId);
+        if (claim == null || claim.withdrawn) {
+            return;
+        }
+        claim.withdrawn = true;
+        append(new StringBuilder("X\t").append(claim.generation).append('\t').append(orderId).append('\n'));
+    }
+
+    /** Publishes a placed order; empty the cart first, so no terminal sees the order with the cart still full. */
+    synchronized void recordOrder(long orderId, String summary) {
+        String id = replica + ":" + orderId;
+        orders.put(id, summary);
+        forgetClaims();
+        append(new StringBuilder("O\t").append(id).append('\t').append(clean(summary)).append('\n'));
+    }
+
+    synchronized int quantity(String line) {
+        PNCounter counter = lines.get(line);
+        return counter == null ? 0 : (int) Math.max(0, counter.value());
+    }
+
+    /** Current merged quantities, for the initial view. */
+    synchronized Map<String, Integer> quantities() {
+        Map<String, Integer> view = new TreeMap<>();
+        for (Map.Entry<String, PNCounter> e : lines.entrySet()) {
+            long value = e.getValue().value();
+            if (value > 0) {
+                view.put(e.getKey(), (int) value);
+            }
+        }
+        return view;
+    }
+
+    synchronized LineDetails details(String line) {
+        Register<LineDetails> register = details.get(line);
+        return register == null ? null : register.value;
+    }
+
+    synchronized String customer(String field) {
+        Register<String> register = customer.get(field);
+        return register == null ? null : register.value;
+    }
+
+    synchronized Map<String, String> orders() {
+        return Collections.unmodifiableMap(new TreeMap<>(orders));
+    }
+
+    /** Order-independent summary of the merged state; equal on converged terminals. */
+    synchronized String digest() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(quantities()).append(" customer=");
+        for (Map.Entry<String, Register<String>> e : customer.entrySet()) {
+            sb.append(e.getKey()).append(':').append(e.getValue().value).append(',');
+        }
+        sb.append(" orders=").append(orders.size());
+        return sb.toString();
+    }
+
+    // Earliest claim still standing on the given generation, or null
+    private Claim holder(long generation) {
+        long expired = System.currentTimeMillis() - CLAIM_EXPIRY_MILLIS;
+        Claim holder = null;
+        for (Claim claim : claims.values()) {
+            if (claim.generation == generation && !claim.withdrawn && claim.timestamp > expired
+                    && (holder == null || claim.before(holder))) {
+                holder = claim;
+            }
+        }
+        return holder;
+    }
+
+    private void forgetClaims() {
+        long generation = orders.size();
+        claims.values().removeIf(claim -> claim.generation < generation);
+    }
+
+    private void tailLoop() {
+        while (running) {
+            try {
+                poll();
+                synchronized (this) {
+                    // Not once shutdown() has interrupted this thread, which would leave the snapshot half written
+                    if (running && ownBytes > COMPACT_BYTES) {
+                        compact();
+                    }
+                }
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException | ClosedByInterruptException e) {
+                // shutdown(), possibly in the middle of a read
+                return;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Cart replication: " + e.getMessage());
+            }
+        }
+    }
+
+    // Reads whatever the logs gained since the last poll
+    private void poll() throws IOException {
+        List<Path> logs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path log : stream) {
+                logs.add(log);
+            }
+        }
+        // Logs replaced by a snapshot are gone; so is what was kept for them
+        offsets.keySet().retainAll(new HashSet<>(logs));
+        partial.keySet().retainAll(new HashSet<>(logs));
+        for (Path log : logs) {
+            long offset = offsets.getOrDefault(log, 0L);
+            long size;
+            byte[] bytes;
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+                size = channel.size();
+                if (size <= offset) {
+                    continue;
+                }
+                bytes = new byte[(int) (size - offset)];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+                    // keep reading
+                }
+                bytes = Arrays.copyOf(bytes, buffer.position());
+            } catch (NoSuchFileException e) {
+                // Compacted away since the listing
+                continue;
+            }
+            offsets.put(log, offset + bytes.length);
+            ByteArrayOutputStream pending = partial.computeIfAbsent(log, l -> new ByteArrayOutputStream());
+            String sourceReplica = sourceOf(log);
+            int start = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                // Decoded a whole entry at a time, so a character split across two reads stays intact
+                pending.write(bytes, start, i - start);
+                String entry = new String(pending.toByteArray(), StandardCharsets.UTF_8);
+                pending.reset();
+                start = i + 1;
+                try {
+                    apply(sourceReplica, entry);
+                } catch (RuntimeException e) {
+                    // One bad entry must not hold up the rest of this log or the others
+                    System.err.println("Cart replication: " + log.getFileName() + ": skipped entry '" + entry
+                        + "': " + e);
+                }
+            }
+            pending.write(bytes, start, bytes.length - start);
+        }
+    }
+
+    // "terminal.crdt" at first, "terminal~2.crdt" after the second compaction
+    private Path logFile(int epoch) {
+        return dir.resolve(epoch == 0 ? replica + SUFFIX : replica + EPOCH + epoch + SUFFIX);
+    }
+
+    private static String sourceOf(Path log) {
+        String name = log.getFileName().toString();
+        name = name.substring(0, name.length() - SUFFIX.length());
+        return epochOf(log) == 0 ? name : name.substring(0, name.lastIndexOf(EPOCH));
+    }
+
+    private static int epochOf(Path log) {
+        String name = log.getFileName().toString();
+        String epoch = name.substring(name.lastIndexOf(EPOCH) + 1, name.length() - SUFFIX.length());
+        return name.indexOf(EPOCH) >= 0 && epoch.matches("[1-9][0-9]{0,8}") ? Integer.parseInt(epoch) : 0;
+    }
+
+    private void apply(String source, String entry) {
+        String[] f = entry.split("\t", -1);
+        List<Runnable> events = new ArrayList<>();
+        synchronized (this) {
+            switch (f[0]) {
+                case "C": {
+                    fields(f, 4);
+                    PNCounter counter = lines.computeIfAbsent(f[1], l -> new PNCounter());
+                    if (counter.merge(source, Long.parseLong(f[2]), Long.parseLong(f[3])) && !source.equals(replica)) {
+                        events.add(() -> listeners.forEach(l -> l.lineChanged(f[1])));
+                    }
+                    break;
+                }
+                case "M": {
+                    fields(f, 6);
+                    long timestamp = Long.parseLong(f[2]);
+                    observe(timestamp);
+                    List<String> customizations = f[5].isEmpty()
+                        ? Collections.emptyList() : Arrays.asList(f[5].split(";"));
+                    Register<LineDetails> register = new Register<>(timestamp, source,
+                        new LineDetails(Double.parseDouble(f[3]), f[4], customizations));
+                    if (register.beats(details.get(f[1]))) {
+                        details.put(f[1], register);
+                    }
+                    break;
+                }
+                case "R": {
+                    fields(f, 4);
+                    long timestamp = Long.parseLong(f[2]);
+                    observe(timestamp);
+                    Register<String> register = new Register<>(timestamp, source, f[3]);
+                    if (register.beats(customer.get(f[1]))) {
+                        customer.put(f[1], register);
+                        if (!source.equals(replica)) {
+                            events.add(() -> listeners.forEach(l -> l.customerChanged(f[1])));
+                        }
+                    }
+                    break;
+                }
+                case "O":
+                    fields(f, 3);
+                    if (orders.putIfAbsent(f[1], f[2]) == null) {
+                        forgetClaims();
+                        if (caughtUp && !source.equals(replica)) {
+                            events.add(() -> listeners.forEach(l -> l.orderPlaced(f[1], f[2])));
+                        }
+                    }
+                    break;
+                case "K": {
+                    fields(f, 4);
+                    long timestamp = Long.parseLong(f[2]);
+                    observe(timestamp);
+                    long generation = Long.parseLong(f[1]);
+                    if (generation >= orders.size()) {
+                        claims.putIfAbsent(source + ":" + f[3],
+                            new Claim(generation, timestamp, source, Long.parseLong(f[3])));
+                    }
+                    break;
+                }
+                case "X": {
+                    fields(f, 3);
+                    Claim claim = claims.get(source + ":" + f[2]);
+                    if (claim != null) {
+                        claim.withdrawn = true;
+                    }
+                    break;
+                }
+                default:
+                    // Entry from a newer version; ignore
+            }
+        }
+        for (Runnable event : events) {
+            event.run();
+        }
+    }
+
+    private void append(StringBuilder entry) {
+        if (entry.length() == 0) {
+            return;
+        }
+        // One write per entry; each terminal is the only writer of its file
+        try (FileChannel channel = FileChannel.open(ownLog,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(entry.toString().getBytes(StandardCharsets.UTF_8));
+            ownBytes += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Cart replication: could not append: " + e.getMessage());
+        }
+    }
+
+    private static StringBuilder appendTotals(StringBuilder entry, String line, long[] own) {
+        return entry.append("C\t").append(clean(line)).append('\t').append(own[0]).append('\t').append(own[1])
+            .append('\n');
+    }
+
+    private static StringBuilder appendDetails(StringBuilder entry, String line, Register<LineDetails> register) {
+        List<String> cleaned = new ArrayList<>();
+        for (String customization : register.value.customizations) {
+            cleaned.add(clean(customization).replace(';', ','));
+        }
+        return entry.append("M\t").append(clean(line)).append('\t').append(register.timestamp).append('\t')
+            .append(register.value.unitPrice).append('\t').append(clean(register.value.item)).append('\t')
+            .append(String.join(";", cleaned)).append('\n');
+    }
+
+    private static StringBuilder appendCustomer(StringBuilder entry, String field, Register<String> register) {
+        return entry.append("R\t").append(field).append('\t').append(register.timestamp).append('\t')
+            .append(clean(register.value)).append('\n');
+    }
+
+    private static StringBuilder appendClaim(StringBuilder entry, Claim claim) {
+        return entry.append("K\t").append(claim.generation).append('\t').append(claim.timestamp).append('\t')
+            .append(claim.orderId).append('\n');
+    }
+
+    // Hybrid clock: wall time, but never behind anything already seen
+    private long tick() {
+        clock = Math.max(clock + 1, System.currentTimeMillis());
+        return clock;
+    }
+
+    private void observe(long timestamp) {
+        clock = Math.max(clock, timestamp);
+    }
+
+    private static void fields(String[] f, int count) {
+        if (f.length < count) {
+            throw new IllegalArgumentException("expected " + count + " fields, found " + f.length);
+        }
+    }
+
+    private static boolean sameDetails(LineDetails a, LineDetails b) {
+        return a.unitPrice == b.unitPrice && a.item.equals(b.item) && a.customizations.equals(b.customizations);
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ');
+    }
+}
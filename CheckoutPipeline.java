@@ -0,0 +1,294 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs checkout off the EDT as a chain of stages: validate, price, persist,
+ * notify and hand off to the kitchen. Stages run on a small bounded pool;
+ * at most MAX_IN_FLIGHT orders are accepted at once and further submissions
+ * fail fast with a RejectedExecutionException instead of queueing forever.
+ */
+final class CheckoutPipeline {
+    enum Stage { VALIDATE, PRICE, PERSIST, NOTIFY, KITCHEN }
+
+    /** Adjusts a priced order, e.g. to apply a discount. */
+    interface PricingRule {
+        double discount(Order order, double subtotal);
+    }
+
+    static final class StageStats {
+        final Stage stage;
+        final long count;
+        final long avgMicros;
+        final long maxMicros;
+
+        StageStats(Stage stage, long count, long avgMicros, long maxMicros) {
+            this.stage = stage;
+            this.count = count;
+            this.avgMicros = avgMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return stage + ": n=" + count + " avg=" + avgMicros + "us max=" + maxMicros + "us";
+        }
+    }
+
+    private static final int MAX_IN_FLIGHT = 32;
+    private static final long SHUTDOWN_WAIT_SECONDS = 5;
+    private static final AtomicLong ORDER_IDS = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder[] stageCounts = new LongAdder[Stage.values().length];
+    private final LongAdder[] stageNanos = new LongAdder[Stage.values().length];
+    private final AtomicLong[] stageMaxNanos = new AtomicLong[Stage.values().length];
+    private final List<PricingRule> pricingRules = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Order>> notifiers = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Order>> validators = new CopyOnWriteArrayList<>();
+    private volatile ToDoubleFunction<Order> deliveryFees = order -> 0.0;
+    private volatile StoreRouter storeRouter;
+    private volatile PreOrderScheduler preOrders;
+    private final KitchenQueue kitchen;
+    private final Path journal;
+
+    CheckoutPipeline(KitchenQueue kitchen, Path journal) {
+        this.kitchen = kitchen;
+        this.journal = journal;
+        for (int i = 0; i < stageCounts.length; i++) {
+            stageCounts[i] = new LongAdder();
+            stageNanos[i] = new LongAdder();
+            stageMaxNanos[i] = new AtomicLong();
+        }
+        AtomicInteger threadIds = new AtomicInteger();
+        executor = new ThreadPoolExecutor(2, 4, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAX_IN_FLIGHT * 2),
+            r -> {
+                Thread t = new Thread(r, "checkout-" + threadIds.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    static long nextOrderId() {
+        return ORDER_IDS.incrementAndGet();
+    }
+
+    void addPricingRule(PricingRule rule) {
+        pricingRules.add(rule);
+    }
+
+    /** Adds a check run in the validate stage; it rejects an order by throwing IllegalArgumentException. */
+    void addValidator(Consumer<Order> validator) {
+        validators.add(validator);
+    }
+
+    void setDeliveryFees(ToDoubleFunction<Order> deliveryFees) {
+        this.deliveryFees = deliveryFees;
+    }
+
+    /** Routes priced orders to store shards: store prices and deals apply, and the store's kitchen gets the ticket. */
+    void setStoreRouter(StoreRouter storeRouter) {
+        this.storeRouter = storeRouter;
+    }
+
+    /** Pre-orders are parked here after checkout instead of going straight to the kitchen. */
+    void setPreOrderScheduler(PreOrderScheduler preOrders) {
+        this.preOrders = preOrders;
+    }
+
+    /** Registers a notification step; notifiers must not block (queue work instead). */
+    void addNotifier(Consumer<Order> notifier) {
+        notifiers.add(notifier);
+    }
+
+    /**
+     * Starts checkout for the order. The returned future completes with the
+     * priced order once it reached the kitchen, or exceptionally with the
+     * first stage failure. Callers must not block the EDT on it.
+     */
+    CompletableFuture<Order> submit(Order order) {
+        if (!inFlight.tryAcquire()) {
+            rejected.increment();
+            CompletableFuture<Order> busy = new CompletableFuture<>();
+            busy.completeExceptionally(new RejectedExecutionException("Checkout is busy, please try again"));
+            return busy;
+        }
+        CompletableFuture<Order> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> order, executor)
+                .thenApplyAsync(timed(Stage.VALIDATE, this::validate), executor)
+                .thenApplyAsync(timed(Stage.PRICE, this::price), executor)
+                .thenApplyAsync(timed(Stage.PERSIST, this::persist), executor)
+                .thenApplyAsync(timed(Stage.NOTIFY, this::notifyCustomer), executor)
+                .thenApplyAsync(timed(Stage.KITCHEN, this::handOff), executor);
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            rejected.increment();
+            throw e;
+        }
+        result.whenComplete((o, error) -> inFlight.release());
+        return result;
+    }
+
+    int inFlight() {
+        return MAX_IN_FLIGHT - inFlight.availablePermits();
+    }
+
+    long rejectedCount() {
+        return rejected.sum();
+    }
+
+    List<StageStats> stats() {
+        List<StageStats> stats = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            int i = stage.ordinal();
+            long count = stageCounts[i].sum();
+            long avg = count == 0 ? 0 : stageNanos[i].sum() / count / 1000;
+            stats.add(new StageStats(stage, count, avg, stageMaxNanos[i].get() / 1000));
+        }
+        return Collections.unmodifiableList(stats);
+    }
+
+    /** Stops taking orders and waits a few seconds for those in flight to reach the kitchen. */
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println(inFlight() + " checkouts still running at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** One line for the manager view: load, turned-away orders and per-stage latency. */
+    String describe() {
+        StringBuilder sb = new StringBuilder("Checkout: ").append(inFlight()).append(" in flight, ")
+            .append(rejectedCount()).append(" turned away");
+        for (StageStats stage : stats()) {
+            sb.append("; ").append(stage);
+        }
+        return sb.toString();
+    }
+
+    private UnaryOperator<Order> timed(Stage stage, UnaryOperator<Order> step) {
+        int i = stage.ordinal();
+        return order -> {
+            long start = System.nanoTime();
+            try {
+                return step.apply(order);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                stageCounts[i].increment();
+                stageNanos[i].add(elapsed);
+                stageMaxNanos[i].accumulateAndGet(elapsed, Math::max);
+            }
+        };
+    }
+
+    private Order validate(Order order) {
+        if (order.lines.isEmpty()) {
+            throw new IllegalArgumentException("Your cart is empty!");
+        }
+        if (isBlank(order.email) || isBlank(order.destination)) {
+            throw new IllegalArgumentException("Please login and provide your contact information first.");
+        }
+        for (Order.Line line : order.lines) {
+            if (line.quantity <= 0 || line.unitPrice < 0) {
+                throw new IllegalArgumentException("Invalid cart line: " + line.item);
+            }
+        }
+        if (order.isPreOrder() && preOrders == null) {
+            throw new IllegalArgumentException("Pre-orders are not available right now.");
+        }
+        for (Consumer<Order> validator : validators) {
+            validator.accept(order);
+        }
+        return order;
+    }
+
+    private Order price(Order order) {
+        StoreRouter router = storeRouter;
+        StoreRouter.Store store = router == null ? null : router.route(order);
+        if (store != null) {
+            order = router.reprice(order, store);
+        }
+        double subtotal = 0.0;
+        for (Order.Line line : order.lines) {
+            subtotal += line.lineTotal();
+        }
+        double discount = 0.0;
+        for (PricingRule rule : pricingRules) {
+            discount += rule.discount(order, subtotal - discount);
+        }
+        if (store != null) {
+            for (PricingRule deal : store.deals) {
+                discount += deal.discount(order, subtotal - discount);
+            }
+        }
+        return order.withPricing(subtotal, Math.min(discount, subtotal), deliveryFees.applyAsDouble(order));
+    }
+
+    private Order persist(Order order) {
+        if (journal == null) {
+            return order;
+        }
+        String record = order.toRecord() + System.lineSeparator();
+        try {
+            synchronized (this) {
+                Files.write(journal, record.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save order " + order.id, e);
+        }
+        return order;
+    }
+
+    private Order notifyCustomer(Order order) {
+        for (Consumer<Order> notifier : notifiers) {
+            notifier.accept(order);
+        }
+        return order;
+    }
+
+    private Order handOff(Order order) {
+        PreOrderScheduler scheduler = preOrders;
+        if (order.isPreOrder() && scheduler != null) {
+            scheduler.schedule(order);
+        } else {
+            sendToKitchen(order);
+        }
+        return order;
+    }
+
+    /** Queues the ticket at the kitchen of the order's store; also where pre-orders are released to. */
+    void sendToKitchen(Order order) {
+        StoreRouter router = storeRouter;
+        StoreRouter.Store store = router == null || order.store == null ? null : router.store(order.store);
+        (store == null ? kitchen : store.kitchen).submit(order);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,521 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Sends order confirmation emails in the background. enqueue() only writes
+ * the finished message into an on-disk outbox, so checkout never waits on
+ * the mail server. Worker threads take due messages in batches, send each
+ * batch over one pooled SMTP connection and delete the file once accepted.
+ * Failures are retried with exponential backoff; messages still failing
+ * after MAX_ATTEMPTS are moved to outbox/failed. Anything left in the outbox
+ * is picked up again on the next start.
+ *
+ * Bodies are stored as UTF-8 with 8bit transfer encoding. They go out as
+ * they are (MAIL FROM ... BODY=8BITMIME) to servers that advertise 8BITMIME;
+ * for any other server the 8bit parts are converted to quoted-printable.
+ */
+final class ConfirmationMailer {
+    private static final int WORKERS = 2;
+    private static final int BATCH_SIZE = 20;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long BASE_BACKOFF_MILLIS = 2_000;
+    private static final long MAX_BACKOFF_MILLIS = 10 * 60_000;
+    private static final long IDLE_CONNECTION_MILLIS = 30_000;
+    private static final int SOCKET_TIMEOUT_MILLIS = 10_000;
+    private static final String SUFFIX = ".eml";
+
+    private final Path outbox;
+    private final Path failedDir;
+    private final String host;
+    private final int port;
+    private final String from;
+    private final ReceiptTemplate template;
+    private final DelayQueue<Pending> queue = new DelayQueue<>();
+    private final ArrayDeque<SmtpConnection> idle = new ArrayDeque<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    // Metrics
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder gaveUp = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionsReused = new LongAdder();
+
+    ConfirmationMailer(Path outbox, String host, int port, String from, ReceiptTemplate template) throws IOException {
+        this.outbox = outbox;
+        this.failedDir = outbox.resolve("failed");
+        this.host = host;
+        this.port = port;
+        this.from = from;
+        this.template = template;
+        Files.createDirectories(failedDir);
+    }
+
+    /**
+     * Mail server from -Dnapuli.smtp.host / -Dnapuli.smtp.port / -Dnapuli.smtp.from,
+     * defaulting to a local relay on port 25.
+     */
+    static ConfirmationMailer fromSystemProperties(Path outbox) throws IOException {
+        return new ConfirmationMailer(outbox,
+            System.getProperty("napuli.smtp.host", "localhost"),
+            Integer.getInteger("napuli.smtp.port", 25),
+            System.getProperty("napuli.smtp.from", "orders@napuli-oven.local"),
+            ReceiptTemplate.defaultTemplate());
+    }
+
+    /** Reloads messages left in the outbox and starts the workers. */
+    synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        running = true;
+        try (Stream<Path> files = Files.list(outbox)) {
+            files.filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                .forEach(p -> queue.offer(new Pending(p, 0, 0)));
+        }
+        for (int i = 0; i < WORKERS; i++) {
+            Thread worker = new Thread(this::workLoop, "mailer-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    synchronized void shutdown() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        workers.clear();
+        synchronized (idle) {
+            for (SmtpConnection connection : idle) {
+                connection.quit();
+            }
+            idle.clear();
+        }
+    }
+
+    /** Persists the confirmation for the order; never touches the network. */
+    void enqueue(Order order) {
+        if (order.email == null || order.email.isEmpty()) {
+            return;
+        }
+        try {
+            Path file = outbox.resolve(order.id + SUFFIX);
+            Path tmp = outbox.resolve(order.id + ".tmp");
+            Files.write(tmp, compose(order));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            queue.offer(new Pending(file, 0, 0));
+            enqueued.increment();
+        } catch (IOException e) {
+            // A lost confirmation must not fail the order itself
+            System.err.println("Could not queue confirmation for order " + order.id + ": " + e.getMessage());
+        }
+    }
+
+    int pending() {
+        return queue.size();
+    }
+
+    String metrics() {
+        return "queued=" + queue.size() + " enqueued=" + enqueued.sum() + " sent=" + sent.sum()
+            + " retries=" + retries.sum() + " failed=" + gaveUp.sum() + " batches=" + batches.sum()
+            + " connections=" + connectionsOpened.sum() + " reused=" + connectionsReused.sum();
+    }
+
+    private byte[] compose(Order order) {
+        String boundary = "napuli-" + order.id;
+        StringBuilder text = new StringBuilder(512);
+        template.renderText(order, text, 48);
+        StringBuilder html = new StringBuilder(1024);
+        template.renderHtml(order, html);
+
+        StringBuilder msg = new StringBuilder(2048);
+        msg.append("From: Napuli Oven <").append(from).append(">\r\n")
+           .append("To: ").append(order.email).append("\r\n")
+           .append("Subject: Your Napuli Oven order #").append(order.id).append("\r\n")
+           .append("Date: ").append(DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now())).append("\r\n")
+           .append("Message-ID: <order-").append(order.id).append('.').append(System.currentTimeMillis())
+           .append('@').append(from.substring(from.indexOf('@') + 1)).append(">\r\n")
+           .append("MIME-Version: 1.0\r\n")
+           .append("Content-Type: multipart/alternative; boundary=\"").append(boundary).append("\"\r\n")
+           .append("\r\n")
+           .append("--").append(boundary).append("\r\n")
+           .append("Content-Type: text/plain; charset=UTF-8\r\n")
+           .append("Content-Transfer-Encoding: 8bit\r\n\r\n");
+        appendCrlf(msg, text);
+        msg.append("\r\n--").append(boundary).append("\r\n")
+           .append("Content-Type: text/html; charset=UTF-8\r\n")
+           .append("Content-Transfer-Encoding: 8bit\r\n\r\n");
+        appendCrlf(msg, html);
+        msg.append("\r\n--").append(boundary).append("--\r\n");
+        return msg.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The message with every 8bit part re-encoded as quoted-printable, for
+     * servers without 8BITMIME. Only understands the layout compose() writes.
+     */
+    static byte[] toSevenBit(byte[] data) {
+        String[] lines = new String(data, StandardCharsets.UTF_8).split("\r\n", -1);
+        StringBuilder out = new StringBuilder(data.length + data.length / 4);
+        String boundary = null;
+        boolean inHeaders = true;
+        boolean encode = false;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int at = line.indexOf("boundary=\"");
+            if (boundary == null && inHeaders && at >= 0) {
+                boundary = "--" + line.substring(at + 10, line.indexOf('"', at + 10));
+            }
+            if (boundary != null && line.startsWith(boundary)) {
+                // Boundary: the next lines are the part's headers
+                inHeaders = true;
+                encode = false;
+            } else if (inHeaders && line.isEmpty()) {
+                inHeaders = false;
+            } else if (inHeaders && line.equalsIgnoreCase("Content-Transfer-Encoding: 8bit")) {
+                line = "Content-Transfer-Encoding: quoted-printable";
+                encode = true;
+            } else if (!inHeaders && encode) {
+                line = quotedPrintable(line);
+            }
+            out.append(line);
+            if (i < lines.length - 1) {
+                out.append("\r\n");
+            }
+        }
+        return out.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // One line of text as quoted-printable, with soft breaks to stay within 76 columns
+    private static String quotedPrintable(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        StringBuilder out = new StringBuilder(bytes.length + 16);
+        int column = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            boolean last = i == bytes.length - 1;
+            String token = (b >= 33 && b <= 126 && b != '=') || ((b == ' ' || b == '\t') && !last)
+                ? String.valueOf((char) b) : String.format("=%02X", b);
+            if (column + token.length() > 75) {
+                out.append("=\r\n");
+                column = 0;
+            }
+            out.append(token);
+            column += token.length();
+        }
+        return out.toString();
+    }
+
+    private static void appendCrlf(StringBuilder out, CharSequence body) {
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '\n') {
+                out.append("\r\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private void workLoop() {
+        List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                sendBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void sendBatch(List<Pending> batch) {
+        batches.increment();
+        SmtpConnection connection = null;
+        int index = 0;
+        try {
+            connection = borrow();
+            for (; index < batch.size(); index++) {
+                Pending pending = batch.get(index);
+                if (!Files.exists(pending.file)) {
+                    continue;
+                }
+                byte[] data = Files.readAllBytes(pending.file);
+                String to = recipient(data);
+                try {
+                    connection.send(from, to, data);
+                } catch (SmtpRejected e) {
+                    // Permanent rejection of this recipient; keep the session for the rest
+                    giveUp(pending, e.getMessage());
+                    continue;
+                }
+                Files.deleteIfExists(pending.file);
+                sent.increment();
+            }
+            release(connection);
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            // Everything not yet sent goes back with backoff
+            for (; index < batch.size(); index++) {
+                retry(batch.get(index), e.getMessage());
+            }
+        }
+    }
+
+    private void retry(Pending pending, String reason) {
+        int attempts = pending.attempts + 1;
+        if (attempts >= MAX_ATTEMPTS) {
+            giveUp(pending, reason);
+            return;
+        }
+        retries.increment();
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempts - 1));
+        // Jitter so several queued messages do not retry in lockstep
+        backoff += ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+        queue.offer(new Pending(pending.file, attempts, System.currentTimeMillis() + backoff));
+    }
+
+    private void giveUp(Pending pending, String reason) {
+        gaveUp.increment();
+        System.err.println("Giving up on " + pending.file.getFileName() + ": " + reason);
+        try {
+            Files.move(pending.file, failedDir.resolve(pending.file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Could not move " + pending.file + " to failed: " + e.getMessage());
+        }
+    }
+
+    private SmtpConnection borrow() throws IOException {
+        synchronized (idle) {
+            while (!idle.isEmpty()) {
+                SmtpConnection connection = idle.pollFirst();
+                if (System.currentTimeMillis() - connection.lastUsed < IDLE_CONNECTION_MILLIS && connection.reset()) {
+                    connectionsReused.increment();
+                    return connection;
+                }
+                connection.close();
+            }
+        }
+        connectionsOpened.increment();
+        return SmtpConnection.open(host, port);
+    }
+
+    private void release(SmtpConnection connection) {
+        connection.lastUsed = System.currentTimeMillis();
+        synchronized (idle) {
+            if (running && idle.size() < WORKERS) {
+                idle.addLast(connection);
+                return;
+            }
+        }
+        connection.quit();
+    }
+
+    private static String recipient(byte[] data) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            if (line.regionMatches(true, 0, "To:", 0, 3)) {
+                return line.substring(3).trim();
+            }
+        }
+        throw new IOException("Message has no To header");
+    }
+
+    private static final class Pending implements Delayed {
+        final Path file;
+        final int attempts;
+        final long dueAtMillis;
+
+        Pending(Path file, int attempts, long dueAtMillis) {
+            this.file = file;
+            this.attempts = attempts;
+            this.dueAtMillis = dueAtMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtMillis, ((Pending) other).dueAtMillis);
+        }
+    }
+
+    /** 5xx reply to a single message; retrying will not help. */
+    private static final class SmtpRejected extends IOException {
+        SmtpRejected(String message) {
+            super(message);
+        }
+    }
+
+    /** Minimal SMTP client session (EHLO, MAIL, RCPT, DATA, RSET, QUIT). */
+    private static final class SmtpConnection {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final OutputStream out;
+        // Extensions from the EHLO reply, upper case
+        private final List<String> extensions = new ArrayList<>();
+        long lastUsed;
+
+        private SmtpConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        static SmtpConnection open(String host, int port) throws IOException {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), SOCKET_TIMEOUT_MILLIS);
+                socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+                SmtpConnection connection = new SmtpConnection(socket);
+                connection.expect(220);
+                connection.extensions.clear();
+                connection.command("EHLO napuli-oven", 250);
+                return connection;
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        void send(String from, String to, byte[] data) throws IOException {
+            if (extensions.contains("8BITMIME")) {
+                command("MAIL FROM:<" + from + "> BODY=8BITMIME", 250);
+            } else {
+                data = toSevenBit(data);
+                command("MAIL FROM:<" + from + ">", 250);
+            }
+            int rcpt = commandReply("RCPT TO:<" + to + ">");
+            if (rcpt >= 500) {
+                command("RSET", 250);
+                throw new SmtpRejected("Recipient " + to + " rejected (" + rcpt + ")");
+            } else if (rcpt / 100 != 2) {
+                throw new IOException("RCPT TO failed with " + rcpt);
+            }
+            command("DATA", 354);
+            writeDotStuffed(data);
+            out.write(".\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            int reply = readReply();
+            if (reply >= 500) {
+                throw new SmtpRejected("Message rejected (" + reply + ")");
+            } else if (reply / 100 != 2) {
+                throw new IOException("DATA failed with " + reply);
+            }
+        }
+
+        boolean reset() {
+            try {
+                command("RSET", 250);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        void quit() {
+            try {
+                command("QUIT", 221);
+            } catch (IOException e) {
+                // Closing anyway
+            }
+            close();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+
+        private void writeDotStuffed(byte[] data) throws IOException {
+            boolean lineStart = true;
+            for (byte b : data) {
+                if (lineStart && b == '.') {
+                    out.write('.');
+                }
+                out.write(b);
+                lineStart = b == '\n';
+            }
+            if (!lineStart) {
+                out.write('\r');
+                out.write('\n');
+            }
+        }
+
+        private void command(String line, int expected) throws IOException {
+            int reply = commandReply(line);
+            if (reply != expected) {
+                throw new IOException("'" + line.split(" ")[0] + "' failed with " + reply);
+            }
+        }
+
+        private int commandReply(String line) throws IOException {
+            out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return readReply();
+        }
+
+        private void expect(int expected) throws IOException {
+            int reply = readReply();
+            if (reply != expected) {
+                throw new IOException("Unexpected SMTP greeting " + reply);
+            }
+        }
+
+        // Reads a possibly multi-line reply ("250-...", "250 ...") and returns its code
+        private int readReply() throws IOException {
+            String line;
+            boolean first = true;
+            do {
+                line = in.readLine();
+                if (line == null || line.length() < 3) {
+                    throw new EOFException("SMTP connection closed");
+                }
+                // After the first line, an EHLO reply lists one extension per line
+                if (!first && line.length() > 4) {
+                    extensions.add(line.substring(4).trim().split(" ")[0].toUpperCase(java.util.Locale.ROOT));
+                }
+                first = false;
+            } while (line.length() > 3 && line.charAt(3) == '-');
+            try {
+                return Integer.parseInt(line.substring(0, 3));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed SMTP reply: " + line);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.mycompany.pizzaordersystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Groups confirmed deliveries into driver routes. Stops collect in a queue
+ * and are dispatched once per time window: the batch is split into
+ * clusters by sweeping around the store, and every cluster is routed in
+ * parallel on a fork-join pool (nearest-neighbour tour, then 2-opt until
+ * the planning budget runs out).
+ */
+final class DeliveryDispatcher {
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    /** Planning budget per dispatch window, for the app and DispatchBenchmark alike. */
+    static final long DEFAULT_BUDGET_MILLIS = 100;
+
+    static final class Stop {
+        final Order order;
+        final double lat;
+        final double lon;
+
+        Stop(Order order, double lat, double lon) {
+            this.order = order;
+            this.lat = lat;
+            this.lon = lon;
+        }
+    }
+
+    static final class Route {
+        final List<Stop> stops;
+        final double lengthKm;
+
+        Route(List<Stop> stops, double lengthKm) {
+            this.stops = stops;
+            this.lengthKm = lengthKm;
+        }
+    }
+
+    private final double depotLat;
+    private final double depotLon;
+    private final int maxStopsPerRoute;
+    private final long windowMillis;
+    private final long budgetNanos;
+    private final Consumer<List<Route>> onDispatch;
+    private final ConcurrentLinkedQueue<Stop> pending = new ConcurrentLinkedQueue<>();
+    private final ForkJoinPool pool = new ForkJoinPool();
+    private ScheduledExecutorService scheduler;
+
+    DeliveryDispatcher(double depotLat, double depotLon, int maxStopsPerRoute,
+                       long windowMillis, long budgetNanos, Consumer<List<Route>> onDispatch) {
+        this.depotLat = depotLat;
+        this.depotLon = depotLon;
+        this.maxStopsPerRoute = maxStopsPerRoute;
+        this.windowMillis = windowMillis;
+        this.budgetNanos = budgetNanos;
+        this.onDispatch = onDispatch;
+    }
+
+    synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dispatch");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::dispatchWindow, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void add(Order order, double lat, double lon) {
+        pending.offer(new Stop(order, lat, lon));
+    }
+
+    int pending() {
+        return pending.size();
+    }
+
+    synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        pool.shutdown();
+    }
+
+    // Closes the current window: everything queued so far is routed together
+    void dispatchWindow() {
+        List<Stop> batch = new ArrayList<>();
+        Stop stop;
+        while ((stop = pending.poll()) != null) {
+            batch.add(stop);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            onDispatch.accept(plan(pool, batch, depotLat, depotLon, maxStopsPerRoute, budgetNanos));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Plans routes for one batch. Construction always finishes; 2-opt
+     * improvement stops as soon as the budget is used up, so the result is
+     * valid whatever the budget.
+     */
+    static List<Route> plan(ForkJoinPool pool, List<Stop> stops, double depotLat, double depotLon,
+                            int maxStopsPerRoute, long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        List<List<Stop>> clusters = sweep(stops, depotLat, depotLon, maxStopsPerRoute);
+        List<RouteTask> tasks = new ArrayList<>(clusters.size());
+        for (List<Stop> cluster : clusters) {
+            tasks.add(new RouteTask(cluster, depotLat, depotLon, deadline));
+        }
+        return pool.invoke(new RecursiveTask<List<Route>>() {
+            @Override
+            protected List<Route> compute() {
+                invokeAll(tasks);
+                List<Route> routes = new ArrayList<>(tasks.size());
+                for (RouteTask task : tasks) {
+                    routes.add(task.join());
+                }
+                return routes;
+            }
+        });
+    }
+
+    // Sorts stops by bearing from the store and cuts them into equal slices
+    private static List<List<Stop>> sweep(List<Stop> stops, double depotLat, double depotLon, int maxStopsPerRoute) {
+        double cosLat = Math.cos(Math.toRadians(depotLat));
+        Stop[] sorted = stops.toArray(new Stop[0]);
+        double[] angle = new double[sorted.length];
+        Integer[] order = new Integer[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            angle[i] = Math.atan2(sorted[i].lat - depotLat, (sorted[i].lon - depotLon) * cosLat);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> angle[i]));
+        int routes = (sorted.length + maxStopsPerRoute - 1) / maxStopsPerRoute;
+        List<List<Stop>> clusters = new ArrayList<>(routes);
+        for (int r = 0; r < routes; r++) {
+            int from = (int) ((long) sorted.length * r / routes);
+            int to = (int) ((long) sorted.length * (r + 1) / routes);
+            List<Stop> cluster = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                cluster.add(sorted[order[i]]);
+            }
+            clusters.add(cluster);
+        }
+        return clusters;
+    }
+
+    private static final class RouteTask extends RecursiveTask<Route> {
+        private final List<Stop> stops;
+        private final double depotLat;
+        private final double depotLon;
+        private final long deadline;
+
+        RouteTask(List<Stop> stops, double depotLat, double depotLon, long deadline) {
+            this.stops = stops;
+            this.depotLat = depotLat;
+            this.depotLon = depotLon;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Route compute() {
+            // Local planar projection in km; index 0 is the store
+            int n = stops.size() + 1;
+            double cosLat = Math.cos(Math.toRadians(depotLat));
+            double[] x = new double[n];
+            double[] y = new double[n];
+            for (int i = 1; i < n; i++) {
+                Stop stop = stops.get(i - 1);
+                x[i] = Math.toRadians(stop.lon - depotLon) * cosLat * EARTH_RADIUS_KM;
+                y[i] = Math.toRadians(stop.lat - depotLat) * EARTH_RADIUS_KM;
+            }
+            int[] tour = nearestNeighbour(x, y);
+            twoOpt(tour, x, y, deadline);
+
+            List<Stop> ordered = new ArrayList<>(n - 1);
+            for (int i = 1; i < n; i++) {
+                ordered.add(stops.get(tour[i] - 1));
+            }
+            return new Route(ordered, tourLength(tour, x, y));
+        }
+    }
+
+    // Tour starts at the store (index 0) and implicitly returns to it
+    static int[] nearestNeighbour(double[] x, double[] y) {
+        int n = x.length;
+        int[] tour = new int[n];
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for (int k = 1; k < n; k++) {
+            int from = tour[k - 1];
+            int best = -1;
+            double bestDist = Double.MAX_VALUE;
+            for (int j = 1; j < n; j++) {
+                if (!visited[j]) {
+                    double d = dist(x, y, from, j);
+                    if (d < bestDist) {
+                        bestDist = d;
+                        best = j;
+                    }
+                }
+            }
+            tour[k] = best;
+            visited[best] = true;
+        }
+        return tour;
+    }
+
+    // First-improvement 2-opt; checks the deadline once per sweep of i
+    static void twoOpt(int[] tour, double[] x, double[] y, long deadline) {
+        int n = tour.length;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < n - 1; i++) {
+                if (System.nanoTime() - deadline > 0) {
+                    return;
+                }
+                int a = tour[i];
+                int b = tour[i + 1];
+                for (int j = i + 2; j < n; j++) {
+                    int c = tour[j];
+                    int d = tour[(j + 1) % n];
+                    if (d == a) {
+                        continue;
+                    }
+                    double delta = dist(x, y, a, c) + dist(x, y, b, d) - dist(x, y, a, b) - dist(x, y, c, d);
+                    if (delta < -1e-9) {
+                        reverse(tour, i + 1, j);
+                        b = tour[i + 1];
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    static double tourLength(int[] tour, double[] x, double[] y) {
+        double length = 0;
+        for (int i = 0; i < tour.length; i++) {
+            length += dist(x, y, tour[i], tour[(i + 1) % tour.length]);
+        }
+        return length;
+    }
+
+    private static void reverse(int[] tour, int from, int to) {
+        while (from < to) {
+            int t = tour[from];
+            tour[from++] = tour[to];
+            tour[to--] = t;
+        }
+    }
+
+    private static double dist(double[] x, double[] y, int i, int j) {
+        double dx = x[i] - x[j];
+        double dy = y[i] - y[j];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,180 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delivery zone polygons behind a uniform lat/lon grid index. Each grid cell
+ * lists the zones whose bounding box overlaps it, so a lookup hashes one
+ * cell and runs point-in-polygon only on those few candidates. The cell
+ * size follows the median zone size, which keeps candidate lists short
+ * even with tens of thousands of polygons. The odd zone too large for the
+ * grid (a whole region at a flat fee) is kept in a short list of its own
+ * and checked on every lookup instead.
+ */
+final class DeliveryZones {
+    static final class Zone {
+        final String id;
+        final double fee;
+        final double[] lats;
+        final double[] lons;
+        final double minLat;
+        final double maxLat;
+        final double minLon;
+        final double maxLon;
+
+        Zone(String id, double fee, double[] lats, double[] lons) {
+            if (lats.length < 3 || lats.length != lons.length) {
+                throw new IllegalArgumentException("Zone " + id + " needs at least three vertices");
+            }
+            this.id = id;
+            this.fee = fee;
+            this.lats = lats;
+            this.lons = lons;
+            double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+            double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+            for (int i = 0; i < lats.length; i++) {
+                minLat = Math.min(minLat, lats[i]);
+                maxLat = Math.max(maxLat, lats[i]);
+                minLon = Math.min(minLon, lons[i]);
+                maxLon = Math.max(maxLon, lons[i]);
+            }
+            this.minLat = minLat;
+            this.maxLat = maxLat;
+            this.minLon = minLon;
+            this.maxLon = maxLon;
+        }
+
+        // Even-odd ray casting
+        boolean contains(double lat, double lon) {
+            if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) {
+                return false;
+            }
+            boolean inside = false;
+            for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+                if ((lats[i] > lat) != (lats[j] > lat)
+                        && lon < (lons[j] - lons[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lons[i]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+    }
+
+    private static final Zone[] NONE = new Zone[0];
+    // Zones spanning more cells than this go on the oversized list rather than into the grid
+    private static final long MAX_CELLS_PER_ZONE = 10_000;
+
+    private final Map<Long, Zone[]> grid;
+    private final Zone[] oversized;
+    private final double cellDegrees;
+    private final int zoneCount;
+
+    private DeliveryZones(Map<Long, Zone[]> grid, Zone[] oversized, double cellDegrees, int zoneCount) {
+        this.grid = grid;
+        this.oversized = oversized;
+        this.cellDegrees = cellDegrees;
+        this.zoneCount = zoneCount;
+    }
+
+    /** Reads "zoneId\tfee\tlat,lon;lat,lon;..." lines. */
+    static DeliveryZones load(Path file) throws IOException {
+        List<Zone> zones = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length < 3) {
+                    throw new IOException(file.getFileName() + ":" + lineNo + ": expected id, fee, polygon");
+                }
+                try {
+                    String[] vertices = parts[2].split(";");
+                    double[] lats = new double[vertices.length];
+                    double[] lons = new double[vertices.length];
+                    for (int i = 0; i < vertices.length; i++) {
+                        String[] latLon = vertices[i].split(",");
+                        lats[i] = Double.parseDouble(latLon[0].trim());
+                        lons[i] = Double.parseDouble(latLon[1].trim());
+                    }
+                    zones.add(new Zone(parts[0], Double.parseDouble(parts[1]), lats, lons));
+                } catch (RuntimeException e) {
+                    throw new IOException(file.getFileName() + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return build(zones);
+    }
+
+    static DeliveryZones build(List<Zone> zones) {
+        // The median, so a few huge zones do not coarsen the grid for all the others
+        double[] extents = new double[zones.size()];
+        for (int i = 0; i < extents.length; i++) {
+            Zone zone = zones.get(i);
+            extents[i] = Math.max(zone.maxLat - zone.minLat, zone.maxLon - zone.minLon);
+        }
+        Arrays.sort(extents);
+        double cell = zones.isEmpty() ? 1.0 : Math.max(1e-4, extents[extents.length / 2]);
+
+        Map<Long, List<Zone>> cells = new HashMap<>();
+        List<Zone> oversized = new ArrayList<>();
+        for (Zone zone : zones) {
+            long r0 = cellOf(zone.minLat, cell), r1 = cellOf(zone.maxLat, cell);
+            long c0 = cellOf(zone.minLon, cell), c1 = cellOf(zone.maxLon, cell);
+            if ((r1 - r0 + 1) * (c1 - c0 + 1) > MAX_CELLS_PER_ZONE) {
+                oversized.add(zone);
+                continue;
+            }
+            for (long r = r0; r <= r1; r++) {
+                for (long c = c0; c <= c1; c++) {
+                    cells.computeIfAbsent(key(r, c), k -> new ArrayList<>(2)).add(zone);
+                }
+            }
+        }
+        Map<Long, Zone[]> grid = new HashMap<>(cells.size() * 2);
+        for (Map.Entry<Long, List<Zone>> entry : cells.entrySet()) {
+            grid.put(entry.getKey(), entry.getValue().toArray(NONE));
+        }
+        return new DeliveryZones(grid, oversized.toArray(NONE), cell, zones.size());
+    }
+
+    int size() {
+        return zoneCount;
+    }
+
+    /** Zone containing the point, the cheapest one if zones overlap, or null when undeliverable. */
+    Zone locate(double lat, double lon) {
+        Zone[] candidates = grid.get(key(cellOf(lat, cellDegrees), cellOf(lon, cellDegrees)));
+        Zone best = cheapest(candidates == null ? NONE : candidates, lat, lon, null);
+        return cheapest(oversized, lat, lon, best);
+    }
+
+    private static Zone cheapest(Zone[] candidates, double lat, double lon, Zone best) {
+        for (Zone zone : candidates) {
+            if (zone.contains(lat, lon) && (best == null || zone.fee < best.fee)) {
+                best = zone;
+            }
+        }
+        return best;
+    }
+
+    private static long cellOf(double degrees, double cell) {
+        return (long) Math.floor(degrees / cell);
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) ^ (col & 0xFFFFFFFFL);
+    }
+}
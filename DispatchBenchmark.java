@@ -0,0 +1,89 @@
+package com.mycompany.pizzaordersystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reproducible route-planning benchmark. Generates seeded synthetic stop
+ * sets (a few dense neighbourhoods plus scattered addresses around the
+ * store) and reports planning time and total route length with and without
+ * 2-opt.
+ *
+ * Usage: java com.mycompany.pizzaordersystem.DispatchBenchmark [stopsPerRoute] [budgetMillis] [seed]
+ */
+final class DispatchBenchmark {
+    private static final int[] SIZES = {100, 500, 1000, 2000, 5000};
+    private static final double DEPOT_LAT = 23.588;
+    private static final double DEPOT_LON = 58.383;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private DispatchBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int stopsPerRoute = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        long budgetMillis = args.length > 1 ? Long.parseLong(args[1]) : DeliveryDispatcher.DEFAULT_BUDGET_MILLIS;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        ForkJoinPool pool = new ForkJoinPool();
+
+        System.out.printf("stops/route=%d budget=%dms seed=%d threads=%d%n",
+            stopsPerRoute, budgetMillis, seed, pool.getParallelism());
+        System.out.printf("%6s %6s %10s %12s %12s %8s%n", "stops", "routes", "plan ms", "nn km", "2-opt km", "saved");
+        for (int size : SIZES) {
+            List<DeliveryDispatcher.Stop> stops = syntheticStops(size, seed);
+            double nnKm = totalKm(DeliveryDispatcher.plan(pool, stops, DEPOT_LAT, DEPOT_LON, stopsPerRoute, 0));
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                DeliveryDispatcher.plan(pool, stops, DEPOT_LAT, DEPOT_LON, stopsPerRoute, budgetMillis * 1_000_000L);
+            }
+            long elapsed = 0;
+            List<DeliveryDispatcher.Route> routes = null;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                routes = DeliveryDispatcher.plan(pool, stops, DEPOT_LAT, DEPOT_LON, stopsPerRoute, budgetMillis * 1_000_000L);
+                elapsed += System.nanoTime() - start;
+            }
+            double optKm = totalKm(routes);
+            System.out.printf("%6d %6d %10.2f %12.1f %12.1f %7.1f%%%n", size, routes.size(),
+                elapsed / 1e6 / MEASURED_ROUNDS, nnKm, optKm, 100 * (nnKm - optKm) / nnKm);
+        }
+        pool.shutdown();
+    }
+
+    static List<DeliveryDispatcher.Stop> syntheticStops(int count, long seed) {
+        Random random = new Random(seed ^ count);
+        int hotspots = 8;
+        double[] hotLat = new double[hotspots];
+        double[] hotLon = new double[hotspots];
+        for (int i = 0; i < hotspots; i++) {
+            hotLat[i] = DEPOT_LAT + (random.nextDouble() - 0.5) * 0.2;
+            hotLon[i] = DEPOT_LON + (random.nextDouble() - 0.5) * 0.2;
+        }
+        List<DeliveryDispatcher.Stop> stops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double lat;
+            double lon;
+            if (random.nextInt(4) == 0) {
+                lat = DEPOT_LAT + (random.nextDouble() - 0.5) * 0.3;
+                lon = DEPOT_LON + (random.nextDouble() - 0.5) * 0.3;
+            } else {
+                int h = random.nextInt(hotspots);
+                lat = hotLat[h] + random.nextGaussian() * 0.01;
+                lon = hotLon[h] + random.nextGaussian() * 0.01;
+            }
+            stops.add(new DeliveryDispatcher.Stop(null, lat, lon));
+        }
+        return stops;
+    }
+
+    private static double totalKm(List<DeliveryDispatcher.Route> routes) {
+        double total = 0;
+        for (DeliveryDispatcher.Route route : routes) {
+            total += route.lengthKm;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,118 @@
+package com.mycompany.pizzaordersystem;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Domain events (cart and rating changes) delivered to UI subscribers at
+ * most once per frame. publish() only queues the event; the first event of
+ * a frame schedules one flush on the EDT, and each subscriber then gets
+ * every event of its types from that frame in a single call. A loop that
+ * adds 200 items therefore costs one cart refresh, not 200.
+ */
+final class EventBus {
+    enum Type {
+        ITEM_ADDED, ITEM_REMOVED, CART_CLEARED, RATING_CHANGED
+    }
+
+    static final class Event {
+        final Type type;
+        final String item;
+        final int value;
+
+        Event(Type type, String item, int value) {
+            this.type = type;
+            this.item = item;
+            this.value = value;
+        }
+    }
+
+    interface Subscriber {
+        /** Called on the EDT with this frame's events of the subscribed types, oldest first. */
+        void onEvents(List<Event> events);
+    }
+
+    private static final class Subscription {
+        final Subscriber subscriber;
+        final Set<Type> types;
+
+        Subscription(Subscriber subscriber, Set<Type> types) {
+            this.subscriber = subscriber;
+            this.types = types;
+        }
+    }
+
+    private static final long FRAME_NANOS = 16_000_000L;
+
+    private final ConcurrentLinkedQueue<Event> pending = new ConcurrentLinkedQueue<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Timer frameTimer;
+    private long lastFlushNanos;
+
+    EventBus() {
+        frameTimer = new Timer(0, e -> flush());
+        frameTimer.setRepeats(false);
+    }
+
+    void subscribe(Subscriber subscriber, Type first, Type... rest) {
+        subscriptions.add(new Subscription(subscriber, EnumSet.of(first, rest)));
+    }
+
+    /** Safe from any thread; never runs subscribers inline. */
+    void publish(Type type, String item, int value) {
+        pending.offer(new Event(type, item, value));
+        if (scheduled.compareAndSet(false, true)) {
+            if (SwingUtilities.isEventDispatchThread()) {
+                schedule();
+            } else {
+                SwingUtilities.invokeLater(this::schedule);
+            }
+        }
+    }
+
+    // A frame that started long enough ago flushes as soon as the current EDT task ends
+    private void schedule() {
+        long wait = FRAME_NANOS - (System.nanoTime() - lastFlushNanos);
+        if (wait <= 0) {
+            SwingUtilities.invokeLater(this::flush);
+        } else {
+            frameTimer.setInitialDelay((int) Math.max(1, wait / 1_000_000));
+            frameTimer.restart();
+        }
+    }
+
+    private void flush() {
+        scheduled.set(false);
+        List<Event> events = new ArrayList<>();
+        Event event;
+        while ((event = pending.poll()) != null) {
+            events.add(event);
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        lastFlushNanos = System.nanoTime();
+        for (Subscription subscription : subscriptions) {
+            List<Event> matching = new ArrayList<>();
+            for (Event e : events) {
+                if (subscription.types.contains(e.type)) {
+                    matching.add(e);
+                }
+            }
+            if (!matching.isEmpty()) {
+                try {
+                    subscription.subscriber.onEvents(matching);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.mycompany.pizzaordersystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ratings store plus a sorted index of favorites (rating of 4 or more),
+ * ordered by rating and then by name. Each rating change moves at most one
+ * entry and reports the old and new positions so views can patch a single row.
+ */
+final class FavoritesIndex {
+    static final int FAVORITE_THRESHOLD = 4;
+
+    interface Listener {
+        /**
+         * Called after a rating change. Indexes are positions in the favorites
+         * list, or -1 when the pizza is not (or no longer) a favorite.
+         */
+        void favoriteChanged(String pizzaName, int rating, int oldIndex, int newIndex);
+    }
+
+    private final Map<String, Integer> ratings;
+    private final List<String> favorites = new ArrayList<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Comparator<String> order;
+
+    FavoritesIndex(Map<String, Integer> ratings) {
+        this.ratings = ratings;
+        this.order = Comparator.<String>comparingInt(name -> -getRating(name))
+            .thenComparing(Comparator.naturalOrder());
+        for (Map.Entry<String, Integer> entry : ratings.entrySet()) {
+            if (entry.getValue() >= FAVORITE_THRESHOLD) {
+                favorites.add(entry.getKey());
+            }
+        }
+        favorites.sort(order);
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    int getRating(String pizzaName) {
+        return ratings.getOrDefault(pizzaName, 0);
+    }
+
+    List<String> getFavorites() {
+        return Collections.unmodifiableList(favorites);
+    }
+
+    void setRating(String pizzaName, int rating) {
+        int oldIndex = indexOf(pizzaName);
+        if (oldIndex >= 0) {
+            favorites.remove(oldIndex);
+        }
+        ratings.put(pizzaName, rating);
+        int newIndex = -1;
+        if (rating >= FAVORITE_THRESHOLD) {
+            newIndex = -(Collections.binarySearch(favorites, pizzaName, order) + 1);
+            favorites.add(newIndex, pizzaName);
+        }
+        for (Listener listener : listeners) {
+            listener.favoriteChanged(pizzaName, rating, oldIndex, newIndex);
+        }
+    }
+
+    private int indexOf(String pizzaName) {
+        if (getRating(pizzaName) < FAVORITE_THRESHOLD) {
+            return -1;
+        }
+        int index = Collections.binarySearch(favorites, pizzaName, order);
+        return index >= 0 ? index : -1;
+    }
+}
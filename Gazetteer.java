@@ -0,0 +1,130 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local address-to-coordinate lookup. Loaded from a tab-separated file of
+ * "address\tlatitude\tlongitude" lines; addresses are normalized on both
+ * load and lookup so spelling variants ("12 Main St." / "12 main street")
+ * resolve to the same entry.
+ */
+final class Gazetteer {
+    static final class Point {
+        final double lat;
+        final double lon;
+
+        Point(double lat, double lon) {
+            this.lat = lat;
+            this.lon = lon;
+        }
+    }
+
+    private static final Map<String, String> ABBREVIATIONS = new HashMap<>();
+    static {
+        ABBREVIATIONS.put("st", "street");
+        ABBREVIATIONS.put("rd", "road");
+        ABBREVIATIONS.put("ave", "avenue");
+        ABBREVIATIONS.put("av", "avenue");
+        ABBREVIATIONS.put("blvd", "boulevard");
+        ABBREVIATIONS.put("bldg", "building");
+        ABBREVIATIONS.put("apt", "apartment");
+        ABBREVIATIONS.put("no", "number");
+        ABBREVIATIONS.put("nr", "near");
+        ABBREVIATIONS.put("opp", "opposite");
+        ABBREVIATIONS.put("sq", "square");
+        ABBREVIATIONS.put("hwy", "highway");
+    }
+
+    private final Map<String, Point> entries = new HashMap<>();
+
+    static Gazetteer load(Path file) throws IOException {
+        Gazetteer gazetteer = new Gazetteer();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length < 3) {
+                    throw new IOException(file.getFileName() + ":" + lineNo + ": expected address, lat, lon");
+                }
+                try {
+                    gazetteer.put(parts[0], Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file.getFileName() + ":" + lineNo + ": bad coordinate", e);
+                }
+            }
+        }
+        return gazetteer;
+    }
+
+    void put(String address, double lat, double lon) {
+        entries.put(normalize(address), new Point(lat, lon));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Finds the coordinates for an address. Leading tokens (house or flat
+     * numbers) are dropped one at a time until a known street or area matches.
+     */
+    Point lookup(String address) {
+        String key = normalize(address);
+        while (!key.isEmpty()) {
+            Point point = entries.get(key);
+            if (point != null) {
+                return point;
+            }
+            int space = key.indexOf(' ');
+            if (space < 0) {
+                break;
+            }
+            key = key.substring(space + 1);
+        }
+        return null;
+    }
+
+    /** Lower-cases, strips punctuation, expands common abbreviations and collapses spaces. */
+    static String normalize(String address) {
+        if (address == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(address.length());
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= address.length(); i++) {
+            char c = i < address.length() ? Character.toLowerCase(address.charAt(i)) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (c != '\'') {
+                // Hyphens, punctuation and spaces all separate words ("Al-Khuwair" = "Al Khuwair");
+                // apostrophes are dropped inside words
+                flush(out, token);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void flush(StringBuilder out, StringBuilder token) {
+        if (token.length() == 0) {
+            return;
+        }
+        String word = token.toString();
+        String expanded = ABBREVIATIONS.get(word);
+        if (out.length() > 0) {
+            out.append(' ');
+        }
+        out.append(expanded != null ? expanded : word);
+        token.setLength(0);
+    }
+}
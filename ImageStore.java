@@ -0,0 +1,293 @@
+package com.mycompany.pizzaordersystem;
+
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Shared, memory-bounded store for menu photos, deal banners and icons.
+ * Each image is identified by a key (resource and pixel size), so every
+ * caller asking for the same picture at the same size paints from one
+ * copy. Images are loaded the first time they are painted, i.e. when they
+ * scroll into view.
+ *
+ * Full-size pixels are only kept for the most recently painted images, up
+ * to a byte budget. Once loaded, every image is also packed to PNG bytes
+ * with a quarter-resolution proxy; when the budget is exceeded the least
+ * recently painted image drops to a soft reference, which the collector
+ * may clear under heap pressure. Painting an evicted image takes it back
+ * if it is still reachable, otherwise draws the proxy and unpacks the PNG
+ * on a background thread, then repaints.
+ */
+final class ImageStore {
+    static final class Stats {
+        final int images;
+        final int resident;
+        final long residentBytes;
+        final long packedBytes;
+        final long budgetBytes;
+        final long evictions;
+        final long rehydrations;
+        final long revivals;
+
+        Stats(int images, int resident, long residentBytes, long packedBytes, long budgetBytes,
+              long evictions, long rehydrations, long revivals) {
+            this.images = images;
+            this.resident = resident;
+            this.residentBytes = residentBytes;
+            this.packedBytes = packedBytes;
+            this.budgetBytes = budgetBytes;
+            this.evictions = evictions;
+            this.rehydrations = rehydrations;
+            this.revivals = revivals;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Images: %d of %d resident, %d KB of %d KB budget, %d KB packed; "
+                    + "%d evicted, %d unpacked, %d revived",
+                resident, images, residentBytes / 1024, budgetBytes / 1024, packedBytes / 1024,
+                evictions, rehydrations, revivals);
+        }
+    }
+
+    // Proxies are this many times smaller along each side
+    private static final int PROXY_SCALE = 4;
+
+    private final long budgetBytes;
+    private final Map<String, ManagedIcon> icons = new HashMap<>();
+    // Images holding full pixels, least recently painted first
+    private final LinkedHashMap<ManagedIcon, Boolean> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedBlockingQueue<Runnable> work = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private long residentBytes;
+    private long packedBytes;
+    private long evictions;
+    private long rehydrations;
+    private long revivals;
+
+    ImageStore(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        worker = new Thread(this::workLoop, "image-store");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Icon for the key, shared by every caller. The loader runs on first
+     * paint and must return a width x height image (a placeholder rather
+     * than null when the resource is missing).
+     */
+    synchronized Icon icon(String key, int width, int height, Supplier<BufferedImage> loader) {
+        ManagedIcon icon = icons.get(key);
+        if (icon == null) {
+            icon = new ManagedIcon(width, height, loader);
+            icons.put(key, icon);
+        }
+        return icon;
+    }
+
+    synchronized Stats stats() {
+        return new Stats(icons.size(), resident.size(), residentBytes, packedBytes, budgetBytes,
+            evictions, rehydrations, revivals);
+    }
+
+    void shutdown() {
+        worker.interrupt();
+    }
+
+    private final class ManagedIcon implements Icon {
+        private final int width;
+        private final int height;
+        private Supplier<BufferedImage> loader;
+        private BufferedImage pixels;
+        private SoftReference<BufferedImage> evicted;
+        private byte[] packed;
+        private BufferedImage proxy;
+        private boolean unpacking;
+        // Where the proxy was painted while unpacking; repainted once the pixels are back
+        private final Map<Component, Rectangle> waiting = new HashMap<>();
+
+        ManagedIcon(int width, int height, Supplier<BufferedImage> loader) {
+            this.width = width;
+            this.height = height;
+            this.loader = loader;
+        }
+
+        @Override
+        public int getIconWidth() {
+            return width;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return height;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            BufferedImage image = acquire(this, c, x, y);
+            if (image != null) {
+                g.drawImage(image, x, y, null);
+                return;
+            }
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(proxy, x, y, width, height, null);
+            g2.dispose();
+        }
+    }
+
+    // Full pixels for painting now, or null when they are being unpacked
+    private BufferedImage acquire(ManagedIcon icon, Component c, int x, int y) {
+        Supplier<BufferedImage> loader;
+        synchronized (this) {
+            if (icon.pixels != null) {
+                resident.get(icon);
+                return icon.pixels;
+            }
+            BufferedImage revived = icon.evicted == null ? null : icon.evicted.get();
+            if (revived != null) {
+                revivals++;
+                makeResident(icon, revived);
+                return revived;
+            }
+            if (icon.packed != null) {
+                icon.waiting.put(c, new Rectangle(x, y, icon.width, icon.height));
+                if (!icon.unpacking) {
+                    icon.unpacking = true;
+                    work.add(() -> unpack(icon));
+                }
+                return null;
+            }
+            loader = icon.loader;
+        }
+        // First paint: load outside the lock so other images keep painting
+        BufferedImage loaded = toArgb(loader.get(), icon.width, icon.height);
+        synchronized (this) {
+            if (icon.pixels != null) {
+                return icon.pixels;
+            }
+            icon.loader = null;
+            makeResident(icon, loaded);
+        }
+        work.add(() -> pack(icon, loaded));
+        return loaded;
+    }
+
+    private void makeResident(ManagedIcon icon, BufferedImage image) {
+        icon.pixels = image;
+        icon.evicted = null;
+        resident.put(icon, Boolean.TRUE);
+        residentBytes += bytes(image);
+        trim(icon);
+    }
+
+    // Evicts least recently painted images until within budget; unpacked images cannot go yet
+    private void trim(ManagedIcon keep) {
+        Iterator<ManagedIcon> it = resident.keySet().iterator();
+        while (residentBytes > budgetBytes && it.hasNext()) {
+            ManagedIcon victim = it.next();
+            if (victim == keep || victim.packed == null) {
+                continue;
+            }
+            it.remove();
+            residentBytes -= bytes(victim.pixels);
+            victim.evicted = new SoftReference<>(victim.pixels);
+            victim.pixels = null;
+            evictions++;
+        }
+    }
+
+    private void pack(ManagedIcon icon, BufferedImage image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            // Stays resident-only; it just cannot be evicted
+            e.printStackTrace();
+            return;
+        }
+        int pw = Math.max(1, icon.width / PROXY_SCALE);
+        int ph = Math.max(1, icon.height / PROXY_SCALE);
+        BufferedImage proxy = new BufferedImage(pw, ph, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = proxy.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(image, 0, 0, pw, ph, null);
+        g2.dispose();
+        byte[] bytes = out.toByteArray();
+        synchronized (this) {
+            icon.packed = bytes;
+            icon.proxy = proxy;
+            packedBytes += bytes.length + bytes(proxy);
+            trim(null);
+        }
+    }
+
+    private void unpack(ManagedIcon icon) {
+        BufferedImage image = null;
+        try {
+            image = toArgb(ImageIO.read(new ByteArrayInputStream(icon.packed)), icon.width, icon.height);
+        } catch (IOException e) {
+            // Keeps showing the proxy; the next paint tries again
+            e.printStackTrace();
+        }
+        Map<Component, Rectangle> repaint;
+        synchronized (this) {
+            icon.unpacking = false;
+            if (image != null && icon.pixels == null) {
+                rehydrations++;
+                makeResident(icon, image);
+            }
+            repaint = new HashMap<>(icon.waiting);
+            icon.waiting.clear();
+        }
+        if (image != null) {
+            for (Map.Entry<Component, Rectangle> entry : repaint.entrySet()) {
+                entry.getKey().repaint(entry.getValue().x, entry.getValue().y, icon.width, icon.height);
+            }
+        }
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                work.take().run();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Copies into a width x height TYPE_INT_ARGB image, the fastest format to blit
+    private static BufferedImage toArgb(BufferedImage image, int width, int height) {
+        if (image != null && image.getType() == BufferedImage.TYPE_INT_ARGB
+                && image.getWidth() == width && image.getHeight() == height) {
+            return image;
+        }
+        BufferedImage argb = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        if (image != null) {
+            Graphics2D g2 = argb.createGraphics();
+            g2.drawImage(image, 0, 0, width, height, null);
+            g2.dispose();
+        }
+        return argb;
+    }
+
+    private static long bytes(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+}
@@ -0,0 +1,436 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ingredient stock of one kitchen, shared by all of its concurrent
+ * checkouts and by every terminal that shares the usage log. A recipe
+ * table maps menu items and customizations ("Large Size", "Pepperoni") to
+ * the ingredient units they use. Counters are updated with compare-and-set
+ * only and sit on their own cache lines, so concurrent checkouts never
+ * block each other.
+ *
+ * Recipes and stock levels are configured up front; after that only the
+ * counters change. Ingredients without a stock level are not tracked.
+ *
+ * With a usage log, every reservation and every release is appended to it
+ * and each terminal tails what the others append, the way CartReplicator
+ * tails its logs. A reservation first reads the log's tail, so it sees
+ * every reservation written before it. Two terminals taking the last units
+ * at the same instant can both succeed; the counter then goes below zero
+ * and turns further orders away until restock. The log is replayed on the
+ * next start, so stock survives a restart until the stock file is
+ * replaced (a restock). A checkout cut short by a crash keeps its units
+ * reserved, which errs on the side of selling too little.
+ */
+final class Inventory {
+    interface Listener {
+        /** Called on the thread that pushed the ingredient across its threshold. */
+        void lowStockChanged(String ingredient, boolean low);
+    }
+
+    // 16 longs = 128 bytes between counters, so neighbours never share a cache line
+    private static final int STRIDE = 16;
+    private static final int MAX_INGREDIENTS = 64;
+    private static final long UNTRACKED = Long.MAX_VALUE;
+    private static final long POLL_MILLIS = 20;
+
+    private final AtomicLongArray stock = new AtomicLongArray(MAX_INGREDIENTS * STRIDE);
+    private final long[] thresholds = new long[MAX_INGREDIENTS];
+    private final List<String> ingredients = new ArrayList<>();
+    private final Map<String, Integer> ingredientIndex = new HashMap<>();
+    // Recipe rows are flattened (ingredient, units) pairs
+    private final Map<String, int[]> recipes = new HashMap<>();
+    private final Set<Long> reserved = ConcurrentHashMap.newKeySet();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Marks this process's entries in the usage log, which it has applied already
+    private final String terminal = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final Object tailLock = new Object();
+    private Path usageLog;
+    private FileChannel reader;
+    private FileChannel appender;
+    private long offset;
+    // Bytes of a line still being appended; decoded once its newline arrives
+    private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+    private Thread tailer;
+
+    /** Reads "ingredient\tunits\tlowThreshold" lines. */
+    void loadStock(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length < 3) {
+                    throw new IOException(file.getFileName() + ":" + lineNo + ": expected ingredient, units, threshold");
+                }
+                try {
+                    setStock(parts[0].trim(), Long.parseLong(parts[1].trim()), Long.parseLong(parts[2].trim()));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file.getFileName() + ":" + lineNo + ": bad number", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the usage recorded in the log off the stock levels just loaded,
+     * then appends every reservation to it and keeps tailing it for those
+     * of other terminals. The log belongs to one version of the stock file;
+     * for any other version it starts again empty.
+     */
+    void openUsageLog(Path log, String stockVersion) throws IOException {
+        String header = "# stock " + stockVersion;
+        String first = null;
+        if (Files.exists(log)) {
+            try (BufferedReader lines = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+                first = lines.readLine();
+            }
+        }
+        if (!header.equals(first)) {
+            Files.write(log, (header + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        reader = FileChannel.open(log, StandardOpenOption.READ);
+        appender = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        usageLog = log;
+        catchUp();
+        tailer = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(POLL_MILLIS);
+                    catchUp();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Inventory: " + e.getMessage());
+                }
+            }
+        }, "inventory-usage");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    /** Stops tailing the usage log and closes it. */
+    void shutdown() {
+        if (tailer != null) {
+            tailer.interrupt();
+        }
+        synchronized (tailLock) {
+            try {
+                if (reader != null) {
+                    reader.close();
+                    appender.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Inventory: " + e.getMessage());
+            }
+            usageLog = null;
+        }
+    }
+
+    /** Defines what one unit of a menu item or customization uses, e.g. "Dough:1,Mozzarella:1". */
+    void defineRecipe(String name, String spec) {
+        String[] entries = spec.split(",");
+        int[] row = new int[entries.length * 2];
+        for (int i = 0; i < entries.length; i++) {
+            String[] pair = entries[i].split(":");
+            row[i * 2] = indexOf(pair[0].trim());
+            row[i * 2 + 1] = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+        }
+        recipes.put(name, row);
+    }
+
+    void setStock(String ingredient, long units, long lowThreshold) {
+        int index = indexOf(ingredient);
+        thresholds[index] = lowThreshold;
+        stock.set(index * STRIDE, units);
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** Remaining units, or -1 when the ingredient is not tracked. */
+    long getStock(String ingredient) {
+        Integer index = ingredientIndex.get(ingredient);
+        long units = index == null ? UNTRACKED : stock.get(index * STRIDE);
+        return units == UNTRACKED ? -1 : Math.max(0, units);
+    }
+
+    /** True when any ingredient of the recipe is at or below its low-stock threshold. */
+    boolean isLow(String recipe) {
+        int[] row = recipes.get(recipe);
+        if (row == null) {
+            return false;
+        }
+        for (int i = 0; i < row.length; i += 2) {
+            long units = stock.get(row[i] * STRIDE);
+            if (units != UNTRACKED && units <= thresholds[row[i]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes the ingredients for every line of the order, all or nothing.
+     * Throws IllegalArgumentException naming the missing ingredient when
+     * stock runs out; units taken before that point are put back.
+     */
+    void reserve(Order order) {
+        if (usageLog != null) {
+            try {
+                catchUp();
+            } catch (IOException e) {
+                // Goes ahead on what this terminal knows; the tailer reports the problem
+                System.err.println("Inventory: " + e.getMessage());
+            }
+        }
+        int[] needed = needed(order);
+        for (int i = 0; i < needed.length; i++) {
+            if (needed[i] > 0 && !take(i, needed[i])) {
+                for (int j = 0; j < i; j++) {
+                    if (needed[j] > 0) {
+                        give(j, needed[j]);
+                    }
+                }
+                throw new IllegalArgumentException("Sorry, we just ran out of " + ingredients.get(i) + ".");
+            }
+        }
+        reserved.add(order.id);
+        append("R", order.id, needed);
+    }
+
+    /** Puts back the ingredients of an order whose checkout failed after reserve(). */
+    void release(Order order) {
+        if (!reserved.remove(order.id)) {
+            return;
+        }
+        int[] needed = needed(order);
+        for (int i = 0; i < needed.length; i++) {
+            if (needed[i] > 0) {
+                give(i, needed[i]);
+            }
+        }
+        append("X", order.id, needed);
+    }
+
+    /** Forgets a completed reservation so it can no longer be released; its usage is already logged. */
+    void commit(Order order) {
+        reserved.remove(order.id);
+    }
+
+    // "R|X\tterminal\torderId\tingredient:units,...": units reserved, or released again
+    private void append(String kind, long orderId, int[] needed) {
+        if (usageLog == null) {
+            return;
+        }
+        StringBuilder entry = new StringBuilder().append(kind).append('\t').append(terminal).append('\t')
+            .append(orderId).append('\t');
+        String separator = "";
+        for (int i = 0; i < needed.length; i++) {
+            if (needed[i] > 0 && stock.get(i * STRIDE) != UNTRACKED) {
+                entry.append(separator).append(ingredients.get(i)).append(':').append(needed[i]);
+                separator = ",";
+            }
+        }
+        entry.append('\n');
+        // One write per entry, so terminals appending at once never interleave within a line
+        ByteBuffer buffer = ByteBuffer.wrap(entry.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                appender.write(buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not record ingredient usage: " + e.getMessage());
+        }
+    }
+
+    // Applies what other terminals appended since the last call
+    private void catchUp() throws IOException {
+        synchronized (tailLock) {
+            if (usageLog == null) {
+                return;
+            }
+            long size = reader.size();
+            if (size < offset) {
+                // Another terminal restocked and started the log again
+                System.err.println("Inventory: " + usageLog.getFileName() + " was restarted; restart to load the new stock");
+                offset = 0;
+                partial.reset();
+            }
+            if (size == offset) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - offset, 1 << 20));
+            while (buffer.hasRemaining() && reader.read(buffer, offset + buffer.position()) > 0) {
+                // keep reading
+            }
+            offset += buffer.position();
+            byte[] bytes = buffer.array();
+            int start = 0;
+            for (int i = 0; i < buffer.position(); i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                partial.write(bytes, start, i - start);
+                String line = new String(partial.toByteArray(), StandardCharsets.UTF_8);
+                partial.reset();
+                start = i + 1;
+                try {
+                    applyUsage(line);
+                } catch (RuntimeException e) {
+                    System.err.println("Inventory: " + usageLog.getFileName() + ": skipped entry '" + line + "': " + e);
+                }
+            }
+            partial.write(bytes, start, buffer.position() - start);
+        }
+    }
+
+    private void applyUsage(String line) {
+        if (line.startsWith("#") || line.isEmpty()) {
+            return;
+        }
+        String[] parts = line.split("\t", -1);
+        if (parts.length != 4 || !(parts[0].equals("R") || parts[0].equals("X"))) {
+            throw new IllegalArgumentException("expected R or X, terminal, orderId and ingredient:units");
+        }
+        if (parts[1].equals(terminal) || parts[3].isEmpty()) {
+            return;
+        }
+        // Parsed in full before anything changes, so a bad entry changes nothing
+        String[] used = parts[3].split(",");
+        int[] indexes = new int[used.length];
+        long[] units = new long[used.length];
+        for (int i = 0; i < used.length; i++) {
+            int colon = used[i].indexOf(':');
+            Integer index = ingredientIndex.get(used[i].substring(0, colon));
+            indexes[i] = index == null ? -1 : index;
+            units[i] = Long.parseLong(used[i].substring(colon + 1));
+        }
+        long sign = parts[0].equals("R") ? -1 : 1;
+        for (int i = 0; i < used.length; i++) {
+            if (indexes[i] >= 0) {
+                adjust(indexes[i], sign * units[i]);
+            }
+        }
+    }
+
+    // Units of each ingredient the whole order uses
+    private int[] needed(Order order) {
+        int[] needed = new int[ingredients.size()];
+        for (Order.Line line : order.lines) {
+            addRecipe(needed, line.item, line.quantity);
+            if (line.customizations != null) {
+                for (String customization : line.customizations) {
+                    addRecipe(needed, customization, line.quantity);
+                }
+            }
+        }
+        return needed;
+    }
+
+    private void addRecipe(int[] needed, String name, int quantity) {
+        int[] row = recipes.get(name);
+        if (row != null) {
+            for (int i = 0; i < row.length; i += 2) {
+                needed[row[i]] += row[i + 1] * quantity;
+            }
+        }
+    }
+
+    private boolean take(int index, long units) {
+        int slot = index * STRIDE;
+        long current;
+        long next;
+        do {
+            current = stock.get(slot);
+            if (current == UNTRACKED) {
+                return true;
+            }
+            next = current - units;
+            if (next < 0) {
+                return false;
+            }
+        } while (!stock.compareAndSet(slot, current, next));
+        if (current > thresholds[index] && next <= thresholds[index]) {
+            fire(index, true);
+        }
+        return true;
+    }
+
+    // Another terminal's usage: applied even when it takes the counter below zero
+    private void adjust(int index, long delta) {
+        int slot = index * STRIDE;
+        long current;
+        long next;
+        do {
+            current = stock.get(slot);
+            if (current == UNTRACKED) {
+                return;
+            }
+            next = current + delta;
+        } while (!stock.compareAndSet(slot, current, next));
+        boolean wasLow = current <= thresholds[index];
+        if (wasLow != next <= thresholds[index]) {
+            fire(index, !wasLow);
+        }
+    }
+
+    private void give(int index, long units) {
+        int slot = index * STRIDE;
+        long current;
+        long next;
+        do {
+            current = stock.get(slot);
+            if (current == UNTRACKED) {
+                return;
+            }
+            next = current + units;
+        } while (!stock.compareAndSet(slot, current, next));
+        if (current <= thresholds[index] && next > thresholds[index]) {
+            fire(index, false);
+        }
+    }
+
+    private void fire(int index, boolean low) {
+        for (Listener listener : listeners) {
+            listener.lowStockChanged(ingredients.get(index), low);
+        }
+    }
+
+    private int indexOf(String ingredient) {
+        Integer index = ingredientIndex.get(ingredient);
+        if (index == null) {
+            if (ingredients.size() == MAX_INGREDIENTS) {
+                throw new IllegalStateException("Too many ingredients");
+            }
+            index = ingredients.size();
+            ingredients.add(ingredient);
+            ingredientIndex.put(ingredient, index);
+            stock.set(index * STRIDE, UNTRACKED);
+        }
+        return index;
+    }
+}
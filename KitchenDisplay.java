@@ -0,0 +1,175 @@
+package com.mycompany.pizzaordersystem;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Kitchen view of the tickets waiting at a kitchen queue, oldest first.
+ * "Ready" takes the oldest ticket off the queue once it has gone out, which
+ * is what keeps the queue from growing without bound. Below them are the
+ * drivers' routes from the last dispatch window. Like the manager view,
+ * both lists are pulled on a REFRESH_MILLIS timer while on screen.
+ */
+final class KitchenDisplay extends JPanel {
+    private static final int REFRESH_MILLIS = 1000;
+    private static final int SHOWN_TICKETS = 50;
+
+    private final Supplier<Map<String, KitchenQueue>> kitchens;
+    private final Supplier<List<String>> routes;
+    private final JComboBox<String> kitchenChoice = new JComboBox<>();
+    private final JLabel waiting = new JLabel(" ");
+    private final DefaultListModel<String> tickets = new DefaultListModel<>();
+    private final DefaultListModel<String> routeLines = new DefaultListModel<>();
+    private final SimpleDateFormat clock = new SimpleDateFormat("HH:mm");
+    private final Timer refresh;
+    // Set while the kitchen choice is refilled, which fires its listener
+    private boolean refilling;
+
+    /** The kitchens are looked up on every refresh, so branches added later show up. */
+    KitchenDisplay(Theme theme, Supplier<Map<String, KitchenQueue>> kitchens, Supplier<List<String>> routes) {
+        super(new BorderLayout(0, 10));
+        this.kitchens = kitchens;
+        this.routes = routes;
+        setOpaque(false);
+        setBorder(new EmptyBorder(15, 15, 15, 15));
+
+        JPanel header = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        header.setOpaque(false);
+        JLabel title = new JLabel("Kitchen");
+        title.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        theme.foreground(title, Theme.Token.TEXT_STRONG);
+        header.add(title);
+        kitchenChoice.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        kitchenChoice.addActionListener(e -> {
+            if (!refilling) {
+                update(true);
+            }
+        });
+        header.add(kitchenChoice);
+        waiting.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        theme.foreground(waiting, Theme.Token.TEXT_SUBTLE);
+        header.add(waiting);
+        JButton ready = new JButton("Ready");
+        ready.setFont(new Font("Segoe UI", Font.BOLD, 13));
+        ready.setFocusPainted(false);
+        ready.setToolTipText("The oldest ticket has gone out");
+        ready.addActionListener(e -> bump());
+        header.add(ready);
+        add(header, BorderLayout.NORTH);
+
+        JList<String> list = new JList<>(tickets);
+        list.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        theme.background(list, Theme.Token.CARD);
+        theme.foreground(list, Theme.Token.TEXT_BODY);
+        add(new JScrollPane(list), BorderLayout.CENTER);
+
+        JPanel routePanel = new JPanel(new BorderLayout(0, 5));
+        routePanel.setOpaque(false);
+        JLabel routeTitle = new JLabel("Driver routes");
+        routeTitle.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        theme.foreground(routeTitle, Theme.Token.TEXT_STRONG);
+        routePanel.add(routeTitle, BorderLayout.NORTH);
+        JList<String> routeList = new JList<>(routeLines);
+        routeList.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        routeList.setVisibleRowCount(5);
+        theme.background(routeList, Theme.Token.CARD);
+        theme.foreground(routeList, Theme.Token.TEXT_BODY);
+        routePanel.add(new JScrollPane(routeList), BorderLayout.CENTER);
+        add(routePanel, BorderLayout.SOUTH);
+
+        refresh = new Timer(REFRESH_MILLIS, e -> update(false));
+        refresh.setInitialDelay(0);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refresh.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refresh.stop();
+        super.removeNotify();
+    }
+
+    private void bump() {
+        KitchenQueue queue = selected();
+        if (queue != null) {
+            queue.poll();
+        }
+        update(true);
+    }
+
+    private KitchenQueue selected() {
+        Object name = kitchenChoice.getSelectedItem();
+        return name == null ? null : kitchens.get().get(name);
+    }
+
+    // Pulls the selected kitchen's tickets; skipped while hidden unless forced
+    private void update(boolean force) {
+        if (!force && !isShowing()) {
+            return;
+        }
+        Map<String, KitchenQueue> current = kitchens.get();
+        if (current.size() != kitchenChoice.getItemCount()) {
+            Object selected = kitchenChoice.getSelectedItem();
+            refilling = true;
+            kitchenChoice.removeAllItems();
+            for (String name : current.keySet()) {
+                kitchenChoice.addItem(name);
+            }
+            kitchenChoice.setSelectedItem(selected != null && current.containsKey(selected)
+                ? selected : kitchenChoice.getItemAt(0));
+            refilling = false;
+        }
+        replace(routeLines, routes.get());
+        KitchenQueue queue = selected();
+        if (queue == null) {
+            return;
+        }
+        List<Order> orders = queue.snapshot(SHOWN_TICKETS);
+        List<String> lines = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            lines.add(ticket(order));
+        }
+        waiting.setText(queue.size() + " waiting");
+        replace(tickets, lines);
+    }
+
+    // Leaves the list alone when nothing changed, so its selection and scroll position stay
+    private static void replace(DefaultListModel<String> model, List<String> lines) {
+        if (!lines.equals(Collections.list(model.elements()))) {
+            model.clear();
+            for (String line : lines) {
+                model.addElement(line);
+            }
+        }
+    }
+
+    private String ticket(Order order) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(clock.format(new Date(order.createdAtMillis))).append("  #").append(order.id % 10_000)
+          .append("  ").append(order.customer).append(":  ");
+        String separator = "";
+        for (Order.Line line : order.lines) {
+            sb.append(separator).append(line.quantity).append("x ").append(line.item);
+            if (line.customizations != null && !line.customizations.isEmpty()) {
+                sb.append(" (").append(String.join(", ", line.customizations)).append(')');
+            }
+            separator = ", ";
+        }
+        if (order.isPreOrder()) {
+            sb.append("  - deliver at ").append(clock.format(new Date(order.deliverAtMillis)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,44 @@
+package com.mycompany.pizzaordersystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Orders handed to the kitchen, oldest first. Producers (checkout) never
+ * block; the kitchen display polls tickets off the head.
+ */
+final class KitchenQueue {
+    private final ConcurrentLinkedQueue<Order> tickets = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    void submit(Order order) {
+        tickets.offer(order);
+        size.incrementAndGet();
+    }
+
+    Order poll() {
+        Order order = tickets.poll();
+        if (order != null) {
+            size.decrementAndGet();
+        }
+        return order;
+    }
+
+    /** Up to max tickets from the head, for display; they stay queued. */
+    List<Order> snapshot(int max) {
+        List<Order> head = new ArrayList<>(Math.min(max, size()));
+        for (Order order : tickets) {
+            if (head.size() == max) {
+                break;
+            }
+            head.add(order);
+        }
+        return head;
+    }
+
+    int size() {
+        return size.get();
+    }
+}
@@ -0,0 +1,171 @@
+package com.mycompany.pizzaordersystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a cart taken at checkout. Pricing produces a copy
+ * with the subtotal, discount and total filled in. The promo code, if any,
+ * is the one the customer typed; it is validated during checkout. With
+ * several stores, pricing also records the store the order was routed to.
+ * A pre-order carries the time it should be delivered at; 0 means now.
+ */
+final class Order {
+    static final class Line {
+        final String item;
+        final int quantity;
+        final double unitPrice;
+        final List<String> customizations;
+
+        Line(String item, int quantity, double unitPrice, List<String> customizations) {
+            this.item = item;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.customizations = customizations == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(customizations));
+        }
+
+        double lineTotal() {
+            return unitPrice * quantity;
+        }
+    }
+
+    final long id;
+    final long createdAtMillis;
+    final String customer;
+    final String email;
+    final String destination;
+    final List<Line> lines;
+    final double subtotal;
+    final double discount;
+    final double deliveryFee;
+    final String promoCode;
+    final String store;
+    final long deliverAtMillis;
+
+    Order(long id, long createdAtMillis, String customer, String email, String destination, List<Line> lines) {
+        this(id, createdAtMillis, customer, email, destination, lines, 0.0, 0.0, 0.0, null, null, 0L);
+    }
+
+    private Order(long id, long createdAtMillis, String customer, String email, String destination,
+                  List<Line> lines, double subtotal, double discount, double deliveryFee, String promoCode, String store,
+                  long deliverAtMillis) {
+        this.id = id;
+        this.createdAtMillis = createdAtMillis;
+        this.customer = customer;
+        this.email = email;
+        this.destination = destination;
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        this.subtotal = subtotal;
+        this.discount = discount;
+        this.deliveryFee = deliveryFee;
+        this.promoCode = promoCode;
+        this.store = store;
+        this.deliverAtMillis = deliverAtMillis;
+    }
+
+    Order withPricing(double subtotal, double discount) {
+        return withPricing(subtotal, discount, deliveryFee);
+    }
+
+    Order withPricing(double subtotal, double discount, double deliveryFee) {
+        return new Order(id, createdAtMillis, customer, email, destination, lines, subtotal, discount, deliveryFee, promoCode, store, deliverAtMillis);
+    }
+
+    Order withPromoCode(String promoCode) {
+        return new Order(id, createdAtMillis, customer, email, destination, lines, subtotal, discount, deliveryFee, promoCode, store, deliverAtMillis);
+    }
+
+    /** Copy routed to a store, with the lines repriced from that store's menu. */
+    Order withStore(String store, List<Line> lines) {
+        return new Order(id, createdAtMillis, customer, email, destination, lines, subtotal, discount, deliveryFee, promoCode, store, deliverAtMillis);
+    }
+
+    Order withDeliverAt(long deliverAtMillis) {
+        return new Order(id, createdAtMillis, customer, email, destination, lines, subtotal, discount, deliveryFee, promoCode, store, deliverAtMillis);
+    }
+
+    boolean isPreOrder() {
+        return deliverAtMillis > 0;
+    }
+
+    double total() {
+        return Math.max(0.0, subtotal - discount) + deliveryFee;
+    }
+
+    int itemCount() {
+        int count = 0;
+        for (Line line : lines) {
+            count += line.quantity;
+        }
+        return count;
+    }
+
+    /** Single tab-separated line used by the order journal. */
+    String toRecord() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(id).append('\t').append(createdAtMillis).append('\t')
+          .append(clean(customer)).append('\t').append(clean(email)).append('\t')
+          .append(clean(destination)).append('\t')
+          .append(String.format("%.3f", subtotal)).append('\t')
+          .append(String.format("%.3f", discount)).append('\t')
+          .append(String.format("%.3f", deliveryFee)).append('\t')
+          .append(clean(promoCode)).append('\t')
+          .append(clean(store)).append('\t')
+          .append(deliverAtMillis).append('\t');
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append(clean(line.item)).append('*').append(line.quantity)
+              .append('@').append(String.format("%.3f", line.unitPrice));
+            if (!line.customizations.isEmpty()) {
+                sb.append('[').append(clean(String.join(";", line.customizations))).append(']');
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Reads back a journal line written by toRecord(). */
+    static Order fromRecord(String record) {
+        String[] f = record.split("\t", -1);
+        if (f.length != 12) {
+            throw new IllegalArgumentException("expected 12 fields, found " + f.length);
+        }
+        List<Line> lines = new ArrayList<>();
+        for (String entry : f[11].split("\\|")) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            List<String> customizations = Collections.emptyList();
+            int bracket = entry.indexOf('[');
+            if (bracket >= 0 && entry.endsWith("]")) {
+                customizations = Arrays.asList(entry.substring(bracket + 1, entry.length() - 1).split(";"));
+                entry = entry.substring(0, bracket);
+            }
+            int at = entry.lastIndexOf('@');
+            int star = entry.lastIndexOf('*', at);
+            if (at < 0 || star < 0) {
+                throw new IllegalArgumentException("bad line '" + entry + "'");
+            }
+            lines.add(new Line(entry.substring(0, star), Integer.parseInt(entry.substring(star + 1, at)),
+                money(entry.substring(at + 1)), customizations));
+        }
+        return new Order(Long.parseLong(f[0]), Long.parseLong(f[1]), f[2], f[3], f[4], lines,
+            money(f[5]), money(f[6]), money(f[7]),
+            f[8].isEmpty() ? null : f[8], f[9].isEmpty() ? null : f[9], Long.parseLong(f[10]));
+    }
+
+    // String.format writes the default locale's decimal separator
+    private static double money(String value) {
+        return Double.parseDouble(value.replace(',', '.'));
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('|', '/');
+    }
+}
@@ -0,0 +1,252 @@
+package com.mycompany.pizzaordersystem;
+
+import java.util.List;
+
+/**
+ * Checkout guard against duplicate submissions and order floods. Each
+ * order is reduced to a 64-bit fingerprint of the customer, address,
+ * delivery time and cart lines (line order does not matter). A repeat of
+ * a fingerprint seen in the last window is rejected, and every customer
+ * (by email) draws from a token bucket that refills at a fixed rate.
+ *
+ * The window is a ring of time buckets, each a fixed open-addressing
+ * table whose slots are stamped with the bucket's epoch, so an expired
+ * bucket is reused without being cleared. Probing is bounded, and all
+ * tables are allocated up front: a check is constant-time and allocates
+ * nothing. When every slot a fingerprint may probe is taken, the oldest
+ * of them (lowest order id) is overwritten, which can only miss a
+ * duplicate, never invent one.
+ */
+final class OrderGuard {
+    private static final int MAX_PROBES = 16;
+
+    private final long startNanos = System.nanoTime();
+    private final long bucketNanos;
+    private final int buckets;
+    private final int mask;
+    private final long[][] fingerprints;
+    private final long[][] stamps;
+    // Order that put the fingerprint there; 0 once forgotten
+    private final long[][] orderIds;
+
+    private final int customerMask;
+    private final long[] customerKeys;
+    private final double[] tokens;
+    private final long[] refilledAt;
+    private final boolean[] tracked;
+    private final double burst;
+    private final double tokensPerNano;
+
+    private long duplicates;
+    private long limited;
+
+    /**
+     * @param windowMillis how long a fingerprint blocks a repeat
+     * @param buckets time buckets the window is split into
+     * @param ordersPerSecond peak rate each bucket is sized for
+     * @param burst orders a customer may place back to back
+     * @param ordersPerMinute sustained rate per customer
+     * @param maxCustomers customers tracked at once; idle ones are evicted first
+     */
+    OrderGuard(long windowMillis, int buckets, int ordersPerSecond, int burst, double ordersPerMinute, int maxCustomers) {
+        this.buckets = buckets;
+        this.bucketNanos = windowMillis * 1_000_000L / buckets;
+        int capacity = tableSize((long) ordersPerSecond * windowMillis / 1000 / buckets * 2);
+        this.mask = capacity - 1;
+        this.fingerprints = new long[buckets][capacity];
+        this.stamps = new long[buckets][capacity];
+        this.orderIds = new long[buckets][capacity];
+        int customers = tableSize(maxCustomers * 2L);
+        this.customerMask = customers - 1;
+        this.customerKeys = new long[customers];
+        this.tokens = new double[customers];
+        this.refilledAt = new long[customers];
+        this.tracked = new boolean[customers];
+        this.burst = burst;
+        this.tokensPerNano = ordersPerMinute / 60e9;
+    }
+
+    /** Checkout validator; rejects by throwing IllegalArgumentException. */
+    void check(Order order) {
+        check(order, System.nanoTime());
+    }
+
+    synchronized void check(Order order, long now) {
+        long fingerprint = fingerprint(order);
+        long epoch = epoch(now);
+        for (int age = 0; age < buckets; age++) {
+            if (find(fingerprint, epoch - age) >= 0) {
+                duplicates++;
+                throw new IllegalArgumentException("This order was already placed a moment ago.");
+            }
+        }
+        int customer = customerSlot(hashCustomer(order.email), now);
+        double available = Math.min(burst, tokens[customer] + (now - refilledAt[customer]) * tokensPerNano);
+        refilledAt[customer] = now;
+        if (available < 1.0) {
+            tokens[customer] = available;
+            limited++;
+            throw new IllegalArgumentException("Too many orders in a short time; please wait a minute and try again.");
+        }
+        tokens[customer] = available - 1.0;
+        insert(fingerprint, epoch, order.id);
+    }
+
+    /**
+     * Undoes check() for an order that failed later in checkout, so the
+     * customer can retry the same cart. Does nothing for an order the guard
+     * itself rejected.
+     */
+    synchronized void forget(Order order) {
+        long fingerprint = fingerprint(order);
+        long epoch = epoch(System.nanoTime());
+        for (int age = 0; age < buckets; age++) {
+            int b = bucket(epoch - age);
+            int slot = find(fingerprint, epoch - age);
+            if (slot >= 0 && orderIds[b][slot] == order.id) {
+                orderIds[b][slot] = 0;
+                int customer = customerSlot(hashCustomer(order.email), System.nanoTime());
+                tokens[customer] = Math.min(burst, tokens[customer] + 1.0);
+                return;
+            }
+        }
+    }
+
+    synchronized long duplicateCount() {
+        return duplicates;
+    }
+
+    synchronized long limitedCount() {
+        return limited;
+    }
+
+    // Slot holding the live fingerprint in the epoch's bucket, or -1
+    private int find(long fingerprint, long epoch) {
+        int b = bucket(epoch);
+        long[] stamp = stamps[b];
+        long[] keys = fingerprints[b];
+        for (int p = 0; p < MAX_PROBES; p++) {
+            int slot = (int) (fingerprint + p) & mask;
+            if (stamp[slot] != epoch) {
+                return -1;
+            }
+            if (keys[slot] == fingerprint && orderIds[b][slot] != 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // Takes a free or forgotten slot, else evicts the oldest order on the probe run
+    private void insert(long fingerprint, long epoch, long orderId) {
+        int b = bucket(epoch);
+        long[] stamp = stamps[b];
+        long[] ids = orderIds[b];
+        int slot = -1;
+        for (int p = 0; p < MAX_PROBES; p++) {
+            int candidate = (int) (fingerprint + p) & mask;
+            if (stamp[candidate] != epoch) {
+                // Probing stops at the first slot from another epoch, so nothing may go past it
+                slot = candidate;
+                break;
+            }
+            if (slot < 0 || ids[candidate] < ids[slot]) {
+                slot = candidate;
+            }
+        }
+        stamp[slot] = epoch;
+        fingerprints[b][slot] = fingerprint;
+        orderIds[b][slot] = orderId;
+    }
+
+    // Starts at 1 so a never-used slot (stamp 0) is never current
+    private long epoch(long now) {
+        return (now - startNanos) / bucketNanos + 1;
+    }
+
+    private int bucket(long epoch) {
+        return (int) Math.floorMod(epoch, (long) buckets);
+    }
+
+    // Finds the customer's bucket, or claims a free or the longest-idle slot for them
+    private int customerSlot(long key, long now) {
+        int victim = -1;
+        for (int p = 0; p < MAX_PROBES; p++) {
+            int slot = (int) (key + p) & customerMask;
+            if (tracked[slot] && customerKeys[slot] == key) {
+                return slot;
+            }
+            if (victim < 0 || (tracked[victim]
+                    && (!tracked[slot] || refilledAt[slot] - refilledAt[victim] < 0))) {
+                victim = slot;
+            }
+        }
+        tracked[victim] = true;
+        customerKeys[victim] = key;
+        tokens[victim] = burst;
+        refilledAt[victim] = now;
+        return victim;
+    }
+
+    static long fingerprint(Order order) {
+        long lines = 0;
+        List<Order.Line> orderLines = order.lines;
+        for (int i = 0; i < orderLines.size(); i++) {
+            Order.Line line = orderLines.get(i);
+            long h = hash(line.item, 0x9E3779B97F4A7C15L);
+            h = mix(h ^ line.quantity * 0xC2B2AE3D27D4EB4FL ^ Math.round(line.unitPrice * 1000) * 0x165667B19E3779F9L);
+            List<String> customizations = line.customizations;
+            for (int c = 0; c < customizations.size(); c++) {
+                h += hash(customizations.get(c), 0x27D4EB2F165667C5L);
+            }
+            // Summed so the same lines in any order give the same fingerprint
+            lines += mix(h);
+        }
+        long h = hashCustomer(order.email);
+        h = hashFolded(order.destination, h);
+        h = mix(h ^ order.deliverAtMillis);
+        return mix(h + lines);
+    }
+
+    private static long hashCustomer(String email) {
+        return hashFolded(email, 0x84222325CBF29CE4L);
+    }
+
+    // Case-insensitive, without building a lower-case copy
+    private static long hashFolded(String value, long seed) {
+        long h = seed;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                h = (h ^ Character.toLowerCase(value.charAt(i))) * 0x100000001B3L;
+            }
+        }
+        return mix(h);
+    }
+
+    private static long hash(String value, long seed) {
+        long h = seed;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                h = (h ^ value.charAt(i)) * 0x100000001B3L;
+            }
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int tableSize(long entries) {
+        long size = 64;
+        while (size < entries && size < 1 << 24) {
+            size <<= 1;
+        }
+        return (int) size;
+    }
+}
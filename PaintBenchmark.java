@@ -0,0 +1,320 @@
+package com.mycompany.pizzaordersystem;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Offscreen paint benchmark for the custom-painted components. Each case is
+ * laid out at several window sizes, in the light and the dark theme, and
+ * painted into a BufferedImage for a number of frames on the event thread;
+ * the report gives mean and p99 time per frame and bytes allocated per
+ * frame. Runs headless (-Djava.awt.headless=true). With a display it also
+ * builds the real window in window-only mode (no journal, mailer, pre-orders
+ * or anything else under AppData), without showing it, and paints its
+ * header, menu tab, cart and total panels and the whole window.
+ *
+ * Given a baseline file, every case is checked against it: a mean frame time
+ * more than -Dnapuli.paint.timeTolerance (default 1.5) times the baseline,
+ * or an allocation more than ALLOCATION_TOLERANCE times it plus
+ * ALLOCATION_SLACK bytes, is a regression and the run exits with status 1.
+ * A missing baseline file is written from this run instead. Lines are
+ * "component\tsize\ttheme\tmeanMicros\tbytesPerFrame"; edit a line to
+ * loosen or tighten one case.
+ *
+ * Usage: java com.mycompany.pizzaordersystem.PaintBenchmark [frames] [warmupFrames] [baseline.tsv]
+ */
+final class PaintBenchmark {
+    private static final Dimension[] WINDOW_SIZES = {
+        new Dimension(1024, 768), new Dimension(1200, 850), new Dimension(1920, 1080)
+    };
+    private static final Color ACCENT = new Color(46, 204, 113);
+    private static final Color SECONDARY = new Color(241, 196, 15);
+    // Allocation is deterministic, so it gets far less room than time
+    private static final double ALLOCATION_TOLERANCE = 1.10;
+    private static final long ALLOCATION_SLACK = 512;
+
+    private static final class Result {
+        final String key;
+        final double meanMicros;
+        final long bytesPerFrame;
+
+        Result(String key, double meanMicros, long bytesPerFrame) {
+            this.key = key;
+            this.meanMicros = meanMicros;
+            this.bytesPerFrame = bytesPerFrame;
+        }
+    }
+
+    private static final class Case {
+        final String name;
+        final Supplier<JComponent> component;
+        // Component size for a given window size
+        final Function<Dimension, Dimension> size;
+
+        Case(String name, Supplier<JComponent> component, Function<Dimension, Dimension> size) {
+            this.name = name;
+            this.component = component;
+            this.size = size;
+        }
+    }
+
+    private PaintBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        Path baseline = args.length > 2 ? Paths.get(args[2]) : null;
+        List<Result> results = new ArrayList<>();
+        // Everything runs on the EDT, which also keeps component timers from firing mid-run
+        SwingUtilities.invokeAndWait(() -> run(frames, warmup, results));
+        int regressions = 0;
+        if (baseline != null && Files.exists(baseline)) {
+            regressions = compare(results, baseline);
+        } else if (baseline != null) {
+            writeBaseline(results, baseline);
+            System.out.println("Wrote baseline " + baseline);
+        }
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    private static void run(int frames, int warmup, List<Result> results) {
+        // Paint straight into the target image, as the real back buffer would be
+        RepaintManager.currentManager(null).setDoubleBufferingEnabled(false);
+        Theme theme = new Theme();
+        RenderCache renderCache = new RenderCache();
+        theme.addListener(renderCache::invalidate);
+
+        // Built once, never shown and with no backend; starts in the light theme like the app
+        PizzaOrderSystem frame = GraphicsEnvironment.isHeadless() ? null
+            : new PizzaOrderSystem(new StartupProfile(), true);
+
+        System.out.printf("frames=%d warmup=%d headless=%b%n", frames, warmup, frame == null);
+        System.out.printf("%-18s %11s %6s %10s %10s %12s%n", "component", "size", "theme", "mean us", "p99 us", "bytes/frame");
+        for (boolean dark : new boolean[] {false, true}) {
+            theme.setDark(dark);
+            List<Case> cases = standaloneCases(theme, renderCache);
+            if (frame != null) {
+                if (dark) {
+                    frame.toggleTheme();
+                }
+                cases.addAll(windowCases(frame));
+            }
+            for (Case c : cases) {
+                Set<Dimension> sizes = new LinkedHashSet<>();
+                for (Dimension window : WINDOW_SIZES) {
+                    sizes.add(c.size.apply(window));
+                }
+                for (Dimension size : sizes) {
+                    results.add(measure(c, size, dark ? "dark" : "light", frames, warmup));
+                }
+            }
+        }
+    }
+
+    private static List<Case> standaloneCases(Theme theme, RenderCache renderCache) {
+        List<Case> cases = new ArrayList<>();
+        cases.add(new Case("window gradient", () -> new JComponent() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                // Same call as the main window's container
+                renderCache.paintVerticalGradient(g, this,
+                    theme.get(Theme.Token.BACKGROUND_TOP), theme.get(Theme.Token.BACKGROUND_BOTTOM));
+            }
+        }, window -> window));
+        cases.add(new Case("header gradient", () -> PizzaOrderSystem.headerBackground(renderCache),
+            window -> new Dimension(window.width, 115)));
+        cases.add(new Case("styled button", () -> PizzaOrderSystem.styledButton(renderCache, "CHECKOUT", ACCENT, 120, 40),
+            window -> new Dimension(120, 40)));
+        cases.add(new Case("toast", () -> {
+            ToastOverlay toast = new ToastOverlay(renderCache);
+            toast.toast("Added MARGHERITA to cart");
+            return toast;
+        }, window -> new Dimension(300, 50)));
+        cases.add(new Case("confetti", () -> PizzaOrderSystem.confettiBackground(new BorderLayout()),
+            window -> new Dimension(500, 650)));
+        cases.add(new Case("receipt", () -> {
+            ReceiptView receipt = new ReceiptView(ReceiptTemplate.defaultTemplate(), new Font("Segoe UI", Font.PLAIN, 14));
+            receipt.setForeground(Color.WHITE);
+            receipt.setOrder(sampleOrder());
+            return receipt;
+        }, window -> new Dimension(420, 560)));
+        cases.add(new Case("sales dashboard", () -> {
+            SalesDashboard dashboard = new SalesDashboard(sampleSales(), theme, SECONDARY,
+                () -> Collections.singletonList("diagnostics"));
+            dashboard.update(true);
+            return dashboard;
+        }, window -> new Dimension(window.width - 320, window.height - 260)));
+        return cases;
+    }
+
+    // Parts of the real window; needs a display because JFrame does
+    private static List<Case> windowCases(PizzaOrderSystem frame) {
+        JComponent window = (JComponent) frame.getContentPane().getComponent(0);
+        BorderLayout layout = (BorderLayout) window.getLayout();
+        List<Case> cases = new ArrayList<>();
+        cases.add(new Case("whole window", () -> window, size -> size));
+        String[][] parts = {
+            {"header", BorderLayout.NORTH}, {"menu tab", BorderLayout.CENTER},
+            {"cart", BorderLayout.EAST}, {"total", BorderLayout.SOUTH}
+        };
+        for (String[] part : parts) {
+            JComponent component = (JComponent) layout.getLayoutComponent(part[1]);
+            cases.add(new Case(part[0], () -> component, size -> {
+                // Size the part the way the window's layout would
+                layOut(window, size);
+                return component.getSize();
+            }));
+        }
+        return cases;
+    }
+
+    private static Result measure(Case c, Dimension size, String theme, int frames, int warmup) {
+        JComponent component = c.component.get();
+        layOut(component, size);
+        BufferedImage target = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < warmup; i++) {
+            paintFrame(component, target);
+        }
+        long[] nanos = new long[frames];
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < frames; i++) {
+            long start = System.nanoTime();
+            paintFrame(component, target);
+            nanos[i] = System.nanoTime() - start;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        long total = 0;
+        for (long n : nanos) {
+            total += n;
+        }
+        Arrays.sort(nanos);
+        String sizeText = size.width + "x" + size.height;
+        System.out.printf("%-18s %11s %6s %10.1f %10.1f %12d%n", c.name, sizeText, theme,
+            total / 1e3 / frames, nanos[Math.min(frames - 1, (int) Math.ceil(frames * 0.99) - 1)] / 1e3,
+            allocated / frames);
+        return new Result(c.name + "\t" + sizeText + "\t" + theme, total / 1e3 / frames, allocated / frames);
+    }
+
+    // Prints every case over its baseline; returns how many there were
+    private static int compare(List<Result> results, Path file) throws IOException {
+        double timeTolerance = Double.parseDouble(System.getProperty("napuli.paint.timeTolerance", "1.5"));
+        Map<String, double[]> baseline = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] f = line.split("\t");
+                try {
+                    baseline.put(f[0] + "\t" + f[1] + "\t" + f[2],
+                        new double[] {Double.parseDouble(f[3]), Double.parseDouble(f[4])});
+                } catch (RuntimeException e) {
+                    throw new IOException(file.getFileName() + ":" + lineNo + ": expected component, size, theme, "
+                        + "mean and bytes", e);
+                }
+            }
+        }
+        int regressions = 0;
+        for (Result result : results) {
+            double[] limit = baseline.get(result.key);
+            if (limit == null) {
+                System.out.println("NEW        " + result.key.replace('\t', ' ') + " (not in baseline)");
+                continue;
+            }
+            if (result.meanMicros > limit[0] * timeTolerance) {
+                regressions++;
+                System.out.printf("REGRESSION %s: %.1f us per frame, baseline %.1f%n",
+                    result.key.replace('\t', ' '), result.meanMicros, limit[0]);
+            }
+            if (result.bytesPerFrame > limit[1] * ALLOCATION_TOLERANCE + ALLOCATION_SLACK) {
+                regressions++;
+                System.out.printf("REGRESSION %s: %d bytes per frame, baseline %.0f%n",
+                    result.key.replace('\t', ' '), result.bytesPerFrame, limit[1]);
+            }
+        }
+        System.out.println(regressions == 0 ? "Within baseline " + file : regressions + " regression(s) against " + file);
+        return regressions;
+    }
+
+    private static void writeBaseline(List<Result> results, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# component\tsize\ttheme\tmeanMicros\tbytesPerFrame");
+            writer.newLine();
+            for (Result result : results) {
+                writer.write(String.format("%s\t%.1f\t%d", result.key, result.meanMicros, result.bytesPerFrame));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void paintFrame(JComponent component, BufferedImage target) {
+        Graphics2D g = target.createGraphics();
+        component.paint(g);
+        g.dispose();
+    }
+
+    // Lays out the whole tree without a peer, as showing it in a frame would
+    private static void layOut(Component component, Dimension size) {
+        component.setSize(size);
+        layOutTree(component);
+    }
+
+    private static void layOutTree(Component component) {
+        if (component instanceof Container) {
+            Container container = (Container) component;
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                layOutTree(child);
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static Order sampleOrder() {
+        List<Order.Line> lines = new ArrayList<>();
+        lines.add(new Order.Line("MARGHERITA", 2, 4.936, Collections.singletonList("Large")));
+        lines.add(new Order.Line("PEPPERONI", 1, 6.456, Arrays.asList("Medium", "Extra Cheese")));
+        lines.add(new Order.Line("TRUFFLE SPECIAL", 3, 7.216, Collections.emptyList()));
+        return new Order(1, System.currentTimeMillis(), "Benchmark", "bench@example.com", "Al Khuwair, Muscat", lines)
+            .withPricing(38.976, 3.898, 0.500);
+    }
+
+    private static SalesWindow sampleSales() {
+        String[] items = {"MARGHERITA", "PEPPERONI", "VEGGIE DELIGHT", "TRUFFLE SPECIAL", "HAWAIIAN", "BBQ CHICKEN"};
+        long now = System.currentTimeMillis();
+        SalesWindow sales = new SalesWindow(items, 30_000, 30, now - 900_000);
+        for (int i = 0; i < 600; i++) {
+            List<Order.Line> lines = Collections.singletonList(
+                new Order.Line(items[i % items.length], 1 + i % 3, 5.0, Collections.emptyList()));
+            sales.record(new Order(i, now, "c", "c@example.com", "d", lines).withPricing(5.0 * (1 + i % 3), 0),
+                now - 900_000 + i * 1_500L);
+        }
+        return sales;
+    }
+}
@@ -0,0 +1,286 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming reader for catering spreadsheets saved as CSV with the columns
+ * item, size, toppings, quantity. Toppings are separated by ';' or '|'; an
+ * optional header row is skipped. Every row is validated against the menu
+ * and priced with the same rules as the customization dialog, and identical
+ * configurations are merged, so the result is a handful of cart lines no
+ * matter how long the file is. Any invalid row fails the whole import.
+ */
+final class PartyOrderImport {
+    interface Pricing {
+        double price(double basePrice, int sizeIndex, int toppingMask);
+    }
+
+    static final class Line {
+        final String item;
+        final List<String> customizations;
+        final double unitPrice;
+        final int quantity;
+
+        Line(String item, List<String> customizations, double unitPrice, int quantity) {
+            this.item = item;
+            this.customizations = customizations;
+            this.unitPrice = unitPrice;
+            this.quantity = quantity;
+        }
+    }
+
+    static final class Result {
+        final List<Line> lines;
+        final List<String> errors;
+        final int rows;
+
+        Result(List<Line> lines, List<String> errors, int rows) {
+            this.lines = lines;
+            this.errors = errors;
+            this.rows = rows;
+        }
+
+        boolean ok() {
+            return errors.isEmpty();
+        }
+
+        int pizzaCount() {
+            int count = 0;
+            for (Line line : lines) {
+                count += line.quantity;
+            }
+            return count;
+        }
+    }
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final int MAX_QUANTITY = 10_000;
+
+    private final String[] items;
+    private final double[] basePrices;
+    private final Map<String, Integer> itemIndex = new HashMap<>();
+    private final String[] sizes;
+    private final Map<String, Integer> sizeIndex = new HashMap<>();
+    private final String[] toppings;
+    private final Map<String, Integer> toppingIndex = new HashMap<>();
+    private final Pricing pricing;
+
+    PartyOrderImport(Map<String, Double> menu, String[] sizes, String[] toppings, Pricing pricing) {
+        if (toppings.length > 31) {
+            throw new IllegalArgumentException("Topping masks hold at most 31 toppings");
+        }
+        this.items = menu.keySet().toArray(new String[0]);
+        this.basePrices = new double[items.length];
+        for (int i = 0; i < items.length; i++) {
+            basePrices[i] = menu.get(items[i]);
+            itemIndex.put(key(items[i]), i);
+        }
+        this.sizes = sizes;
+        for (int i = 0; i < sizes.length; i++) {
+            sizeIndex.put(key(sizes[i]), i);
+            sizeIndex.put(key(sizes[i] + " Size"), i);
+        }
+        this.toppings = toppings;
+        for (int i = 0; i < toppings.length; i++) {
+            toppingIndex.put(key(toppings[i]), i);
+        }
+        this.pricing = pricing;
+    }
+
+    Result read(Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader
+            ? (BufferedReader) source : new BufferedReader(source, 1 << 16);
+        // (item, size, toppings) packed into one key -> merged quantity
+        Map<Long, int[]> merged = new LinkedHashMap<>();
+        List<String> errors = new ArrayList<>();
+        String[] fields = new String[4];
+        int errorCount = 0;
+        int rows = 0;
+        int lineNo = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.trim().isEmpty() || (lineNo == 1 && line.regionMatches(true, 0, "item", 0, 4))) {
+                continue;
+            }
+            rows++;
+            String error = parseRow(line, fields, merged);
+            if (error != null && errorCount++ < MAX_REPORTED_ERRORS) {
+                errors.add("Line " + lineNo + ": " + error);
+            }
+        }
+        if (errorCount > MAX_REPORTED_ERRORS) {
+            errors.add("... and " + (errorCount - MAX_REPORTED_ERRORS) + " more");
+        }
+        if (errorCount > 0) {
+            return new Result(Collections.emptyList(), errors, rows);
+        }
+
+        List<Line> lines = new ArrayList<>(merged.size());
+        for (Map.Entry<Long, int[]> entry : merged.entrySet()) {
+            long packed = entry.getKey();
+            int item = (int) (packed >>> 40);
+            int size = (int) ((packed >>> 32) & 0xFF);
+            int mask = (int) packed;
+            List<String> customizations = new ArrayList<>();
+            if (size > 0) {
+                customizations.add(sizes[size] + " Size");
+            }
+            for (int t = 0; t < toppings.length; t++) {
+                if ((mask & (1 << t)) != 0) {
+                    customizations.add(toppings[t]);
+                }
+            }
+            lines.add(new Line(items[item], customizations,
+                pricing.price(basePrices[item], size, mask), entry.getValue()[0]));
+        }
+        return new Result(lines, errors, rows);
+    }
+
+    // Returns an error message, or null once the row has been merged
+    private String parseRow(String line, String[] fields, Map<Long, int[]> merged) {
+        int count = split(line, fields);
+        if (count < 0) {
+            return "unterminated quote";
+        }
+        if (count != 4) {
+            return "expected 4 columns (item, size, toppings, quantity), found " + count;
+        }
+        Integer item = itemIndex.get(key(fields[0]));
+        if (item == null) {
+            return "unknown item '" + fields[0].trim() + "'";
+        }
+        int size = 0;
+        if (!fields[1].trim().isEmpty()) {
+            Integer s = sizeIndex.get(key(fields[1]));
+            if (s == null) {
+                return "unknown size '" + fields[1].trim() + "'";
+            }
+            size = s;
+        }
+        int mask = 0;
+        String toppingList = fields[2];
+        int start = 0;
+        for (int i = 0; i <= toppingList.length(); i++) {
+            if (i == toppingList.length() || toppingList.charAt(i) == ';' || toppingList.charAt(i) == '|') {
+                String name = toppingList.substring(start, i);
+                start = i + 1;
+                if (name.trim().isEmpty()) {
+                    continue;
+                }
+                Integer t = toppingIndex.get(key(name));
+                if (t == null) {
+                    return "unknown topping '" + name.trim() + "'";
+                }
+                mask |= 1 << t;
+            }
+        }
+        int quantity;
+        try {
+            quantity = Integer.parseInt(fields[3].trim());
+        } catch (NumberFormatException e) {
+            return "quantity '" + fields[3].trim() + "' is not a number";
+        }
+        if (quantity < 1 || quantity > MAX_QUANTITY) {
+            return "quantity must be between 1 and " + MAX_QUANTITY;
+        }
+        long packed = (long) item << 40 | (long) size << 32 | (mask & 0xFFFFFFFFL);
+        int[] total = merged.get(packed);
+        if (total == null) {
+            merged.put(packed, new int[] {quantity});
+        } else {
+            total[0] += quantity;
+        }
+        return null;
+    }
+
+    // Splits one CSV record with double-quote escaping; returns the field count or -1
+    private static int split(String line, String[] fields) {
+        int count = 0;
+        int i = 0;
+        int length = line.length();
+        while (i <= length) {
+            String field;
+            if (i < length && line.charAt(i) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        return -1;
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && line.charAt(i) == '"') {
+                            quoted.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+                field = quoted.toString();
+                while (i < length && line.charAt(i) != ',') {
+                    i++;
+                }
+            } else {
+                int comma = line.indexOf(',', i);
+                int stop = comma < 0 ? length : comma;
+                field = line.substring(i, stop);
+                i = stop;
+            }
+            if (count < fields.length) {
+                fields[count] = field;
+            }
+            count++;
+            i++;
+        }
+        return count;
+    }
+
+    // Case, accents and spacing do not matter: "jalapenos" matches "Jalapeños"
+    private static String key(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        boolean plain = true;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c > 0x7F || (Character.isWhitespace(c) && (c != ' ' || key.charAt(i - 1) == ' '))) {
+                plain = false;
+                break;
+            }
+        }
+        if (plain) {
+            return key;
+        }
+        key = Normalizer.normalize(key, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(key.length());
+        boolean space = false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                out.append(' ');
+                space = false;
+            }
+            out.append(c);
+        }
+        return out.toString();
+    }
+}
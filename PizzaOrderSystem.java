@@ -6,14 +6,31 @@ import java.awt.event.*;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.util.HashMap;
 import java.util.Map;
-import javax.sound.sampled.*;
+import java.util.HashSet;
+import java.util.Set;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import javax.imageio.ImageIO;
 import java.text.DecimalFormat;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 public class PizzaOrderSystem extends JFrame {
     // Enhanced color scheme
@@ -24,6 +41,7 @@ public class PizzaOrderSystem extends JFrame {
     private static final Color LIGHT_COLOR = new Color(236, 240, 241); // Light gray
     private static final Color TEXT_COLOR = new Color(52, 73, 94); // Dark gray
     private static final Color CARD_COLOR = new Color(255, 255, 255); // White
+    private static final Color PRIMARY_DARK_COLOR = PRIMARY_COLOR.darker();
     
     // Fonts
     private static final Font TITLE_FONT = new Font("Segoe UI", Font.BOLD, 28);
@@ -32,12 +50,33 @@ public class PizzaOrderSystem extends JFrame {
     private static final Font ITEM_FONT = new Font("Segoe UI", Font.BOLD, 18);
     private static final Font PRICE_FONT = new Font("Segoe UI", Font.BOLD, 16);
     private static final Font DESC_FONT = new Font("Segoe UI", Font.PLAIN, 14);
+
+    // Interactive work should fit inside one 60 Hz frame
+    private static final long FRAME_BUDGET_NANOS = 16_000_000L;
+    private static final long STORES_POLL_MILLIS = 5_000;
+    private static final long SALES_BUCKET_MILLIS = 30_000;
+    private static final int SALES_BUCKETS = 30;
+    private static final long GUARD_WINDOW_MILLIS = 60_000;
+    private static final int GUARD_BUCKETS = 6;
+    private static final int GUARD_MAX_CUSTOMERS = 50_000;
+    // Audio and off-screen tabs wait for the first paint; see StartupProfile
+    private static final boolean FAST_START = Boolean.getBoolean("napuli.fastStart");
+    private static final boolean STARTUP_TRAINING = Boolean.getBoolean("napuli.startup.train");
+    // Largest quantity one cart-log command can carry
+    private static final int CART_CHUNK = 60_000;
+
+    // Customization options and their surcharges
+    private static final String[] SIZE_OPTIONS = {"Small", "Medium", "Large"};
+    private static final double[] SIZE_SURCHARGES = {0.000, 1.000, 2.000};
+    private static final String[] TOPPING_OPTIONS = {"Extra Cheese", "Pepperoni", "Mushrooms", "Olives", "Jalapeños"};
+    private static final double[] TOPPING_PRICES = {0.760, 0.850, 0.650, 0.550, 0.600};
     
     private JPanel cartPanel;
     private JPanel cartListContainer;
     private final Map<String, Integer> cartItems = new HashMap<>();
-    private Map<String, ImageIcon> pizzaImages = new HashMap<>();
+    private Map<String, Icon> pizzaImages = new HashMap<>();
     private Map<String, Double> pizzaPrices = new HashMap<>();
+    private final Map<String, Double> basePrices = new HashMap<>();
     private Map<String, List<String>> pizzaCustomizations = new HashMap<>();
     private Map<String, Integer> pizzaRatings = new HashMap<>();
     private final String[][] menuItems = {
@@ -50,40 +89,194 @@ public class PizzaOrderSystem extends JFrame {
         {"MEDITERRANEAN", "5.896", "Olives, feta, and sun-dried tomatoes", "mediterranean.jpg"},
         {"BUFFALO RANCH", "6.756", "Spicy buffalo sauce with ranch", "buffalo_ranch.jpg"}
     };
+    // Ingredient units used by one menu item or customization; stock levels come from inventory.tsv
+    private static final String[][] RECIPES = {
+        {"MARGHERITA", "Dough:1,Tomato Sauce:1,Mozzarella:1,Basil:1"},
+        {"PEPPERONI", "Dough:1,Tomato Sauce:1,Mozzarella:2,Pepperoni:1"},
+        {"VEGGIE DELIGHT", "Dough:1,Tomato Sauce:1,Goat Cheese:1,Mushrooms:1,Peppers:1"},
+        {"TRUFFLE SPECIAL", "Dough:1,White Sauce:1,Mozzarella:1,Truffle Oil:1"},
+        {"HAWAIIAN", "Dough:1,Tomato Sauce:1,Mozzarella:1,Ham:1,Pineapple:1"},
+        {"BBQ CHICKEN", "Dough:1,BBQ Sauce:1,Mozzarella:1,Chicken:1"},
+        {"MEDITERRANEAN", "Dough:1,Tomato Sauce:1,Feta:1,Olives:1,Sun-Dried Tomatoes:1"},
+        {"BUFFALO RANCH", "Dough:1,Buffalo Sauce:1,Mozzarella:1,Chicken:1,Ranch:1"},
+        {"Medium Size", "Dough:1"},
+        {"Large Size", "Dough:2,Mozzarella:1"},
+        {"Extra Cheese", "Mozzarella:1"},
+        {"Pepperoni", "Pepperoni:1"},
+        {"Mushrooms", "Mushrooms:1"},
+        {"Olives", "Olives:1"},
+        {"Jalapeños", "Jalapeños:1"}
+    };
 
     private double total = 0.0;
     private JLabel totalLabel;
     private JLabel greetingLabel;
     private JPanel mainPanel;
-    private Clip addToCartSound;
-    private Clip checkoutSound;
-    private Clip buttonClickSound;
+    private AudioEngine audioEngine;
+    private JButton checkoutBtn;
+    private boolean checkoutPending;
+    private final KitchenQueue kitchenQueue = new KitchenQueue();
+    private CheckoutPipeline checkoutPipeline;
+    private ConfirmationMailer confirmationMailer;
+    private SmtpSink smtpSink;
+    // Both stay null when no gazetteer/zone files are installed; every address is then accepted
+    private Gazetteer gazetteer;
+    private DeliveryZones deliveryZones;
+    private DeliveryDispatcher deliveryDispatcher;
+    private final Inventory inventory = new Inventory();
+    private PromoEngine promoEngine;
+    private OrderGuard orderGuard;
+    // Last 15 minutes of placed orders in 30-second buckets, for the Manager tab
+    private SalesWindow salesWindow;
+    // Stays null unless stores.tsv defines branches; orders then all go to kitchenQueue
+    private StoreRouter storeRouter;
+    private JTextField promoField;
+    private JTextField deliverAtField;
+    private PreOrderScheduler preOrderScheduler;
+    // Name label and buttons of each menu card, greyed in place when stock runs low
+    private final Map<String, JComponent[]> menuItemControls = new HashMap<>();
+    private RecommendationEngine recommendationEngine;
+    private final EventBus eventBus = new EventBus();
+    // Cart lines added by a party import keep their own configuration: line name -> menu item
+    private final Map<String, String> cartLineItems = new HashMap<>();
+    // Shared with the other counter terminals when -Dnapuli.replica.dir is set
+    private CartReplicator cartReplicator;
+    // Latest driver routes, one line per driver, for the kitchen tab
+    private volatile List<String> driverRoutes = Collections.emptyList();
+    // Delivery zone the validator resolved, by order id, for pricing and routing of orders in checkout
+    private final Map<Long, DeliveryZones.Zone> resolvedZones = new ConcurrentHashMap<>();
+    // Cart lines as submitted for checkout, for the replicated cart claim
+    private Map<String, Integer> checkoutCart;
+    // Applies cart edits to the view; user edits reach it through cartLog
+    private final CartLog.Cart cartView = new CartLog.Cart() {
+        @Override
+        public void add(String item, int quantity, double unitPrice) {
+            cartItems.merge(item, quantity, Integer::sum);
+            total += unitPrice * quantity;
+            replicateLine(item, quantity, unitPrice);
+            eventBus.publish(EventBus.Type.ITEM_ADDED, item, quantity);
+        }
+
+        @Override
+        public void remove(String item, int quantity, double unitPrice) {
+            int left = cartItems.getOrDefault(item, 0) - quantity;
+            if (left <= 0) {
+                cartItems.remove(item);
+            } else {
+                cartItems.put(item, left);
+            }
+            total -= unitPrice * quantity;
+            replicateLine(item, -quantity, unitPrice);
+            eventBus.publish(EventBus.Type.ITEM_REMOVED, item, quantity);
+        }
+    };
+    // Every cart edit goes through the log so it can be undone, redone and exported
+    private final CartLog cartLog = new CartLog(cartView);
+    // "You might also like" label and rating stars of each menu card
+    private final Map<String, JComponent[]> recommendationViews = new HashMap<>();
     private DecimalFormat priceFormat = new DecimalFormat("0.000");
     private JTabbedPane tabbedPane;
     
     // New fields for enhanced features
     private JPanel dealsPanel;
     private JPanel favoritesPanel;
+    private JPanel favoritesList;
+    private JPanel favoritesRows;
+    private JLabel favoritesHeader;
+    private JLabel favoritesEmptyLabel;
+    private final Map<String, JPanel> favoriteRows = new HashMap<>();
+    private final Map<String, JLabel[]> favoriteStars = new HashMap<>();
+    private FavoritesIndex favoritesIndex;
+    private Icon starFilledIcon;
+    private Icon starEmptyIcon;
+    private Icon starSmallIcon;
     private Timer confettiTimer;
-    private boolean isDarkMode = false;
+    private final Theme theme = new Theme();
+    private JButton themeBtn;
+
+    // Customization dialog, built once and rebound to the selected pizza on open
+    private JDialog customizationDialog;
+    private JLabel customizeTitleLabel;
+    private JLabel customizeImageLabel;
+    private JLabel customizeBasePriceLabel;
+    private JLabel customizeTotalLabel;
+    private JRadioButton[] sizeButtons;
+    private JCheckBox[] toppingBoxes;
+    private JButton customizeAddButton;
+    private String customizingPizza;
+    private Runnable customizationCallback;
+    private long customizationOpenStart;
     private JLabel userGreetingLabel;
     private String currentUser = "Guest";
     private Map<String, String> userDetails = new HashMap<>();
+    // Pre-rendered backgrounds and button skins, dropped on theme change
+    private final RenderCache renderCache = new RenderCache();
+    private final ToastOverlay toastOverlay = new ToastOverlay(renderCache);
+    // Photos, deal banners and icons, shared by size and kept within napuli.images.budgetMB
+    private final ImageStore imageStore = new ImageStore(Long.getLong("napuli.images.budgetMB", 16L) << 20);
+    private final StartupProfile startup;
+    // Runs once the window has painted; only used in fast-start mode
+    private final List<Runnable> afterFirstPaint = new ArrayList<>();
+    private boolean firstPainted;
 
     public PizzaOrderSystem() {
+        this(new StartupProfile());
+    }
+
+    PizzaOrderSystem(StartupProfile startup) {
+        this(startup, false);
+    }
+
+    /**
+     * windowOnly builds the full window over an in-memory pipeline: no audio,
+     * journal, mailer, promos, stores, pre-orders, replication or rating log,
+     * and nothing under AppData is read or written. Used by PaintBenchmark.
+     */
+    PizzaOrderSystem(StartupProfile startup, boolean windowOnly) {
+        this.startup = startup;
         pizzaImages = new HashMap<>();
         pizzaPrices = new HashMap<>();
         pizzaCustomizations = new HashMap<>();
         pizzaRatings = new HashMap<>();
+        theme.addListener(renderCache::invalidate);
+        favoritesIndex = new FavoritesIndex(pizzaRatings);
         
-        try {
-            loadPizzaImages();
-            loadSounds();
-        } catch (IOException | UnsupportedAudioFileException | LineUnavailableException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error loading resources: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        // Missing pictures fall back to placeholders and missing sounds to silence
+        loadPizzaImages();
+        loadStarIcons();
+        startup.mark("images");
+        if (windowOnly) {
+            checkoutPipeline = new CheckoutPipeline(kitchenQueue, null);
+            salesWindow = newSalesWindow();
+            recommendationEngine = new RecommendationEngine(null, 2);
+        } else {
+            if (FAST_START) {
+                afterFirstPaint.add(this::loadSounds);
+            } else {
+                loadSounds();
+                startup.mark("audio");
+            }
+            initializeCheckout();
+            startup.mark("checkout");
+            initializeRecommendations();
+            startup.mark("recommendations");
         }
         initializeUI();
+        startup.mark("build window");
+        subscribeUI();
+        installCartShortcuts();
+        if (!windowOnly) {
+            initializeReplication();
+        }
+        refreshStockAvailability();
+        refreshRecommendations();
+        startup.mark("wire up");
+        // Keep the customization dialog warm so the first "Customize" opens instantly
+        SwingUtilities.invokeLater(() -> {
+            if (customizationDialog == null) {
+                buildCustomizationDialog();
+            }
+        });
     }
 
     private void initializeUI() {
@@ -91,19 +284,25 @@ public class PizzaOrderSystem extends JFrame {
         setSize(1200, 850); // Increased window size
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                shutdownServices();
+            }
+        });
         
         // Main container with improved layout
         JPanel container = new JPanel(new BorderLayout()) {
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                Color color1 = isDarkMode ? new Color(60, 60, 60) : new Color(247, 247, 247);
-                Color color2 = isDarkMode ? new Color(40, 40, 40) : new Color(230, 230, 230);
-                GradientPaint gp = new GradientPaint(0, 0, color1, 0, getHeight(), color2);
-                g2d.setPaint(gp);
-                g2d.fillRect(0, 0, getWidth(), getHeight());
+                renderCache.paintVerticalGradient(g, this,
+                    theme.get(Theme.Token.BACKGROUND_TOP), theme.get(Theme.Token.BACKGROUND_BOTTOM));
+                if (!firstPainted) {
+                    firstPainted = true;
+                    startup.mark("first paint");
+                    SwingUtilities.invokeLater(PizzaOrderSystem.this::finishStartup);
+                }
             }
         };
         container.setBorder(new EmptyBorder(10, 10, 10, 10));
@@ -113,20 +312,25 @@ public class PizzaOrderSystem extends JFrame {
         // Create tabbed pane for menu organization
         tabbedPane = new JTabbedPane();
         tabbedPane.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        tabbedPane.setBackground(isDarkMode ? DARK_COLOR : LIGHT_COLOR);
-        tabbedPane.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
+        theme.background(tabbedPane, Theme.Token.TAB_BACKGROUND);
+        theme.foreground(tabbedPane, Theme.Token.TEXT_STRONG);
 
         // Menu tab
         JPanel menuTab = createMenuTab();
         tabbedPane.addTab("Menu", createIcon("menu.png", 20, 20), menuTab);
 
         // Deals tab
-        dealsPanel = createDealsPanel();
-        tabbedPane.addTab("Deals", createIcon("discount.png", 20, 20), dealsPanel);
+        addTab("Deals", "discount.png", () -> dealsPanel = createDealsPanel());
 
         // Favorites tab
-        favoritesPanel = createFavoritesPanel();
-        tabbedPane.addTab("Favorites", createIcon("star.png", 20, 20), favoritesPanel);
+        addTab("Favorites", "star.png", () -> favoritesPanel = createFavoritesPanel());
+
+        // Manager tab: live sales, refreshed on its own timer while visible
+        addTab("Manager", "dashboard.png",
+            () -> new SalesDashboard(salesWindow, theme, ACCENT_COLOR, this::managerDiagnostics));
+
+        // Kitchen tab: tickets waiting at the kitchen, bumped off as they go out
+        addTab("Kitchen", "kitchen.png", () -> new KitchenDisplay(theme, this::kitchens, () -> driverRoutes));
 
         container.add(tabbedPane, BorderLayout.CENTER);
 
@@ -136,6 +340,114 @@ public class PizzaOrderSystem extends JFrame {
         container.add(cartPanel, BorderLayout.EAST);
 
         add(container);
+        toastOverlay.install(this);
+    }
+
+    // Health figures for the manager view's footer, one line each
+    private List<String> managerDiagnostics() {
+        List<String> lines = new ArrayList<>();
+        lines.add(imageStore.stats().toString());
+        lines.add(checkoutPipeline.describe());
+        if (orderGuard != null) {
+            lines.add("Guard: " + orderGuard.duplicateCount() + " repeat orders turned away, "
+                + orderGuard.limitedCount() + " rate-limited");
+        }
+        if (confirmationMailer != null) {
+            lines.add("Mail: " + confirmationMailer.metrics());
+        }
+        return lines;
+    }
+
+    // The main kitchen, then each branch's; branches added by a stores.tsv reload show up too
+    private Map<String, KitchenQueue> kitchens() {
+        StoreRouter router = storeRouter;
+        if (router == null) {
+            return Collections.singletonMap("Main kitchen", kitchenQueue);
+        }
+        Map<String, KitchenQueue> kitchens = new LinkedHashMap<>();
+        kitchens.put("Main kitchen", kitchenQueue);
+        for (String id : router.ring().stores()) {
+            kitchens.put("Store " + id, router.store(id).kitchen);
+        }
+        return kitchens;
+    }
+
+    // Lets checkouts already under way reach the kitchen before the JVM exits;
+    // unsent mail stays in the outbox for the next start
+    private void shutdownServices() {
+        // First, so no pre-order falls due into a pipeline that is shutting down; the rest wait in their log
+        if (preOrderScheduler != null) {
+            preOrderScheduler.shutdown();
+        }
+        checkoutPipeline.shutdown();
+        // After the checkouts, which still publish their orders or withdraw their claims
+        if (cartReplicator != null) {
+            cartReplicator.shutdown();
+        }
+        inventory.shutdown();
+        if (promoEngine != null) {
+            promoEngine.shutdown();
+        }
+        recommendationEngine.shutdown();
+        if (confirmationMailer != null) {
+            confirmationMailer.shutdown();
+        }
+        // Drains and closes the audio line; null until the first paint under fast start
+        if (audioEngine != null) {
+            audioEngine.shutdown();
+        }
+        imageStore.shutdown();
+        if (smtpSink != null) {
+            try {
+                smtpSink.close();
+            } catch (IOException e) {
+                System.err.println("SMTP sink: " + e.getMessage());
+            }
+        }
+    }
+
+    // Builds the tab's content now, or after the first paint when starting fast
+    private void addTab(String title, String icon, Supplier<JComponent> content) {
+        if (!FAST_START) {
+            tabbedPane.addTab(title, createIcon(icon, 20, 20), content.get());
+            return;
+        }
+        JPanel pending = new JPanel();
+        pending.setOpaque(false);
+        tabbedPane.addTab(title, createIcon(icon, 20, 20), pending);
+        int index = tabbedPane.getTabCount() - 1;
+        afterFirstPaint.add(() -> tabbedPane.setComponentAt(index, content.get()));
+    }
+
+    private void finishStartup() {
+        if (!afterFirstPaint.isEmpty()) {
+            for (Runnable deferred : afterFirstPaint) {
+                deferred.run();
+            }
+            afterFirstPaint.clear();
+            startup.mark("deferred audio and tabs");
+        }
+        if (FAST_START || STARTUP_TRAINING || Boolean.getBoolean("napuli.startup.report")) {
+            startup.report(System.err);
+        }
+        if (STARTUP_TRAINING) {
+            trainAndExit();
+        }
+    }
+
+    // Training run for the class-data archive: shows every tab once, then exits
+    private void trainAndExit() {
+        Timer visit = new Timer(250, null);
+        visit.addActionListener(e -> {
+            int next = tabbedPane.getSelectedIndex() + 1;
+            if (next < tabbedPane.getTabCount()) {
+                tabbedPane.setSelectedIndex(next);
+                return;
+            }
+            visit.stop();
+            System.exit(0);
+        });
+        visit.start();
     }
 private JPanel createLogoPanel() {
     JPanel logoPanel = new JPanel();
@@ -182,6 +494,7 @@ private JPanel createLogoPanel() {
 
         for (String[] item : menuItems) {
             pizzaPrices.put(item[0], Double.valueOf(item[1]));
+            basePrices.put(item[0], Double.valueOf(item[1]));
             pizzaCustomizations.put(item[0], new ArrayList<>());
             pizzaRatings.put(item[0], 0);
         }
@@ -257,16 +570,36 @@ private JPanel createLogoPanel() {
 }
 
 private JPanel createFavoritesPanel() {
-    JPanel favoritesPanel = new JPanel();
-    favoritesPanel.setLayout(new BoxLayout(favoritesPanel, BoxLayout.Y_AXIS));
-    favoritesPanel.setOpaque(false);
-    favoritesPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
-
-    JLabel infoLabel = new JLabel("<html><div style='text-align:center; color:#666;'>Rate pizzas to add them to your favorites!</div></html>");
-    infoLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-    favoritesPanel.add(infoLabel);
+    favoritesList = new JPanel();
+    favoritesList.setLayout(new BoxLayout(favoritesList, BoxLayout.Y_AXIS));
+    favoritesList.setOpaque(false);
+    favoritesList.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+    // Header stays hidden until the first rating, as before
+    favoritesHeader = new JLabel("Your Favorite Pizzas");
+    favoritesHeader.setFont(new Font("Segoe UI", Font.BOLD, 18));
+    theme.foreground(favoritesHeader, Theme.Token.TEXT_STRONG);
+    favoritesHeader.setAlignmentX(Component.CENTER_ALIGNMENT);
+    favoritesHeader.setBorder(BorderFactory.createEmptyBorder(0, 0, 20, 0));
+    favoritesHeader.setVisible(false);
+    favoritesList.add(favoritesHeader);
+
+    // One row per favorite, kept in FavoritesIndex order
+    favoritesRows = new JPanel(new GridLayout(0, 1, 0, 10));
+    favoritesRows.setOpaque(false);
+    favoritesRows.setAlignmentX(Component.CENTER_ALIGNMENT);
+    favoritesList.add(favoritesRows);
+
+    favoritesEmptyLabel = new JLabel("<html><div style='text-align:center; color:#666;'>Rate pizzas to add them to your favorites!</div></html>");
+    favoritesEmptyLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+    favoritesList.add(favoritesEmptyLabel);
+
+    for (String pizzaName : favoritesIndex.getFavorites()) {
+        favoritesRows.add(createFavoriteRow(pizzaName));
+    }
+    favoritesIndex.addListener(this::onFavoriteChanged);
 
-    JScrollPane scrollPane = new JScrollPane(favoritesPanel);
+    JScrollPane scrollPane = new JScrollPane(favoritesList);
     scrollPane.setBorder(null);
     scrollPane.setOpaque(false);
     scrollPane.getViewport().setOpaque(false);
@@ -283,7 +616,7 @@ private JPanel createDealPanel(String title, String price, String items, String
         BorderFactory.createLineBorder(new Color(220, 220, 220, 100)),
         BorderFactory.createEmptyBorder(15, 15, 15, 15))
     );
-    dealPanel.setBackground(new Color(255, 255, 255, 200));
+    theme.background(dealPanel, Theme.Token.CARD);
     dealPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 180));
 
     // Add shadow effect
@@ -296,19 +629,8 @@ private JPanel createDealPanel(String title, String price, String items, String
     ));
 
     // Deal image
-    JLabel imageLabel = new JLabel();
-    try {
-        InputStream is = getClass().getResourceAsStream("/images/" + imageName);
-        if (is != null) {
-            BufferedImage img = ImageIO.read(is);
-            ImageIcon icon = new ImageIcon(img.getScaledInstance(200, 120, Image.SCALE_SMOOTH));
-            imageLabel.setIcon(icon);
-        } else {
-            imageLabel.setIcon(createPlaceholderIcon(200, 120));
-        }
-    } catch (IOException e) {
-        imageLabel.setIcon(createPlaceholderIcon(200, 120));
-    }
+    JLabel imageLabel = new JLabel(imageStore.icon("/images/" + imageName + "@200x120", 200, 120,
+        () -> scaledImage("/images/" + imageName, 200, 120, false)));
     imageLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 10));
     dealPanel.add(imageLabel, BorderLayout.WEST);
 
@@ -329,7 +651,7 @@ private JPanel createDealPanel(String title, String price, String items, String
 
     JLabel itemsLabel = new JLabel(items);
     itemsLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
-    itemsLabel.setForeground(DARK_COLOR);
+    theme.foreground(itemsLabel, Theme.Token.TEXT_STRONG);
     itemsLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
     JLabel descLabel = new JLabel(desc);
@@ -353,6 +675,9 @@ private JPanel createDealPanel(String title, String price, String items, String
     buttonPanel.setOpaque(false);
     buttonPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 40));
 
+    // Deals are priced like menu items once they are in the cart
+    pizzaPrices.put(title, Double.parseDouble(price));
+
     JButton addToCartBtn = createStyledButton("Add to Cart", ACCENT_COLOR, 100, 30);
     addToCartBtn.addActionListener(e -> {
         playButtonClick();
@@ -373,7 +698,7 @@ private JPanel createDealPanel(String title, String price, String items, String
             BorderFactory.createLineBorder(new Color(220, 220, 220, 100)),
             BorderFactory.createEmptyBorder(15, 15, 15, 15))
         );
-        itemPanel.setBackground(new Color(255, 255, 255, 200));
+        theme.background(itemPanel, Theme.Token.CARD);
         itemPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 150));
 
         // Add shadow effect
@@ -408,7 +733,7 @@ private JPanel createDealPanel(String title, String price, String items, String
 
         JLabel nameLabel = new JLabel(name);
         nameLabel.setFont(ITEM_FONT);
-        nameLabel.setForeground(DARK_COLOR);
+        theme.foreground(nameLabel, Theme.Token.TEXT_STRONG);
 
         // Add some space between name and rating
         nameRatingPanel.add(nameLabel);
@@ -451,17 +776,26 @@ private JPanel createDealPanel(String title, String price, String items, String
         priceButtonPanel.add(customizeBtn);
         priceButtonPanel.add(Box.createRigidArea(new Dimension(5, 0)));
         priceButtonPanel.add(addToCartBtn);
+        menuItemControls.put(name, new JComponent[] {nameLabel, customizeBtn, addToCartBtn});
 
         contentPanel.add(priceButtonPanel);
         contentPanel.add(Box.createRigidArea(new Dimension(0, 10)));
 
         JLabel descLabel = new JLabel(desc);
         descLabel.setFont(DESC_FONT);
-        descLabel.setForeground(TEXT_COLOR);
+        theme.foreground(descLabel, Theme.Token.TEXT_BODY);
         descLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
         contentPanel.add(descLabel);
 
+        JLabel alsoLikeLabel = new JLabel();
+        alsoLikeLabel.setFont(DESC_FONT.deriveFont(Font.ITALIC));
+        theme.foreground(alsoLikeLabel, Theme.Token.TEXT_SUBTLE);
+        alsoLikeLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        alsoLikeLabel.setVisible(false);
+        contentPanel.add(alsoLikeLabel);
+        recommendationViews.put(name, new JComponent[] {alsoLikeLabel, ratingPanel});
+
         itemPanel.add(contentPanel, BorderLayout.CENTER);
 
         return itemPanel;
@@ -472,27 +806,29 @@ private JPanel createDealPanel(String title, String price, String items, String
         ratingPanel.setLayout(new FlowLayout(FlowLayout.LEFT, 2, 0));
         ratingPanel.setOpaque(false);
         
-        int currentRating = pizzaRatings.getOrDefault(pizzaName, 0);
+        int currentRating = favoritesIndex.getRating(pizzaName);
+        JLabel[] stars = new JLabel[5];
         
         for (int i = 1; i <= 5; i++) {
             JLabel star = new JLabel();
-            star.setIcon(i <= currentRating ? 
-                createIcon("star_filled.png", 16, 16) : 
-                createIcon("star_empty.png", 16, 16));
+            star.setIcon(i <= currentRating ? starFilledIcon : starEmptyIcon);
             star.setCursor(new Cursor(Cursor.HAND_CURSOR));
+            stars[i - 1] = star;
             
             final int rating = i;
             star.addMouseListener(new MouseAdapter() {
                 @Override
                 public void mouseClicked(MouseEvent e) {
-                    pizzaRatings.put(pizzaName, rating);
-                    updateFavoritesPanel();
-                    // Recreate the rating panel to show updated stars
-                    Container parent = ratingPanel.getParent();
-                    parent.remove(ratingPanel);
-                    parent.add(createRatingPanel(pizzaName), parent.getComponentCount() - 2);
-                    parent.revalidate();
-                    parent.repaint();
+                    favoritesIndex.setRating(pizzaName, rating);
+                    eventBus.publish(EventBus.Type.RATING_CHANGED, pizzaName, rating);
+                    // Guests share one name, so only signed-in customers feed the shared ratings
+                    if (!"Guest".equals(currentUser)) {
+                        recommendationEngine.rate(currentUser, pizzaName, rating);
+                    }
+                    // Update the existing stars in place
+                    for (int s = 0; s < stars.length; s++) {
+                        stars[s].setIcon(s < rating ? starFilledIcon : starEmptyIcon);
+                    }
                 }
             });
             
@@ -502,96 +838,103 @@ private JPanel createDealPanel(String title, String price, String items, String
         return ratingPanel;
     }
 
-    private void updateFavoritesPanel() {
-        favoritesPanel.removeAll();
-        
-        // Add header
-        JLabel header = new JLabel("Your Favorite Pizzas");
-        header.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        header.setForeground(DARK_COLOR);
-        header.setAlignmentX(Component.CENTER_ALIGNMENT);
-        favoritesPanel.add(header);
-        favoritesPanel.add(Box.createRigidArea(new Dimension(0, 20)));
-        
-        // Add rated pizzas
-        boolean hasFavorites = false;
-        for (Map.Entry<String, Integer> entry : pizzaRatings.entrySet()) {
-            if (entry.getValue() >= 4) { // Only show highly rated pizzas
-                hasFavorites = true;
-                String pizzaName = entry.getKey();
-                double price = pizzaPrices.get(pizzaName);
-                
-                JPanel favPanel = new JPanel(new BorderLayout(10, 0));
-                favPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
-                favPanel.setBackground(new Color(255, 255, 255, 150));
-                favPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 60));
-                
-                // Pizza name and rating
-                JPanel infoPanel = new JPanel();
-                infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
-                infoPanel.setOpaque(false);
-                
-                JLabel nameLabel = new JLabel(pizzaName);
-                nameLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
-                nameLabel.setForeground(DARK_COLOR);
-                
-                JPanel starsPanel = new JPanel();
-                starsPanel.setLayout(new FlowLayout(FlowLayout.LEFT, 2, 0));
-                starsPanel.setOpaque(false);
-                for (int i = 0; i < entry.getValue(); i++) {
-                    starsPanel.add(new JLabel(createIcon("star_filled.png", 12, 12)));
-                }
-                
-                infoPanel.add(nameLabel);
-                infoPanel.add(Box.createRigidArea(new Dimension(0, 5)));
-                infoPanel.add(starsPanel);
-                
-                // Price and add button
-                JPanel actionPanel = new JPanel(new BorderLayout());
-                actionPanel.setOpaque(false);
-                
-                JLabel priceLabel = new JLabel("OMR " + priceFormat.format(price));
-                priceLabel.setFont(new Font("Segoe UI", Font.BOLD, 12));
-                priceLabel.setForeground(PRIMARY_COLOR);
-                
-                JButton addBtn = createStyledButton("Add", ACCENT_COLOR, 60, 25);
-                addBtn.setFont(new Font("Segoe UI", Font.BOLD, 10));
-                addBtn.addActionListener(e -> {
-                    playButtonClick();
-                    addToCart(pizzaName, price);
-                });
-                
-                actionPanel.add(priceLabel, BorderLayout.WEST);
-                actionPanel.add(addBtn, BorderLayout.EAST);
-                
-                favPanel.add(infoPanel, BorderLayout.CENTER);
-                favPanel.add(actionPanel, BorderLayout.EAST);
-                
-                favoritesPanel.add(favPanel);
-                favoritesPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+    private void onFavoriteChanged(String pizzaName, int rating, int oldIndex, int newIndex) {
+        favoritesHeader.setVisible(true);
+        JPanel row = favoriteRows.get(pizzaName);
+        if (oldIndex >= 0 && oldIndex != newIndex) {
+            favoritesRows.remove(oldIndex);
+        }
+        if (newIndex < 0) {
+            favoriteRows.remove(pizzaName);
+            favoriteStars.remove(pizzaName);
+        } else {
+            if (row == null) {
+                row = createFavoriteRow(pizzaName);
+            } else {
+                updateFavoriteStars(pizzaName, rating);
+            }
+            if (oldIndex != newIndex) {
+                favoritesRows.add(row, newIndex);
             }
         }
+        favoritesEmptyLabel.setText("<html><div style='text-align:center; color:#666;'>Rate pizzas with 4+ stars to add them here!</div></html>");
+        favoritesEmptyLabel.setVisible(favoriteRows.isEmpty());
+        // Layout and repaint wait for the frame's RATING_CHANGED flush
+    }
+
+    private JPanel createFavoriteRow(String pizzaName) {
+        JPanel favPanel = new JPanel(new BorderLayout(10, 0));
+        favPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        theme.background(favPanel, Theme.Token.CARD);
+        favPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 60));
+        
+        // Pizza name and rating
+        JPanel infoPanel = new JPanel();
+        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
+        infoPanel.setOpaque(false);
+        
+        JLabel nameLabel = new JLabel(pizzaName);
+        nameLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        theme.foreground(nameLabel, Theme.Token.TEXT_STRONG);
         
-        if (!hasFavorites) {
-            JLabel infoLabel = new JLabel("<html><div style='text-align:center; color:#666;'>Rate pizzas with 4+ stars to add them here!</div></html>");
-            infoLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-            favoritesPanel.add(infoLabel);
+        JPanel starsPanel = new JPanel();
+        starsPanel.setLayout(new FlowLayout(FlowLayout.LEFT, 2, 0));
+        starsPanel.setOpaque(false);
+        JLabel[] stars = new JLabel[5];
+        for (int i = 0; i < stars.length; i++) {
+            stars[i] = new JLabel(starSmallIcon);
+            starsPanel.add(stars[i]);
         }
         
-        favoritesPanel.revalidate();
-        favoritesPanel.repaint();
+        infoPanel.add(nameLabel);
+        infoPanel.add(Box.createRigidArea(new Dimension(0, 5)));
+        infoPanel.add(starsPanel);
+        
+        // Price and add button
+        JPanel actionPanel = new JPanel(new BorderLayout());
+        actionPanel.setOpaque(false);
+        
+        JLabel priceLabel = new JLabel("OMR " + priceFormat.format(pizzaPrices.get(pizzaName)));
+        priceLabel.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        priceLabel.setForeground(PRIMARY_COLOR);
+        
+        JButton addBtn = createStyledButton("Add", ACCENT_COLOR, 60, 25);
+        addBtn.setFont(new Font("Segoe UI", Font.BOLD, 10));
+        addBtn.addActionListener(e -> {
+            playButtonClick();
+            addToCart(pizzaName, pizzaPrices.get(pizzaName));
+        });
+        
+        actionPanel.add(priceLabel, BorderLayout.WEST);
+        actionPanel.add(addBtn, BorderLayout.EAST);
+        
+        favPanel.add(infoPanel, BorderLayout.CENTER);
+        favPanel.add(actionPanel, BorderLayout.EAST);
+
+        favoriteRows.put(pizzaName, favPanel);
+        favoriteStars.put(pizzaName, stars);
+        updateFavoriteStars(pizzaName, favoritesIndex.getRating(pizzaName));
+        return favPanel;
+    }
+
+    private void updateFavoriteStars(String pizzaName, int rating) {
+        JLabel[] stars = favoriteStars.get(pizzaName);
+        for (int i = 0; i < stars.length; i++) {
+            stars[i].setVisible(i < rating);
+        }
     }
 
     private JButton createStyledButton(String text, Color bgColor, int width, int height) {
+        return styledButton(renderCache, text, bgColor, width, height);
+    }
+
+    // Static so PaintBenchmark can paint the same button without a frame
+    static JButton styledButton(RenderCache renderCache, String text, Color bgColor, int width, int height) {
         JButton button = new JButton(text) {
             @Override
             protected void paintComponent(Graphics g) {
-                Graphics2D g2 = (Graphics2D) g;
-                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                
-                // Paint rounded background
-                g2.setColor(bgColor);
-                g2.fillRoundRect(0, 0, getWidth(), getHeight(), 15, 15);
+                // Paint rounded background from the cached skin
+                renderCache.paintRoundRect(g, this, bgColor, 15);
                 
                 super.paintComponent(g);
             }
@@ -643,7 +986,7 @@ private JPanel createDealPanel(String title, String price, String items, String
         buttonPanel.setOpaque(false);
         buttonPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
-        JButton checkoutBtn = createStyledButton("CHECKOUT", PRIMARY_COLOR, 120, 40);
+        checkoutBtn = createStyledButton("CHECKOUT", PRIMARY_COLOR, 120, 40);
         checkoutBtn.setFont(new Font("Segoe UI", Font.BOLD, 16));
         checkoutBtn.addActionListener(e -> {
             playButtonClick();
@@ -660,7 +1003,33 @@ private JPanel createDealPanel(String title, String price, String items, String
         buttonPanel.add(checkoutBtn);
         buttonPanel.add(clearBtn);
 
+        promoField = new JTextField();
+        promoField.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        promoField.setToolTipText("Promo code (checked at checkout)");
+        promoField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
+        promoField.setAlignmentX(Component.LEFT_ALIGNMENT);
+        JLabel promoLabel = new JLabel("Promo code");
+        promoLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        promoLabel.setForeground(Color.WHITE);
+        promoLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+
+        deliverAtField = new JTextField();
+        deliverAtField.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        deliverAtField.setToolTipText("Leave empty for as soon as possible, or enter a time like 19:30");
+        deliverAtField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
+        deliverAtField.setAlignmentX(Component.LEFT_ALIGNMENT);
+        JLabel deliverAtLabel = new JLabel("Deliver at (HH:MM, optional)");
+        deliverAtLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        deliverAtLabel.setForeground(Color.WHITE);
+        deliverAtLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+
         totalPanel.add(totalLabel);
+        totalPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+        totalPanel.add(promoLabel);
+        totalPanel.add(promoField);
+        totalPanel.add(Box.createRigidArea(new Dimension(0, 8)));
+        totalPanel.add(deliverAtLabel);
+        totalPanel.add(deliverAtField);
         totalPanel.add(Box.createRigidArea(new Dimension(0, 15)));
         totalPanel.add(buttonPanel);
 
@@ -676,24 +1045,23 @@ private JPanel createDealPanel(String title, String price, String items, String
         );
         
         if (confirm == JOptionPane.YES_OPTION) {
-            cartItems.clear();
-            total = 0.0;
-            updateCartUI();
+            emptyCart();
         }
     }
 
-private JPanel createHeaderPanel() {
-    JPanel headerPanel = new JPanel() {
+// Gradient strip behind the header; static so PaintBenchmark can paint it without a frame
+static JPanel headerBackground(RenderCache renderCache) {
+    return new JPanel() {
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
-            Graphics2D g2d = (Graphics2D) g;
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            GradientPaint gp = new GradientPaint(0, 0, PRIMARY_COLOR, getWidth(), 0, PRIMARY_COLOR.darker());
-            g2d.setPaint(gp);
-            g2d.fillRect(0, 0, getWidth(), getHeight());
+            renderCache.paintHorizontalGradient(g, this, PRIMARY_COLOR, PRIMARY_DARK_COLOR);
         }
     };
+}
+
+private JPanel createHeaderPanel() {
+    JPanel headerPanel = headerBackground(renderCache);
     headerPanel.setLayout(new BorderLayout());
     headerPanel.setBorder(BorderFactory.createEmptyBorder(15, 30, 15, 30));
 
@@ -747,10 +1115,17 @@ private JPanel createHeaderPanel() {
     JButton loginBtn = createStyledButton("Login", SECONDARY_COLOR, 80, 30);
     loginBtn.addActionListener(e -> showLoginDialog());
 
-    JButton themeBtn = createStyledButton(isDarkMode ? "☀️ Light" : "🌙 Dark", DARK_COLOR, 100, 30);
+    JButton importBtn = createStyledButton("Party Order", ACCENT_COLOR, 110, 30);
+    importBtn.addActionListener(e -> {
+        playButtonClick();
+        importPartyOrder();
+    });
+
+    themeBtn = createStyledButton(theme.isDark() ? "☀️ Light" : "🌙 Dark", DARK_COLOR, 100, 30);
     themeBtn.addActionListener(e -> toggleTheme());
 
     controlPanel.add(userGreetingLabel);
+    controlPanel.add(importBtn);
     controlPanel.add(loginBtn);
     controlPanel.add(themeBtn);
 
@@ -764,22 +1139,22 @@ private JPanel createHeaderPanel() {
         loginDialog.setSize(350, 300); // Increased height
         loginDialog.setLocationRelativeTo(this);
         loginDialog.setLayout(new BorderLayout());
-        loginDialog.getContentPane().setBackground(isDarkMode ? new Color(60, 60, 60) : Color.WHITE);
+        theme.background((JComponent) loginDialog.getContentPane(), Theme.Token.DIALOG);
 
         JPanel formPanel = new JPanel();
         formPanel.setLayout(new BoxLayout(formPanel, BoxLayout.Y_AXIS));
         formPanel.setBorder(new EmptyBorder(20, 20, 20, 20));
-        formPanel.setBackground(isDarkMode ? new Color(60, 60, 60) : Color.WHITE);
+        theme.background(formPanel, Theme.Token.DIALOG);
 
         JLabel titleLabel = new JLabel("Enter Your Details");
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
-        titleLabel.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
+        theme.foreground(titleLabel, Theme.Token.TEXT_STRONG);
         titleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
 
         // Name field
         JLabel nameLabel = new JLabel("Name:");
         nameLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        nameLabel.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
+        theme.foreground(nameLabel, Theme.Token.TEXT_STRONG);
         
         JTextField nameField = new JTextField(20);
         nameField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
@@ -788,7 +1163,7 @@ private JPanel createHeaderPanel() {
         // Email field
         JLabel emailLabel = new JLabel("Email:");
         emailLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        emailLabel.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
+        theme.foreground(emailLabel, Theme.Token.TEXT_STRONG);
         
         JTextField emailField = new JTextField(20);
         emailField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
@@ -797,7 +1172,7 @@ private JPanel createHeaderPanel() {
         // Destination field
         JLabel destinationLabel = new JLabel("Delivery Address:");
         destinationLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        destinationLabel.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
+        theme.foreground(destinationLabel, Theme.Token.TEXT_STRONG);
         
         JTextField destinationField = new JTextField(20);
         destinationField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
@@ -811,13 +1186,23 @@ private JPanel createHeaderPanel() {
             String destination = destinationField.getText().trim();
             
             if (!name.isEmpty() && !email.isEmpty() && !destination.isEmpty()) {
-                if (isValidEmail(email)) {
+                if (deliveryZones != null && resolveDeliveryZone(destination) == null) {
+                    JOptionPane.showMessageDialog(this, 
+                        "Sorry, we don't deliver to that address yet", 
+                        "Outside Delivery Area", 
+                        JOptionPane.WARNING_MESSAGE);
+                } else if (isValidEmail(email)) {
                     currentUser = name;
                     userGreetingLabel.setText("Hello, " + currentUser + "!");
                     
                     // Store user details
                     userDetails.put("email", email);
                     userDetails.put("destination", destination);
+                    if (cartReplicator != null) {
+                        cartReplicator.setCustomer("name", name);
+                        cartReplicator.setCustomer("email", email);
+                        cartReplicator.setCustomer("destination", destination);
+                    }
                     
                     loginDialog.dispose();
                 } else {
@@ -860,16 +1245,21 @@ private JPanel createHeaderPanel() {
         return email.matches("^[\\w-.]+@([\\w-]+\\.)+[\\w-]{2,4}$");
     }
 
-    private void toggleTheme() {
-        isDarkMode = !isDarkMode;
-        SwingUtilities.updateComponentTreeUI(this);
+    void toggleTheme() {
+        // Only colors and cached skins change, so re-apply tokens and repaint
+        long elapsed = theme.setDark(!theme.isDark());
+        themeBtn.setText(theme.isDark() ? "☀️ Light" : "🌙 Dark");
+        repaint();
+        if (elapsed > FRAME_BUDGET_NANOS) {
+            System.err.println("Theme switch took " + elapsed / 1_000_000 + " ms");
+        }
     }
 
     private void initializeCartPanel() {
         cartPanel = new JPanel();
         cartPanel.setLayout(new BoxLayout(cartPanel, BoxLayout.Y_AXIS));
         cartPanel.setPreferredSize(new Dimension(350, getHeight()));
-        cartPanel.setBackground(isDarkMode ? new Color(50, 50, 50) : Color.WHITE);
+        theme.background(cartPanel, Theme.Token.SURFACE);
         cartPanel.setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createMatteBorder(0, 1, 0, 0, new Color(220, 220, 220, 100)),
             BorderFactory.createEmptyBorder(15, 15, 15, 15)
@@ -877,14 +1267,14 @@ private JPanel createHeaderPanel() {
 
         greetingLabel = new JLabel("<html><div style='text-align:center;'>Welcome to <b>Pizza Party!</b><br><small>Ready to build your dream pizza?</small></div></html>");
         greetingLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-        greetingLabel.setForeground(isDarkMode ? Color.WHITE : TEXT_COLOR);
+        theme.foreground(greetingLabel, Theme.Token.TEXT_BODY);
         greetingLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         greetingLabel.setBorder(new EmptyBorder(0, 0, 10, 0));
         cartPanel.add(greetingLabel);
 
         JLabel cartTitle = new JLabel("YOUR CART");
         cartTitle.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        cartTitle.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
+        theme.foreground(cartTitle, Theme.Token.TEXT_STRONG);
         cartTitle.setAlignmentX(Component.CENTER_ALIGNMENT);
         cartTitle.setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createMatteBorder(0, 0, 2, 0, PRIMARY_COLOR),
@@ -906,52 +1296,240 @@ private JPanel createHeaderPanel() {
         JLabel emptyCartLabel = new JLabel("<html><div style='text-align:center;'><i>Your cart is empty</i><br>Add some delicious pizzas!</div></html>");
         emptyCartLabel.setHorizontalAlignment(SwingConstants.CENTER);
         emptyCartLabel.setFont(new Font("Segoe UI", Font.ITALIC, 14));
-        emptyCartLabel.setForeground(isDarkMode ? Color.LIGHT_GRAY : Color.GRAY);
+        theme.foreground(emptyCartLabel, Theme.Token.TEXT_MUTED);
         cartListContainer.add(emptyCartLabel);
     }
 
     private void addToCart(String itemName, double price) {
-        cartItems.put(itemName, cartItems.getOrDefault(itemName, 0) + 1);
-        total += price;
-        updateCartUI();
-        playAddSound();
-        
-        // Show a small notification
-        showToastNotification(itemName + " added to cart!");
+        cartLog.add(itemName, 1, price);
     }
 
-    private void showToastNotification(String message) {
-        JDialog toast = new JDialog();
-        toast.setUndecorated(true);
-        toast.setSize(300, 50);
-        toast.setLocationRelativeTo(this);
-        toast.setAlwaysOnTop(true);
-        
-        JPanel panel = new JPanel(new BorderLayout()) {
+    // Removes every line as one undoable step
+    private void emptyCart() {
+        cartLog.beginGroup();
+        for (Map.Entry<String, Integer> entry : new ArrayList<>(cartItems.entrySet())) {
+            cartLog.remove(entry.getKey(), entry.getValue(), pizzaPrices.get(entry.getKey()));
+        }
+        cartLog.endGroup();
+        total = 0.0;
+        eventBus.publish(EventBus.Type.CART_CLEARED, null, 0);
+    }
+
+    // A paid cart is emptied outside the history, which starts afresh, so undo cannot bring it back
+    private void clearOrderedCart() {
+        for (Map.Entry<String, Integer> entry : new ArrayList<>(cartItems.entrySet())) {
+            cartView.remove(entry.getKey(), entry.getValue(), pizzaPrices.get(entry.getKey()));
+        }
+        cartLog.clear();
+        total = 0.0;
+        eventBus.publish(EventBus.Type.CART_CLEARED, null, 0);
+    }
+
+    // Ctrl+Z / Ctrl+Y (or Ctrl+Shift+Z) step through cart history, Ctrl+E exports it
+    private void installCartShortcuts() {
+        int menuMask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        InputMap keys = getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap actions = getRootPane().getActionMap();
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, menuMask), "cart-undo");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, menuMask), "cart-redo");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, menuMask | InputEvent.SHIFT_DOWN_MASK), "cart-redo");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_E, menuMask), "cart-export");
+        actions.put("cart-undo", new AbstractAction() {
             @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                g2d.setColor(new Color(50, 50, 50, 200));
-                g2d.fillRoundRect(0, 0, getWidth(), getHeight(), 15, 15);
+            public void actionPerformed(ActionEvent e) {
+                if (!cartLog.undo()) {
+                    showToastNotification("Nothing to undo");
+                }
             }
-        };
-        panel.setOpaque(false);
-        panel.setBorder(BorderFactory.createEmptyBorder(10, 15, 10, 15));
-        
-        JLabel label = new JLabel(message, SwingConstants.CENTER);
-        label.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-        label.setForeground(Color.WHITE);
-        panel.add(label, BorderLayout.CENTER);
-        
-        toast.add(panel);
-        toast.setVisible(true);
-        
-        new Timer(2000, e -> {
-            toast.dispose();
-            ((Timer)e.getSource()).stop();
-        }).start();
+        });
+        actions.put("cart-redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!cartLog.redo()) {
+                    showToastNotification("Nothing to redo");
+                }
+            }
+        });
+        actions.put("cart-export", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                exportCartSession();
+            }
+        });
+    }
+
+    private void importPartyOrder() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Party Order (CSV: item, size, toppings, quantity)");
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        PartyOrderImport importer = new PartyOrderImport(basePrices, SIZE_OPTIONS, TOPPING_OPTIONS,
+            PizzaOrderSystem::customizedPrice);
+        // Parsing runs off the EDT; the cart is only touched once, in commitPartyOrder
+        CompletableFuture.supplyAsync(() -> {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                return importer.read(reader);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                JOptionPane.showMessageDialog(this, "Could not read " + file.getFileName() + ": " + cause.getMessage(),
+                    "Import Failed", JOptionPane.ERROR_MESSAGE);
+            } else if (!result.ok()) {
+                JOptionPane.showMessageDialog(this, "Nothing was added. Please fix these rows:\n" + String.join("\n", result.errors),
+                    "Import Failed", JOptionPane.WARNING_MESSAGE);
+            } else {
+                commitPartyOrder(result);
+            }
+        }));
+    }
+
+    // One undoable cart step; the event bus turns it into a single cart refresh
+    private void commitPartyOrder(PartyOrderImport.Result result) {
+        cartLog.beginGroup();
+        for (PartyOrderImport.Line line : result.lines) {
+            String name = line.item;
+            if (!line.customizations.isEmpty() || !pizzaCustomizations.getOrDefault(name, new ArrayList<>()).isEmpty()) {
+                name = line.item + " (" + (line.customizations.isEmpty()
+                    ? SIZE_OPTIONS[0] : String.join(", ", line.customizations)) + ")";
+                pizzaCustomizations.put(name, line.customizations);
+                cartLineItems.put(name, line.item);
+            }
+            pizzaPrices.put(name, line.unitPrice);
+            for (int left = line.quantity; left > 0; left -= CART_CHUNK) {
+                cartLog.add(name, Math.min(left, CART_CHUNK), line.unitPrice);
+            }
+        }
+        cartLog.endGroup();
+    }
+
+    // Terminals sharing a directory share one cart: -Dnapuli.replica.dir=/path [-Dnapuli.terminal=name]
+    private void initializeReplication() {
+        String dir = System.getProperty("napuli.replica.dir");
+        if (dir == null) {
+            return;
+        }
+        String terminal = System.getProperty("napuli.terminal", "terminal-" + ProcessHandle.current().pid());
+        try {
+            cartReplicator = new CartReplicator(Paths.get(dir), terminal);
+            cartReplicator.addListener(new CartReplicator.Listener() {
+                @Override
+                public void lineChanged(String line) {
+                    SwingUtilities.invokeLater(() -> applyRemoteLine(line));
+                }
+
+                @Override
+                public void customerChanged(String field) {
+                    SwingUtilities.invokeLater(() -> applyRemoteCustomer(field));
+                }
+
+                @Override
+                public void orderPlaced(String id, String summary) {
+                    SwingUtilities.invokeLater(() -> showToastNotification(
+                        "Order " + id + " placed: " + summary));
+                }
+            });
+            cartReplicator.start();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cart replication disabled: " + e.getMessage());
+            cartReplicator = null;
+            return;
+        }
+        for (String line : cartReplicator.quantities().keySet()) {
+            applyRemoteLine(line);
+        }
+        for (String field : new String[] {"name", "email", "destination"}) {
+            if (cartReplicator.customer(field) != null) {
+                applyRemoteCustomer(field);
+            }
+        }
+    }
+
+    private void replicateLine(String line, int delta, double unitPrice) {
+        if (cartReplicator != null) {
+            cartReplicator.change(line, delta, unitPrice, cartLineItems.getOrDefault(line, line),
+                pizzaCustomizations.getOrDefault(line, new ArrayList<>()));
+        }
+    }
+
+    // Remote edits update the view but stay out of this terminal's undo history
+    private void applyRemoteLine(String line) {
+        CartReplicator.LineDetails details = cartReplicator.details(line);
+        if (details == null) {
+            return;
+        }
+        if (!details.item.equals(line)) {
+            cartLineItems.put(line, details.item);
+        }
+        pizzaCustomizations.put(line, new ArrayList<>(details.customizations));
+        pizzaPrices.put(line, details.unitPrice);
+        int quantity = cartReplicator.quantity(line);
+        int delta = quantity - cartItems.getOrDefault(line, 0);
+        if (delta == 0) {
+            return;
+        }
+        if (quantity == 0) {
+            cartItems.remove(line);
+        } else {
+            cartItems.put(line, quantity);
+        }
+        total += details.unitPrice * delta;
+        if (cartItems.isEmpty()) {
+            total = 0.0;
+        }
+        eventBus.publish(delta > 0 ? EventBus.Type.ITEM_ADDED : EventBus.Type.ITEM_REMOVED, line, Math.abs(delta));
+    }
+
+    private void applyRemoteCustomer(String field) {
+        String value = cartReplicator.customer(field);
+        if ("name".equals(field)) {
+            currentUser = value;
+            userGreetingLabel.setText("Hello, " + currentUser + "!");
+        } else {
+            userDetails.put(field, value);
+        }
+    }
+
+    private void exportCartSession() {
+        try {
+            Path file = AppData.file("cart-" + System.currentTimeMillis() + ".npcl");
+            cartLog.export(file);
+            showToastNotification("Cart session saved to " + file.getFileName());
+        } catch (IOException e) {
+            e.printStackTrace();
+            showToastNotification("Could not save cart session");
+        }
+    }
+
+    // UI reactions run once per frame however many changes were published in it
+    private void subscribeUI() {
+        eventBus.subscribe(events -> updateCartUI(),
+            EventBus.Type.ITEM_ADDED, EventBus.Type.ITEM_REMOVED, EventBus.Type.CART_CLEARED);
+        eventBus.subscribe(events -> {
+            playAddSound();
+            // Show a small notification
+            int added = 0;
+            for (EventBus.Event event : events) {
+                added += event.value;
+            }
+            showToastNotification(events.size() == 1
+                ? events.get(0).item + " added to cart!"
+                : added + " items added to cart!");
+        }, EventBus.Type.ITEM_ADDED);
+        eventBus.subscribe(events -> {
+            favoritesList.revalidate();
+            favoritesList.repaint();
+        }, EventBus.Type.RATING_CHANGED);
+    }
+
+    private void showToastNotification(String message) {
+        // Reuses the single overlay; repeated messages are merged into one counter
+        toastOverlay.toast(message);
     }
 
     private void updateCartUI() {
@@ -961,7 +1539,7 @@ private JPanel createHeaderPanel() {
             JLabel emptyCartLabel = new JLabel("<html><div style='text-align:center;'><i>Your cart is empty</i><br>Add some delicious pizzas!</div></html>");
             emptyCartLabel.setHorizontalAlignment(SwingConstants.CENTER);
             emptyCartLabel.setFont(new Font("Segoe UI", Font.ITALIC, 14));
-            emptyCartLabel.setForeground(isDarkMode ? Color.LIGHT_GRAY : Color.GRAY);
+            theme.foreground(emptyCartLabel, Theme.Token.TEXT_MUTED);
             cartListContainer.add(emptyCartLabel);
         } else {
             for (Map.Entry<String, Integer> entry : cartItems.entrySet()) {
@@ -974,11 +1552,11 @@ private JPanel createHeaderPanel() {
 
                 JLabel nameLabel = new JLabel(name + " x" + quantity);
                 nameLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
-                nameLabel.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
+                theme.foreground(nameLabel, Theme.Token.TEXT_STRONG);
 
                 JLabel priceLabel = new JLabel("OMR " + priceFormat.format(pizzaPrices.get(name) * quantity));
                 priceLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-                priceLabel.setForeground(isDarkMode ? Color.LIGHT_GRAY : new Color(100, 100, 100));
+                theme.foreground(priceLabel, Theme.Token.TEXT_SUBTLE);
 
                 JPanel infoPanel = new JPanel();
                 infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
@@ -994,14 +1572,7 @@ private JPanel createHeaderPanel() {
                 removeBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
                 removeBtn.addActionListener(e -> {
                     playButtonClick();
-                    int qty = cartItems.get(name);
-                    if (qty <= 1) {
-                        cartItems.remove(name);
-                    } else {
-                        cartItems.put(name, qty - 1);
-                    }
-                    total -= pizzaPrices.get(name);
-                    updateCartUI();
+                    cartLog.remove(name, 1, pizzaPrices.get(name));
                 });
 
                 cartItemPanel.add(infoPanel, BorderLayout.CENTER);
@@ -1017,36 +1588,68 @@ private JPanel createHeaderPanel() {
     }
 
     private void showCustomizationDialog(String pizzaName, Runnable onAddToCart) {
-        JDialog dialog = new JDialog(this, "Customize Your " + pizzaName, true);
+        long openStart = System.nanoTime();
+        if (customizationDialog == null) {
+            buildCustomizationDialog();
+        }
+
+        // Rebind the warm dialog to this pizza and its current configuration
+        customizingPizza = pizzaName;
+        customizationCallback = onAddToCart;
+        customizationDialog.setTitle("Customize Your " + pizzaName);
+        customizeTitleLabel.setText("Customize " + pizzaName);
+        customizeImageLabel.setIcon(pizzaImages.get(pizzaName));
+        customizeImageLabel.setVisible(pizzaImages.containsKey(pizzaName));
+        customizeBasePriceLabel.setText("Base Price: OMR " + basePrices.get(pizzaName));
+
+        List<String> current = pizzaCustomizations.getOrDefault(pizzaName, new ArrayList<>());
+        sizeButtons[0].setSelected(true);
+        for (int i = 1; i < SIZE_OPTIONS.length; i++) {
+            if (current.contains(SIZE_OPTIONS[i] + " Size")) {
+                sizeButtons[i].setSelected(true);
+            }
+        }
+        for (int i = 0; i < TOPPING_OPTIONS.length; i++) {
+            toppingBoxes[i].setSelected(current.contains(TOPPING_OPTIONS[i]));
+        }
+        updateCustomizationTotal();
+        customizeAddButton.setVisible(onAddToCart != null);
+
+        customizationDialog.setLocationRelativeTo(this);
+        customizationOpenStart = openStart;
+        customizationDialog.setVisible(true);
+    }
+
+    private void buildCustomizationDialog() {
+        customizationDialog = new JDialog(this, "Customize", true);
+        JDialog dialog = customizationDialog;
         dialog.setSize(550, 600);
-        dialog.setLocationRelativeTo(this);
         dialog.setLayout(new BorderLayout());
-        dialog.getContentPane().setBackground(isDarkMode ? new Color(60, 60, 60) : Color.WHITE);
+        dialog.setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
+        theme.background((JComponent) dialog.getContentPane(), Theme.Token.DIALOG);
 
         JPanel optionsPanel = new JPanel();
         optionsPanel.setLayout(new BoxLayout(optionsPanel, BoxLayout.Y_AXIS));
         optionsPanel.setBorder(new EmptyBorder(20, 20, 20, 20));
-        optionsPanel.setBackground(isDarkMode ? new Color(60, 60, 60) : Color.WHITE);
+        theme.background(optionsPanel, Theme.Token.DIALOG);
 
-        JLabel titleLabel = new JLabel("Customize " + pizzaName);
-        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        titleLabel.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
-        titleLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
-        optionsPanel.add(titleLabel);
+        customizeTitleLabel = new JLabel();
+        customizeTitleLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        theme.foreground(customizeTitleLabel, Theme.Token.TEXT_STRONG);
+        customizeTitleLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        optionsPanel.add(customizeTitleLabel);
         optionsPanel.add(Box.createRigidArea(new Dimension(0, 15)));
 
         // Display pizza image
-        if (pizzaImages.containsKey(pizzaName)) {
-            JLabel pizzaImageLabel = new JLabel(pizzaImages.get(pizzaName));
-            pizzaImageLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-            optionsPanel.add(pizzaImageLabel);
-            optionsPanel.add(Box.createRigidArea(new Dimension(0, 15)));
-        }
+        customizeImageLabel = new JLabel();
+        customizeImageLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        optionsPanel.add(customizeImageLabel);
+        optionsPanel.add(Box.createRigidArea(new Dimension(0, 15)));
 
-        JLabel priceLabel = new JLabel("Base Price: OMR " + pizzaPrices.get(pizzaName));
-        priceLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        priceLabel.setForeground(PRIMARY_COLOR);
-        optionsPanel.add(priceLabel);
+        customizeBasePriceLabel = new JLabel();
+        customizeBasePriceLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        customizeBasePriceLabel.setForeground(PRIMARY_COLOR);
+        optionsPanel.add(customizeBasePriceLabel);
         optionsPanel.add(Box.createRigidArea(new Dimension(0, 20)));
 
         // Size options
@@ -1056,26 +1659,23 @@ private JPanel createHeaderPanel() {
         
         JLabel sizeLabel = new JLabel("Size:");
         sizeLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        sizeLabel.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
-        
-        ButtonGroup sizeGroup = new ButtonGroup();
-        JRadioButton smallBtn = new JRadioButton("Small");
-        JRadioButton mediumBtn = new JRadioButton("Medium (+OMR 1.000)");
-        JRadioButton largeBtn = new JRadioButton("Large (+OMR 2.000)");
-        
-        smallBtn.setSelected(true);
-        styleRadioButton(smallBtn);
-        styleRadioButton(mediumBtn);
-        styleRadioButton(largeBtn);
-        
-        sizeGroup.add(smallBtn);
-        sizeGroup.add(mediumBtn);
-        sizeGroup.add(largeBtn);
-        
+        theme.foreground(sizeLabel, Theme.Token.TEXT_STRONG);
         sizePanel.add(sizeLabel);
-        sizePanel.add(smallBtn);
-        sizePanel.add(mediumBtn);
-        sizePanel.add(largeBtn);
+
+        ActionListener priceUpdater = e -> updateCustomizationTotal();
+
+        ButtonGroup sizeGroup = new ButtonGroup();
+        sizeButtons = new JRadioButton[SIZE_OPTIONS.length];
+        for (int i = 0; i < SIZE_OPTIONS.length; i++) {
+            String label = SIZE_SURCHARGES[i] > 0
+                ? SIZE_OPTIONS[i] + " (+OMR " + priceFormat.format(SIZE_SURCHARGES[i]) + ")"
+                : SIZE_OPTIONS[i];
+            sizeButtons[i] = new JRadioButton(label);
+            styleRadioButton(sizeButtons[i]);
+            sizeButtons[i].addActionListener(priceUpdater);
+            sizeGroup.add(sizeButtons[i]);
+            sizePanel.add(sizeButtons[i]);
+        }
         
         optionsPanel.add(sizePanel);
         optionsPanel.add(Box.createRigidArea(new Dimension(0, 15)));
@@ -1083,91 +1683,100 @@ private JPanel createHeaderPanel() {
         // Toppings options
         JLabel toppingsLabel = new JLabel("Extra Toppings:");
         toppingsLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        toppingsLabel.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
+        theme.foreground(toppingsLabel, Theme.Token.TEXT_STRONG);
         toppingsLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         optionsPanel.add(toppingsLabel);
         optionsPanel.add(Box.createRigidArea(new Dimension(0, 10)));
 
-        JCheckBox extraCheese = createStyledCheckBox("Extra Cheese (+OMR 0.760)");
-        JCheckBox pepperoni = createStyledCheckBox("Pepperoni (+OMR 0.850)");
-        JCheckBox mushrooms = createStyledCheckBox("Mushrooms (+OMR 0.650)");
-        JCheckBox olives = createStyledCheckBox("Olives (+OMR 0.550)");
-        JCheckBox jalapenos = createStyledCheckBox("Jalapeños (+OMR 0.600)");
-
-        optionsPanel.add(extraCheese);
-        optionsPanel.add(Box.createRigidArea(new Dimension(0, 5)));
-        optionsPanel.add(pepperoni);
-        optionsPanel.add(Box.createRigidArea(new Dimension(0, 5)));
-        optionsPanel.add(mushrooms);
-        optionsPanel.add(Box.createRigidArea(new Dimension(0, 5)));
-        optionsPanel.add(olives);
-        optionsPanel.add(Box.createRigidArea(new Dimension(0, 5)));
-        optionsPanel.add(jalapenos);
-        optionsPanel.add(Box.createRigidArea(new Dimension(0, 20)));
-
-        JLabel totalLabel = new JLabel("Total: OMR " + pizzaPrices.get(pizzaName));
-        totalLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
-        totalLabel.setForeground(PRIMARY_COLOR);
-        optionsPanel.add(totalLabel);
-
-        ActionListener priceUpdater = e -> {
-            double total = pizzaPrices.get(pizzaName);
-            if (mediumBtn.isSelected()) total += 1.000;
-            if (largeBtn.isSelected()) total += 2.000;
-            if (extraCheese.isSelected()) total += 0.760;
-            if (pepperoni.isSelected()) total += 0.850;
-            if (mushrooms.isSelected()) total += 0.650;
-            if (olives.isSelected()) total += 0.550;
-            if (jalapenos.isSelected()) total += 0.600;
-            totalLabel.setText("Total: OMR " + String.format("%.3f", total));
-        };
+        toppingBoxes = new JCheckBox[TOPPING_OPTIONS.length];
+        for (int i = 0; i < TOPPING_OPTIONS.length; i++) {
+            toppingBoxes[i] = createStyledCheckBox(TOPPING_OPTIONS[i] + " (+OMR " + priceFormat.format(TOPPING_PRICES[i]) + ")");
+            toppingBoxes[i].addActionListener(priceUpdater);
+            optionsPanel.add(toppingBoxes[i]);
+            optionsPanel.add(Box.createRigidArea(new Dimension(0, i < TOPPING_OPTIONS.length - 1 ? 5 : 20)));
+        }
 
-        smallBtn.addActionListener(priceUpdater);
-        mediumBtn.addActionListener(priceUpdater);
-        largeBtn.addActionListener(priceUpdater);
-        extraCheese.addActionListener(priceUpdater);
-        pepperoni.addActionListener(priceUpdater);
-        mushrooms.addActionListener(priceUpdater);
-        olives.addActionListener(priceUpdater);
-        jalapenos.addActionListener(priceUpdater);
+        customizeTotalLabel = new JLabel();
+        customizeTotalLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        customizeTotalLabel.setForeground(PRIMARY_COLOR);
+        optionsPanel.add(customizeTotalLabel);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
         buttonPanel.setBorder(new EmptyBorder(10, 0, 0, 0));
         buttonPanel.setOpaque(false);
         
-        if (onAddToCart != null) {
-            JButton addButton = createStyledButton("Add to Cart", ACCENT_COLOR, 120, 35);
-            addButton.addActionListener(e -> {
-                List<String> customizations = new ArrayList<>();
-                if (mediumBtn.isSelected()) customizations.add("Medium Size");
-                if (largeBtn.isSelected()) customizations.add("Large Size");
-                if (extraCheese.isSelected()) customizations.add("Extra Cheese");
-                if (pepperoni.isSelected()) customizations.add("Pepperoni");
-                if (mushrooms.isSelected()) customizations.add("Mushrooms");
-                if (olives.isSelected()) customizations.add("Olives");
-                if (jalapenos.isSelected()) customizations.add("Jalapeños");
-                
-                pizzaCustomizations.put(pizzaName, customizations);
-                pizzaPrices.put(pizzaName, Double.parseDouble(totalLabel.getText().substring(10)));
-                
-                dialog.dispose();
+        customizeAddButton = createStyledButton("Add to Cart", ACCENT_COLOR, 120, 35);
+        customizeAddButton.addActionListener(e -> {
+            String pizzaName = customizingPizza;
+            Runnable onAddToCart = customizationCallback;
+            List<String> customizations = new ArrayList<>();
+            for (int i = 1; i < SIZE_OPTIONS.length; i++) {
+                if (sizeButtons[i].isSelected()) customizations.add(SIZE_OPTIONS[i] + " Size");
+            }
+            for (int i = 0; i < TOPPING_OPTIONS.length; i++) {
+                if (toppingBoxes[i].isSelected()) customizations.add(TOPPING_OPTIONS[i]);
+            }
+            
+            pizzaCustomizations.put(pizzaName, customizations);
+            pizzaPrices.put(pizzaName, customizationTotal());
+            
+            dialog.setVisible(false);
+            if (onAddToCart != null) {
                 onAddToCart.run();
-            });
-            buttonPanel.add(addButton);
-        }
+            }
+        });
+        buttonPanel.add(customizeAddButton);
 
         JButton cancelButton = createStyledButton("Cancel", new Color(189, 195, 199), 100, 35);
-        cancelButton.addActionListener(e -> dialog.dispose());
+        cancelButton.addActionListener(e -> dialog.setVisible(false));
         buttonPanel.add(cancelButton);
 
         dialog.add(optionsPanel, BorderLayout.CENTER);
         dialog.add(buttonPanel, BorderLayout.SOUTH);
-        dialog.setVisible(true);
+
+        dialog.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                long elapsed = System.nanoTime() - customizationOpenStart;
+                if (elapsed > FRAME_BUDGET_NANOS) {
+                    System.err.println("Customization dialog took " + elapsed / 1_000_000 + " ms to open");
+                }
+            }
+        });
+        refreshStockAvailability();
+        // Lay the dialog out now so the first open only has to map the window
+        dialog.pack();
+        dialog.setSize(550, 600);
+    }
+
+    private double customizationTotal() {
+        int size = 0;
+        for (int i = 0; i < SIZE_OPTIONS.length; i++) {
+            if (sizeButtons[i].isSelected()) size = i;
+        }
+        int toppingMask = 0;
+        for (int i = 0; i < TOPPING_OPTIONS.length; i++) {
+            if (toppingBoxes[i].isSelected()) toppingMask |= 1 << i;
+        }
+        return customizedPrice(basePrices.get(customizingPizza), size, toppingMask);
+    }
+
+    // Shared by the customization dialog and the party-order import
+    private static double customizedPrice(double basePrice, int sizeIndex, int toppingMask) {
+        double total = basePrice + SIZE_SURCHARGES[sizeIndex];
+        for (int i = 0; i < TOPPING_PRICES.length; i++) {
+            if ((toppingMask & (1 << i)) != 0) total += TOPPING_PRICES[i];
+        }
+        return total;
+    }
+
+    private void updateCustomizationTotal() {
+        customizeTotalLabel.setText("Total: OMR " + String.format("%.3f", customizationTotal()));
     }
 
     private void styleRadioButton(JRadioButton radioButton) {
         radioButton.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        radioButton.setForeground(isDarkMode ? Color.WHITE : DARK_COLOR);
+        theme.foreground(radioButton, Theme.Token.TEXT_STRONG);
         radioButton.setOpaque(false);
         radioButton.setFocusPainted(false);
     }
@@ -1175,7 +1784,7 @@ private JPanel createHeaderPanel() {
     private JCheckBox createStyledCheckBox(String text) {
         JCheckBox checkBox = new JCheckBox(text);
         checkBox.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        checkBox.setForeground(isDarkMode ? Color.WHITE : TEXT_COLOR);
+        theme.foreground(checkBox, Theme.Token.TEXT_BODY);
         checkBox.setOpaque(false);
         checkBox.setFocusPainted(false);
         return checkBox;
@@ -1197,52 +1806,106 @@ private JPanel createHeaderPanel() {
                 JOptionPane.WARNING_MESSAGE);
             return;
         }
-        
-        playCheckoutSound();
-        
-        // Create order summary
-        StringBuilder summary = new StringBuilder("<html><div style='text-align:center;'><h2>Order Summary</h2><br>");
-        summary.append("<table align='center' cellpadding='5'>");
-        summary.append("<tr><th align='left'>Item</th><th align='right'>Qty</th><th align='right'>Price</th></tr>");
-        
+
+        if (checkoutPending) {
+            return;
+        }
+
+        long deliverAt = parseDeliverAt(deliverAtField.getText().trim());
+        if (deliverAt < 0) {
+            JOptionPane.showMessageDialog(this, 
+                "Please enter the delivery time as HH:MM, for example 19:30", 
+                "Invalid Delivery Time", 
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        // Validation, pricing, persistence and kitchen hand-off run off the EDT
+        Order order = snapshotOrder().withDeliverAt(deliverAt);
+        checkoutCart = new HashMap<>(cartItems);
+        CompletableFuture<Order> placed;
+        try {
+            placed = checkoutPipeline.submit(order);
+        } catch (RejectedExecutionException e) {
+            showCheckoutError(e);
+            return;
+        }
+        checkoutPending = true;
+        checkoutBtn.setEnabled(false);
+        placed.whenComplete((priced, error) -> {
+            resolvedZones.remove(order.id);
+            if (error != null) {
+                orderGuard.forget(order);
+                inventory.release(order);
+                promoEngine.release(order);
+                if (cartReplicator != null) {
+                    cartReplicator.withdrawCheckout(order.id);
+                }
+            } else {
+                inventory.commit(priced);
+                promoEngine.commit(priced);
+            }
+        });
+        placed.whenComplete((priced, error) -> SwingUtilities.invokeLater(() -> {
+            checkoutPending = false;
+            checkoutBtn.setEnabled(true);
+            if (error != null) {
+                showCheckoutError(error);
+            } else {
+                promoField.setText("");
+                deliverAtField.setText("");
+                // Emptied for every terminal before the order is published, so none can order it again
+                clearOrderedCart();
+                if (cartReplicator != null) {
+                    cartReplicator.recordOrder(priced.id, priced.customer + " OMR " + priceFormat.format(priced.total()));
+                }
+                showOrderConfirmation(priced);
+            }
+        }));
+    }
+
+    private Order snapshotOrder() {
+        List<Order.Line> lines = new ArrayList<>();
         for (Map.Entry<String, Integer> entry : cartItems.entrySet()) {
             String name = entry.getKey();
-            int qty = entry.getValue();
-            double price = pizzaPrices.get(name) * qty;
-            
-            summary.append("<tr>")
-                  .append("<td align='left'>").append(name).append("</td>")
-                  .append("<td align='right'>").append(qty).append("</td>")
-                  .append("<td align='right'>OMR ").append(priceFormat.format(price)).append("</td>")
-                  .append("</tr>");
-            
-            // Add customizations if any
-            List<String> customizations = pizzaCustomizations.get(name);
-            if (customizations != null && !customizations.isEmpty()) {
-                summary.append("<tr><td colspan='3' align='left' style='font-size:smaller; color:#666;'>")
-                      .append("&nbsp;&nbsp;• ").append(String.join(", ", customizations))
-                      .append("</td></tr>");
-            }
+            lines.add(new Order.Line(cartLineItems.getOrDefault(name, name), entry.getValue(),
+                pizzaPrices.get(name), pizzaCustomizations.get(name)));
         }
-        
-        summary.append("<tr><td colspan='3'><hr></td></tr>")
-              .append("<tr><td align='left'><b>Total</b></td><td></td><td align='right'><b>OMR ")
-              .append(priceFormat.format(total)).append("</b></td></tr>")
-              .append("</table><br>");
-        
-        // Add user details
-        summary.append("<div style='text-align:left; margin-left:20%;'>")
-              .append("<b>Delivery to:</b> ").append(userDetails.get("destination")).append("<br>")
-              .append("<b>Confirmation will be sent to:</b> ").append(userDetails.get("email"))
-              .append("</div><br><br>Thank you for your order, ").append(currentUser).append("!<br><br>🍕🎉</div></html>");
-        
-        JDialog confettiDialog = new JDialog(this, "Order Confirmed!", true);
-        confettiDialog.setSize(500, 650);
-        confettiDialog.setLocationRelativeTo(this);
-        confettiDialog.setUndecorated(true);
-        confettiDialog.setShape(new RoundRectangle2D.Double(0, 0, 500, 650, 30, 30));
-        
-        JPanel confettiPanel = new JPanel(new BorderLayout()) {
+        return new Order(CheckoutPipeline.nextOrderId(), System.currentTimeMillis(), currentUser,
+            userDetails.get("email"), userDetails.get("destination"), lines)
+            .withPromoCode(promoField.getText().trim());
+    }
+
+    // Next occurrence of HH:MM (today, or tomorrow once it has passed); 0 for ASAP, -1 if unreadable
+    private static long parseDeliverAt(String text) {
+        if (text.isEmpty()) {
+            return 0;
+        }
+        LocalTime time;
+        try {
+            time = LocalTime.parse(text, DateTimeFormatter.ofPattern("H:mm"));
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime at = now.with(time);
+        if (!at.isAfter(now)) {
+            at = at.plusDays(1);
+        }
+        return at.toInstant().toEpochMilli();
+    }
+
+    private void showCheckoutError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        JOptionPane.showMessageDialog(this, 
+            "<html><div style='text-align:center;'>" + cause.getMessage() + "</div></html>", 
+            "Checkout Failed", 
+            JOptionPane.WARNING_MESSAGE);
+    }
+
+    // Gradient card sprinkled with confetti; static so PaintBenchmark can paint it without a frame
+    static JPanel confettiBackground(LayoutManager layout) {
+        return new JPanel(layout) {
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
@@ -1274,11 +1937,24 @@ private JPanel createHeaderPanel() {
                 }
             }
         };
+    }
+
+    private void showOrderConfirmation(Order order) {
+        playCheckoutSound();
+        
+        JDialog confettiDialog = new JDialog(this, "Order Confirmed!", true);
+        confettiDialog.setSize(500, 650);
+        confettiDialog.setLocationRelativeTo(this);
+        confettiDialog.setUndecorated(true);
+        confettiDialog.setShape(new RoundRectangle2D.Double(0, 0, 500, 650, 30, 30));
+        
+        JPanel confettiPanel = confettiBackground(new BorderLayout());
         
-        JLabel message = new JLabel(summary.toString(), SwingConstants.CENTER);
-        message.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        // Order summary painted straight from the compiled receipt template
+        ReceiptView message = new ReceiptView(ReceiptTemplate.defaultTemplate(), new Font("Segoe UI", Font.PLAIN, 14));
         message.setForeground(Color.WHITE);
-        message.setBorder(new EmptyBorder(40, 20, 20, 20));
+        message.setBorder(new EmptyBorder(40, 40, 20, 40));
+        message.setOrder(order);
         confettiPanel.add(message, BorderLayout.CENTER);
         
         JButton closeBtn = createStyledButton("OK", Color.WHITE, 100, 35);
@@ -1302,9 +1978,6 @@ private JPanel createHeaderPanel() {
             @Override
             public void windowClosed(WindowEvent e) {
                 confettiTimer.stop();
-                cartItems.clear();
-                total = 0.0;
-                updateCartUI();
             }
         });
         
@@ -1312,55 +1985,62 @@ private JPanel createHeaderPanel() {
     }
 
     private void playButtonClick() {
-        if (buttonClickSound != null) {
-            buttonClickSound.setFramePosition(0);
-            buttonClickSound.start();
+        if (audioEngine != null) {
+            audioEngine.play(AudioEngine.Sound.CLICK);
         }
     }
 
     private void playAddSound() {
-        if (addToCartSound != null) {
-            addToCartSound.setFramePosition(0);
-            addToCartSound.start();
+        if (audioEngine != null) {
+            audioEngine.play(AudioEngine.Sound.ADD);
         }
     }
 
     private void playCheckoutSound() {
-        if (checkoutSound != null) {
-            checkoutSound.setFramePosition(0);
-            checkoutSound.start();
+        if (audioEngine != null) {
+            audioEngine.play(AudioEngine.Sound.CHECKOUT);
         }
     }
 
-    private void loadPizzaImages() throws IOException {
+    // Decoded on first paint; until then each entry is only a key in imageStore
+    private void loadPizzaImages() {
         pizzaImages = new HashMap<>();
         for (String[] item : menuItems) {
-            String imageName = item[3];
-            try {
-                InputStream is = getClass().getResourceAsStream("/images/" + imageName);
-                if (is != null) {
-                    BufferedImage img = ImageIO.read(is);
-                    // Create rounded corners for images
-                    BufferedImage rounded = new BufferedImage(150, 100, BufferedImage.TYPE_INT_ARGB);
-                    Graphics2D g2 = rounded.createGraphics();
+            String resource = "/images/" + item[3];
+            pizzaImages.put(item[0], imageStore.icon("rounded:" + resource + "@150x100", 150, 100,
+                () -> scaledImage(resource, 150, 100, true)));
+        }
+    }
+
+    // The resource scaled to size (with rounded corners if asked), or a placeholder when it is missing
+    private BufferedImage scaledImage(String resource, int width, int height, boolean rounded) {
+        try (InputStream is = getClass().getResourceAsStream(resource)) {
+            BufferedImage img = is == null ? null : ImageIO.read(is);
+            if (img != null) {
+                BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g2 = scaled.createGraphics();
+                if (rounded) {
                     g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
                     g2.setColor(Color.WHITE);
-                    g2.fillRoundRect(0, 0, 150, 100, 20, 20);
+                    g2.fillRoundRect(0, 0, width, height, 20, 20);
                     g2.setComposite(AlphaComposite.SrcIn);
-                    g2.drawImage(img.getScaledInstance(150, 100, Image.SCALE_SMOOTH), 0, 0, null);
-                    g2.dispose();
-                    
-                    pizzaImages.put(item[0], new ImageIcon(rounded));
-                } else {
-                    pizzaImages.put(item[0], createPlaceholderIcon(150, 100));
                 }
-            } catch (IOException e) {
-                pizzaImages.put(item[0], createPlaceholderIcon(150, 100));
+                g2.drawImage(img.getScaledInstance(width, height, Image.SCALE_SMOOTH), 0, 0, null);
+                g2.dispose();
+                return scaled;
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+        return placeholderImage(width, height);
+    }
+
+    private Icon createPlaceholderIcon(int width, int height) {
+        return imageStore.icon("placeholder@" + width + "x" + height, width, height,
+            () -> placeholderImage(width, height));
     }
 
-    private ImageIcon createPlaceholderIcon(int width, int height) {
+    private BufferedImage placeholderImage(int width, int height) {
         BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         Graphics2D g2d = img.createGraphics();
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -1390,48 +2070,347 @@ private JPanel createHeaderPanel() {
         g2d.drawString(text, x, y);
         
         g2d.dispose();
-        return new ImageIcon(img);
+        return img;
     }
 
-    private ImageIcon createIcon(String path, int width, int height) {
+    private Icon createIcon(String path, int width, int height) {
+        return imageStore.icon("/icons/" + path + "@" + width + "x" + height, width, height,
+            () -> scaledImage("/icons/" + path, width, height, false));
+    }
+
+    private void initializeCheckout() {
+        Path journal = null;
+        try {
+            journal = AppData.file("orders.log");
+        } catch (IOException e) {
+            // Orders still go through, they just are not journaled
+            e.printStackTrace();
+        }
+        checkoutPipeline = new CheckoutPipeline(kitchenQueue, journal);
+        salesWindow = newSalesWindow();
+        checkoutPipeline.addNotifier(salesWindow::record);
+        initializeGuard();
+        // A shared cart is claimed before anything is reserved, so two terminals never order it twice
+        checkoutPipeline.addValidator(order -> {
+            if (cartReplicator != null) {
+                cartReplicator.claimCheckout(order.id, checkoutCart);
+            }
+        });
+        initializeDeliveryZones();
+        initializeInventory();
+        initializePromos();
+        initializeStores();
+        initializePreOrders();
+        // Stock is taken last, so orders rejected by any other check never touch it
+        checkoutPipeline.addValidator(inventory::reserve);
+
+        // Confirmations are queued on disk and sent by the mailer's own workers
         try {
-            InputStream is = getClass().getResourceAsStream("/icons/" + path);
-            if (is != null) {
-                BufferedImage img = ImageIO.read(is);
-                return new ImageIcon(img.getScaledInstance(width, height, Image.SCALE_SMOOTH));
+            Integer sinkPort = Integer.getInteger("napuli.smtp.sink");
+            if (sinkPort != null) {
+                smtpSink = SmtpSink.start(sinkPort, 0);
+                System.out.println("SMTP sink listening on port " + smtpSink.getPort());
+                confirmationMailer = new ConfirmationMailer(AppData.file("outbox"), "127.0.0.1", smtpSink.getPort(),
+                    "orders@napuli-oven.local", ReceiptTemplate.defaultTemplate());
+            } else {
+                confirmationMailer = ConfirmationMailer.fromSystemProperties(AppData.file("outbox"));
             }
+            confirmationMailer.start();
+            checkoutPipeline.addNotifier(confirmationMailer::enqueue);
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return createPlaceholderIcon(width, height);
     }
 
-    private void loadSounds() throws IOException, UnsupportedAudioFileException, LineUnavailableException {
-        // These would be loaded from actual sound files in a real application
-        // Here we just initialize them with empty clips
-        AudioFormat format = new AudioFormat(44100, 16, 1, true, false);
-        
-        // Button click sound
-        buttonClickSound = AudioSystem.getClip();
-        
-        // Add to cart sound
-        addToCartSound = AudioSystem.getClip();
-        
-        // Checkout sound
-        checkoutSound = AudioSystem.getClip();
+    private SalesWindow newSalesWindow() {
+        String[] menuNames = new String[menuItems.length];
+        for (int i = 0; i < menuItems.length; i++) {
+            menuNames[i] = menuItems[i][0];
+        }
+        return new SalesWindow(menuNames, SALES_BUCKET_MILLIS, SALES_BUCKETS);
+    }
+
+    private void initializeDeliveryZones() {
+        try {
+            Path gazetteerFile = AppData.file("gazetteer.tsv");
+            Path zonesFile = AppData.file("zones.tsv");
+            if (!Files.exists(gazetteerFile) || !Files.exists(zonesFile)) {
+                return;
+            }
+            gazetteer = Gazetteer.load(gazetteerFile);
+            deliveryZones = DeliveryZones.load(zonesFile);
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            gazetteer = null;
+            deliveryZones = null;
+            return;
+        }
+        checkoutPipeline.addValidator(order -> {
+            DeliveryZones.Zone zone = resolveDeliveryZone(order.destination);
+            if (zone == null) {
+                throw new IllegalArgumentException("Sorry, we don't deliver to " + order.destination + " yet.");
+            }
+            resolvedZones.put(order.id, zone);
+        });
+        checkoutPipeline.setDeliveryFees(order -> {
+            DeliveryZones.Zone zone = zoneOf(order);
+            return zone == null ? 0.0 : zone.fee;
+        });
+        initializeDispatch();
+    }
+
+    // Routing needs the store location: -Dnapuli.depot=lat,lon
+    private void initializeDispatch() {
+        String depot = System.getProperty("napuli.depot");
+        if (depot == null) {
+            return;
+        }
+        String[] latLon = depot.split(",");
+        try {
+            deliveryDispatcher = new DeliveryDispatcher(
+                Double.parseDouble(latLon[0].trim()), Double.parseDouble(latLon[1].trim()),
+                Integer.getInteger("napuli.dispatch.maxStops", 8),
+                Long.getLong("napuli.dispatch.windowSeconds", 300L) * 1000L,
+                Long.getLong("napuli.dispatch.budgetMillis", DeliveryDispatcher.DEFAULT_BUDGET_MILLIS) * 1_000_000L,
+                this::showRoutes);
+        } catch (RuntimeException e) {
+            System.err.println("Ignoring invalid napuli.depot '" + depot + "': " + e);
+            return;
+        }
+        deliveryDispatcher.start();
+        checkoutPipeline.addNotifier(order -> {
+            Gazetteer.Point point = gazetteer.lookup(order.destination);
+            if (point != null) {
+                deliveryDispatcher.add(order, point.lat, point.lon);
+            }
+        });
+    }
+
+    // Called on the dispatcher thread; the kitchen tab picks the lines up on its next refresh
+    private void showRoutes(List<DeliveryDispatcher.Route> routes) {
+        List<String> lines = new ArrayList<>(routes.size());
+        int driver = 1;
+        for (DeliveryDispatcher.Route route : routes) {
+            StringBuilder line = new StringBuilder();
+            line.append(String.format("Driver %d (%.1f km):", driver++, route.lengthKm));
+            for (DeliveryDispatcher.Stop stop : route.stops) {
+                line.append(" #").append(stop.order.id % 10_000).append(' ').append(stop.order.destination);
+            }
+            lines.add(line.toString());
+        }
+        driverRoutes = Collections.unmodifiableList(lines);
+    }
+
+    private void initializePromos() {
+        Set<String> items = new HashSet<>();
+        for (String[] item : menuItems) {
+            items.add(item[0]);
+        }
+        Map<String, Double> toppingPrices = new HashMap<>();
+        for (int i = 0; i < TOPPING_OPTIONS.length; i++) {
+            toppingPrices.put(TOPPING_OPTIONS[i], TOPPING_PRICES[i]);
+        }
+        try {
+            promoEngine = new PromoEngine(items, SIZE_OPTIONS, toppingPrices, AppData.file("redeemed-promos.bin"));
+            Path rules = AppData.file("promos.tsv");
+            if (Files.exists(rules)) {
+                promoEngine.loadRules(rules);
+            }
+            promoEngine.open();
+        } catch (IOException e) {
+            // Without the redemption set single-use codes cannot be checked, so no code is accepted
+            e.printStackTrace();
+            promoEngine = new PromoEngine(items, SIZE_OPTIONS, toppingPrices, null);
+        }
+        // Before the inventory check; a code held here is released through the usual failure path
+        checkoutPipeline.addValidator(promoEngine::reserve);
+        checkoutPipeline.addPricingRule(promoEngine);
+    }
+
+    // First validator, so repeats and floods are turned away before anything is reserved
+    private void initializeGuard() {
+        orderGuard = new OrderGuard(GUARD_WINDOW_MILLIS, GUARD_BUCKETS,
+            Integer.getInteger("napuli.guard.peakRate", 1_000),
+            Integer.getInteger("napuli.guard.burst", 5),
+            Integer.getInteger("napuli.guard.perMinute", 10),
+            GUARD_MAX_CUSTOMERS);
+        checkoutPipeline.addValidator(orderGuard::check);
+    }
+
+    private void initializeStores() {
+        Path file;
+        try {
+            file = AppData.file("stores.tsv");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (!Files.exists(file)) {
+            return;
+        }
+        Map<String, Double> basePrices = new HashMap<>();
+        for (String[] item : menuItems) {
+            basePrices.put(item[0], Double.valueOf(item[1]));
+        }
+        storeRouter = new StoreRouter(basePrices, promoEngine::deal, this::routingKey);
+        try {
+            storeRouter.load(file);
+        } catch (IOException e) {
+            System.err.println("Stores disabled: " + e.getMessage());
+            storeRouter = null;
+            return;
+        }
+        checkoutPipeline.setStoreRouter(storeRouter);
+
+        // New branches join the ring without a restart
+        Thread watcher = new Thread(() -> {
+            long modified = file.toFile().lastModified();
+            while (true) {
+                try {
+                    Thread.sleep(STORES_POLL_MILLIS);
+                    long now = file.toFile().lastModified();
+                    if (now != modified) {
+                        modified = now;
+                        int added = storeRouter.load(file);
+                        System.err.println("Reloaded stores.tsv: " + added + " new, "
+                            + storeRouter.ring().stores().size() + " total");
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    System.err.println("Keeping current stores: " + e.getMessage());
+                }
+            }
+        }, "store-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    // Pre-orders wait in preorders.log and reach the kitchen napuli.preorder.prepMinutes before delivery
+    private void initializePreOrders() {
+        long prepLead = Long.getLong("napuli.preorder.prepMinutes", 30L) * 60_000L;
+        try {
+            preOrderScheduler = new PreOrderScheduler(AppData.file("preorders.log"), prepLead,
+                checkoutPipeline::sendToKitchen);
+            preOrderScheduler.open();
+        } catch (IOException | RuntimeException e) {
+            // The pipeline then turns pre-orders away; ASAP orders are unaffected
+            e.printStackTrace();
+            preOrderScheduler = null;
+            return;
+        }
+        checkoutPipeline.addValidator(preOrderScheduler::validate);
+        checkoutPipeline.setPreOrderScheduler(preOrderScheduler);
+    }
+
+    // Orders route by delivery zone when zones are installed, else by address
+    private String routingKey(Order order) {
+        DeliveryZones.Zone zone = deliveryZones == null ? null : zoneOf(order);
+        return zone != null ? zone.id : Gazetteer.normalize(order.destination);
+    }
+
+    private void initializeInventory() {
+        for (String[] recipe : RECIPES) {
+            inventory.defineRecipe(recipe[0], recipe[1]);
+        }
+        try {
+            Path stockFile = AppData.file("inventory.tsv");
+            if (Files.exists(stockFile)) {
+                inventory.loadStock(stockFile);
+                // Usage since the stock file was last written; replacing the file restocks
+                inventory.openUsageLog(AppData.file("inventory-used.log"),
+                    Long.toString(Files.getLastModifiedTime(stockFile).toMillis()));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        inventory.addListener((ingredient, low) -> SwingUtilities.invokeLater(this::refreshStockAvailability));
+    }
+
+    // Enables or greys the existing menu and customization controls; nothing is rebuilt
+    private void refreshStockAvailability() {
+        for (Map.Entry<String, JComponent[]> entry : menuItemControls.entrySet()) {
+            boolean available = !inventory.isLow(entry.getKey());
+            for (JComponent control : entry.getValue()) {
+                control.setEnabled(available);
+                control.setToolTipText(available ? null : "Running low, back soon");
+            }
+        }
+        if (toppingBoxes != null) {
+            for (int i = 0; i < TOPPING_OPTIONS.length; i++) {
+                toppingBoxes[i].setEnabled(!inventory.isLow(TOPPING_OPTIONS[i]));
+            }
+            for (int i = 1; i < SIZE_OPTIONS.length; i++) {
+                sizeButtons[i].setEnabled(!inventory.isLow(SIZE_OPTIONS[i] + " Size"));
+            }
+        }
+    }
+
+    // The zone the validator resolved; looked up again only for orders it has not seen
+    private DeliveryZones.Zone zoneOf(Order order) {
+        DeliveryZones.Zone zone = resolvedZones.get(order.id);
+        return zone != null ? zone : resolveDeliveryZone(order.destination);
+    }
+
+    private DeliveryZones.Zone resolveDeliveryZone(String address) {
+        Gazetteer.Point point = gazetteer.lookup(address);
+        return point == null ? null : deliveryZones.locate(point.lat, point.lon);
+    }
+
+    private void initializeRecommendations() {
+        Path log = null;
+        try {
+            log = AppData.file("ratings.log");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        recommendationEngine = new RecommendationEngine(log, 2);
+        recommendationEngine.addListener(() -> SwingUtilities.invokeLater(this::refreshRecommendations));
+        recommendationEngine.start();
+    }
+
+    // Reads the precomputed tables; each card costs two map lookups
+    private void refreshRecommendations() {
+        for (Map.Entry<String, JComponent[]> entry : recommendationViews.entrySet()) {
+            String name = entry.getKey();
+            JLabel alsoLikeLabel = (JLabel) entry.getValue()[0];
+            List<String> similar = recommendationEngine.alsoLike(name);
+            alsoLikeLabel.setText(similar.isEmpty() ? "" : "You might also like: " + String.join(", ", similar));
+            alsoLikeLabel.setVisible(!similar.isEmpty());
+
+            RecommendationEngine.Aggregate aggregate = recommendationEngine.aggregate(name);
+            entry.getValue()[1].setToolTipText(aggregate == null || aggregate.count == 0 ? null
+                : String.format("%.1f stars from %d customers", aggregate.mean, aggregate.count));
+        }
+    }
+
+    private void loadStarIcons() {
+        // Shared by every rating widget and favorites row
+        starFilledIcon = createIcon("star_filled.png", 16, 16);
+        starEmptyIcon = createIcon("star_empty.png", 16, 16);
+        starSmallIcon = createIcon("star_filled.png", 12, 12);
+    }
+
+    private void loadSounds() {
+        // Decoding and line acquisition run on the mixer thread, off the EDT
+        audioEngine = AudioEngine.start();
     }
 
     public static void main(String[] args) {
+        StartupProfile startup = new StartupProfile();
         SwingUtilities.invokeLater(() -> {
+            startup.mark("event thread");
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
             } catch (Exception e) {
                 e.printStackTrace();
             }
-            
-            PizzaOrderSystem frame = new PizzaOrderSystem();
+            startup.mark("look and feel");
+
+            PizzaOrderSystem frame = new PizzaOrderSystem(startup);
             frame.setVisible(true);
             frame.setLocationRelativeTo(null);
+            startup.mark("show window");
         });
     }
 }
\ No newline at end of file
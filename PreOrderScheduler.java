@@ -0,0 +1,275 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds paid pre-orders until their prep-start time (delivery time minus
+ * the prep lead) and then releases them to the kitchen. Orders sit in a
+ * hierarchical timer wheel: LEVELS wheels of SLOTS slots, each level
+ * ticking SLOTS times slower than the one below, so one-second ticks cover
+ * half a year. Scheduling and releasing are O(1) list operations; one
+ * clock thread serves every order.
+ *
+ * Every scheduled order is appended to a log before it is acknowledged and
+ * marked done once released. open() replays the log after a restart,
+ * releases anything that fell due while the app was down, and rewrites
+ * the log with just the orders still waiting.
+ */
+final class PreOrderScheduler {
+    private static final class Node {
+        final Order order;
+        final long releaseTick;
+        Node prev;
+        Node next;
+
+        Node(Order order, long releaseTick) {
+            this.order = order;
+            this.releaseTick = releaseTick;
+        }
+    }
+
+    static final long TICK_MILLIS = 1000;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    static final long MAX_AHEAD_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    private final Path log;
+    private final long prepLeadMillis;
+    private final Consumer<Order> release;
+    private final LongSupplier clockMillis;
+    // Sentinel per slot; a slot's list is circular through it
+    private final Node[][] wheels = new Node[LEVELS][SLOTS];
+    private long currentTick;
+    private int pending;
+    private Thread clock;
+
+    PreOrderScheduler(Path log, long prepLeadMillis, Consumer<Order> release) {
+        this(log, prepLeadMillis, release, System::currentTimeMillis);
+    }
+
+    /** With a stand-in wall clock, so SelfTest can move time forward. */
+    PreOrderScheduler(Path log, long prepLeadMillis, Consumer<Order> release, LongSupplier clockMillis) {
+        this.log = log;
+        this.prepLeadMillis = prepLeadMillis;
+        this.release = release;
+        this.clockMillis = clockMillis;
+        for (Node[] wheel : wheels) {
+            for (int s = 0; s < SLOTS; s++) {
+                Node sentinel = new Node(null, 0);
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                wheel[s] = sentinel;
+            }
+        }
+        currentTick = clockMillis.getAsLong() / TICK_MILLIS;
+    }
+
+    /** Replays the log, compacts it and starts the clock thread. */
+    void open() throws IOException {
+        Map<Long, String> waiting = new LinkedHashMap<>();
+        if (Files.exists(log)) {
+            try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("A\t")) {
+                        String record = line.substring(2);
+                        waiting.put(Long.parseLong(record.substring(0, record.indexOf('\t'))), record);
+                    } else if (line.startsWith("D\t")) {
+                        waiting.remove(Long.parseLong(line.substring(2)));
+                    }
+                    // A torn last line from a crash is neither and is dropped
+                }
+            }
+        }
+        Path tmp = log.resolveSibling(log.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String record : waiting.values()) {
+                writer.write("A\t" + record);
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        List<Order> due = new ArrayList<>();
+        synchronized (this) {
+            for (String record : waiting.values()) {
+                Order order;
+                try {
+                    order = Order.fromRecord(record);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Dropping unreadable pre-order: " + e.getMessage());
+                    continue;
+                }
+                Node node = new Node(order, releaseTick(order));
+                if (node.releaseTick <= currentTick) {
+                    due.add(order);
+                } else {
+                    insert(node);
+                    pending++;
+                }
+            }
+        }
+        releaseAll(due);
+
+        clock = new Thread(this::run, "pre-order-clock");
+        clock.setDaemon(true);
+        clock.start();
+    }
+
+    /** Checkout validator: a pre-order must leave time to cook and not be too far ahead. */
+    void validate(Order order) {
+        if (!order.isPreOrder()) {
+            return;
+        }
+        long now = clockMillis.getAsLong();
+        if (order.deliverAtMillis - prepLeadMillis < now) {
+            throw new IllegalArgumentException("Pre-orders need at least " + prepLeadMillis / 60_000
+                + " minutes; please pick a later time.");
+        }
+        if (order.deliverAtMillis - now > MAX_AHEAD_MILLIS) {
+            throw new IllegalArgumentException("Pre-orders can be placed up to 7 days ahead.");
+        }
+    }
+
+    /** Makes the order durable, then parks it until its prep-start time. */
+    void schedule(Order order) {
+        append("A\t" + order.toRecord() + System.lineSeparator());
+        Node node = new Node(order, releaseTick(order));
+        synchronized (this) {
+            if (node.releaseTick > currentTick) {
+                insert(node);
+                pending++;
+                return;
+            }
+        }
+        releaseAll(Collections.singletonList(order));
+    }
+
+    synchronized int pending() {
+        return pending;
+    }
+
+    void shutdown() {
+        if (clock != null) {
+            clock.interrupt();
+        }
+    }
+
+    private long releaseTick(Order order) {
+        // Round up so an order is never released before its prep-start time
+        return (order.deliverAtMillis - prepLeadMillis + TICK_MILLIS - 1) / TICK_MILLIS;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = clockMillis.getAsLong();
+            List<Order> due = new ArrayList<>();
+            synchronized (this) {
+                // Catches up tick by tick after a stall or system sleep
+                while (currentTick < now / TICK_MILLIS) {
+                    advance(due);
+                }
+            }
+            releaseAll(due);
+            try {
+                Thread.sleep(TICK_MILLIS - System.currentTimeMillis() % TICK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Level 0 slots fire; when a level wraps, the next level's slot cascades down
+    private void advance(List<Order> due) {
+        currentTick++;
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                break;
+            }
+            Node sentinel = wheels[level][(int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1))];
+            for (Node node = detachAll(sentinel); node != null; ) {
+                Node next = node.next;
+                if (node.releaseTick <= currentTick) {
+                    due.add(node.order);
+                    pending--;
+                } else {
+                    insert(node);
+                }
+                node = next;
+            }
+        }
+        Node sentinel = wheels[0][(int) (currentTick & (SLOTS - 1))];
+        for (Node node = detachAll(sentinel); node != null; node = node.next) {
+            due.add(node.order);
+            pending--;
+        }
+    }
+
+    private void insert(Node node) {
+        long delta = node.releaseTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Node sentinel = wheels[level][(int) ((node.releaseTick >>> (SLOT_BITS * level)) & (SLOTS - 1))];
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    // Empties a slot and returns its nodes as a null-terminated chain
+    private static Node detachAll(Node sentinel) {
+        if (sentinel.next == sentinel) {
+            return null;
+        }
+        Node first = sentinel.next;
+        sentinel.prev.next = null;
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        return first;
+    }
+
+    private void releaseAll(List<Order> due) {
+        if (due.isEmpty()) {
+            return;
+        }
+        StringBuilder done = new StringBuilder();
+        for (Order order : due) {
+            try {
+                release.accept(order);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            done.append("D\t").append(order.id).append(System.lineSeparator());
+        }
+        append(done.toString());
+    }
+
+    private void append(String entry) {
+        try {
+            synchronized (log) {
+                Files.write(log, entry.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save pre-order", e);
+        }
+    }
+}
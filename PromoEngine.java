@@ -0,0 +1,636 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Promo codes for checkout. Each code or campaign is defined by a rule in
+ * plain words ("20% off TRUFFLE SPECIAL", "free Olives on Large", "1.5 off
+ * min 10") that is compiled once into a pricing function. Campaigns cover
+ * millions of issued codes (PREFIX-serial+check) without listing them.
+ *
+ * Single-use codes are recorded as 64-bit fingerprints in an append-only
+ * file, mirrored in a Bloom filter. A code the filter has never seen is
+ * accepted without touching the disk; only filter hits are confirmed,
+ * with a probe or two into a hash index of the file kept next to it.
+ * Terminals sharing the file (one data directory, or a shared drive) see
+ * each other's redemptions: the filter picks up the file's new tail before
+ * every check, and a code in checkout is held by a file in the ".holds"
+ * directory next to it, which only one terminal can create.
+ */
+final class PromoEngine implements CheckoutPipeline.PricingRule {
+    private static final class Promo {
+        final CheckoutPipeline.PricingRule rule;
+        final double minSubtotal;
+        final boolean singleUse;
+        final String secret;
+
+        Promo(CheckoutPipeline.PricingRule rule, double minSubtotal, boolean singleUse, String secret) {
+            this.rule = rule;
+            this.minSubtotal = minSubtotal;
+            this.singleUse = singleUse;
+            this.secret = secret;
+        }
+    }
+
+    // Fixed-size bit set probed with double hashing
+    private static final class BloomFilter {
+        private final long[] bits;
+        private final int hashes;
+
+        BloomFilter(long expected, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            bits = new long[(int) Math.max(1, (m + 63) >>> 6)];
+            hashes = Math.max(1, (int) Math.round((double) m / expected * Math.log(2)));
+        }
+
+        void add(long fingerprint) {
+            long size = (long) bits.length << 6;
+            long h1 = fingerprint;
+            long h2 = mix(fingerprint) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, size);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(long fingerprint) {
+            long size = (long) bits.length << 6;
+            long h1 = fingerprint;
+            long h2 = mix(fingerprint) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, size);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Open-addressing hash set of redeemed fingerprints in a mapped file,
+     * shared by the terminals. It is derived from the redemption file: each
+     * lookup first indexes whatever was appended since, under a file lock.
+     * When it would pass half full, it is retired for a file of the next
+     * generation, twice the size, which is rebuilt from the redemption file.
+     */
+    private static final class RedemptionIndex {
+        private static final int INITIAL_SLOTS = 1 << 16;
+        // Header longs: redemption file bytes indexed, fingerprints stored, retired
+        private static final int INDEXED = 0;
+        private static final int COUNT = Long.BYTES;
+        private static final int RETIRED = 2 * Long.BYTES;
+        private static final int HEADER = 3 * Long.BYTES;
+        // File locks only keep other processes out; engines in this JVM share a monitor per index
+        private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+        private final Path redeemedFile;
+        private final FileChannel log;
+        private final Object monitor;
+        private int generation;
+        private long slots;
+        private FileChannel channel;
+        private MappedByteBuffer table;
+
+        RedemptionIndex(Path redeemedFile, FileChannel log) throws IOException {
+            this.redeemedFile = redeemedFile;
+            this.log = log;
+            monitor = MONITORS.computeIfAbsent(redeemedFile.toAbsolutePath().normalize(), path -> new Object());
+            int newest = 0;
+            while (Files.exists(file(newest + 1))) {
+                newest++;
+            }
+            map(newest);
+        }
+
+        boolean contains(long fingerprint) throws IOException {
+            synchronized (monitor) {
+                while (true) {
+                    try (FileLock lock = channel.lock()) {
+                        if (table.getLong(RETIRED) == 0 && catchUp()) {
+                            long key = fingerprint == 0 ? 1 : fingerprint;
+                            for (long slot = mix(key) & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+                                long stored = table.getLong(HEADER + (int) slot * Long.BYTES);
+                                if (stored == 0 || stored == key) {
+                                    return stored == key;
+                                }
+                            }
+                        }
+                    }
+                    map(generation + 1);
+                }
+            }
+        }
+
+        void close() throws IOException {
+            synchronized (monitor) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+
+        // Indexes the redemption file's new tail; false when that needs the next generation
+        private boolean catchUp() throws IOException {
+            long indexed = table.getLong(INDEXED);
+            long end = log.size() / Long.BYTES * Long.BYTES;
+            if (end <= indexed) {
+                return true;
+            }
+            if ((table.getLong(COUNT) + (end - indexed) / Long.BYTES) * 2 > slots) {
+                table.putLong(RETIRED, 1);
+                return false;
+            }
+            forEachFingerprint(log, indexed, end, this::insert);
+            table.putLong(INDEXED, end);
+            return true;
+        }
+
+        // Fingerprint 0 is stored as 1, as 0 marks an empty slot; at worst that refuses one more code
+        private void insert(long fingerprint) {
+            long key = fingerprint == 0 ? 1 : fingerprint;
+            for (long slot = mix(key) & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+                int offset = HEADER + (int) slot * Long.BYTES;
+                long stored = table.getLong(offset);
+                if (stored == key) {
+                    // Indexed already by a terminal that died before recording how far it got
+                    return;
+                }
+                if (stored == 0) {
+                    table.putLong(offset, key);
+                    table.putLong(COUNT, table.getLong(COUNT) + 1);
+                    return;
+                }
+            }
+        }
+
+        // Earlier generations stay on disk for terminals still looking at them; they add up to one more index
+        private void map(int generation) throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+            this.generation = generation;
+            slots = (long) INITIAL_SLOTS << generation;
+            channel = FileChannel.open(file(generation),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + slots * Long.BYTES);
+        }
+
+        private Path file(int generation) {
+            return redeemedFile.resolveSibling(redeemedFile.getFileName() + ".idx" + generation);
+        }
+    }
+
+    private static final long EXPECTED_REDEMPTIONS = 4_000_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int CHECK_CHARS = 4;
+    private static final int CHECK_RANGE = 36 * 36 * 36 * 36;
+    // Holds older than this were left by a terminal that died mid-checkout
+    private static final long HOLD_EXPIRY_MILLIS = 10 * 60_000L;
+
+    private static final String MIN = "(?:\\s+min\\s+(\\d+(?:\\.\\d+)?))?";
+    private static final Pattern PERCENT_OFF = Pattern.compile("(\\d+(?:\\.\\d+)?)%\\s+off(?:\\s+(.+?))??" + MIN, Pattern.CASE_INSENSITIVE);
+    private static final Pattern AMOUNT_OFF = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s+off" + MIN, Pattern.CASE_INSENSITIVE);
+    private static final Pattern FREE_TOPPING = Pattern.compile("free\\s+(.+?)\\s+on\\s+(\\S+)" + MIN, Pattern.CASE_INSENSITIVE);
+
+    private final Map<String, Promo> codes = new HashMap<>();
+    private final Map<String, Promo> campaigns = new HashMap<>();
+    private final Set<String> menuItems;
+    private final String[] sizes;
+    private final Map<String, Double> toppingPrices;
+    private final Path redeemedFile;
+    private final Path holdsDir;
+    private BloomFilter redeemed;
+    private FileChannel redeemedLog;
+    private FileChannel redeemedAppender;
+    private RedemptionIndex redeemedIndex;
+    // Bytes of the redemption file already in the filter
+    private long filteredBytes;
+    // Single-use codes held by this terminal's orders still in checkout: fingerprint -> order id
+    private final Map<Long, Long> pending = new HashMap<>();
+    private long redeemedCount;
+
+    PromoEngine(Set<String> menuItems, String[] sizes, Map<String, Double> toppingPrices, Path redeemedFile) {
+        this.menuItems = menuItems;
+        this.sizes = sizes;
+        this.toppingPrices = toppingPrices;
+        this.redeemedFile = redeemedFile;
+        this.holdsDir = redeemedFile == null ? null : redeemedFile.resolveSibling(redeemedFile.getFileName() + ".holds");
+    }
+
+    /**
+     * Reads "CODE\trule[\tsingle-use]" lines. A code ending in "-*" is a
+     * campaign and needs a fourth column with the secret its codes are
+     * signed with.
+     */
+    void loadRules(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                try {
+                    if (parts.length < 2) {
+                        throw new IllegalArgumentException("expected code and rule");
+                    }
+                    boolean singleUse = parts.length > 2 && parts[2].trim().equalsIgnoreCase("single-use");
+                    define(parts[0].trim(), parts[1].trim(), singleUse, parts.length > 3 ? parts[3].trim() : null);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file.getFileName() + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    void define(String code, String rule, boolean singleUse, String secret) {
+        String key = code.toUpperCase(Locale.ROOT);
+        if (key.endsWith("-*")) {
+            if (secret == null || secret.isEmpty()) {
+                throw new IllegalArgumentException("campaign " + code + " needs a secret");
+            }
+            String prefix = key.substring(0, key.length() - 2);
+            campaigns.put(prefix, compile(rule, singleUse, secret));
+        } else {
+            codes.put(key, compile(rule, singleUse, null));
+        }
+    }
+
+    /** Compiles a rule that applies to every order without a code, such as a store's standing deal. */
+    CheckoutPipeline.PricingRule deal(String rule) {
+        Promo promo = compile(rule, false, null);
+        return (order, subtotal) -> subtotal < promo.minSubtotal ? 0.0 : promo.rule.discount(order, subtotal);
+    }
+
+    /** Loads the redemption file into the Bloom filter and keeps it open, with its index, until shutdown(). */
+    synchronized void open() throws IOException {
+        redeemedAppender = FileChannel.open(redeemedFile,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        redeemedLog = FileChannel.open(redeemedFile, StandardOpenOption.READ);
+        long existing = redeemedLog.size() / Long.BYTES;
+        redeemed = new BloomFilter(Math.max(EXPECTED_REDEMPTIONS, existing * 2), FALSE_POSITIVE_RATE);
+        filteredBytes = 0;
+        catchUp();
+        redeemedIndex = new RedemptionIndex(redeemedFile, redeemedLog);
+        Files.createDirectories(holdsDir);
+    }
+
+    synchronized void shutdown() {
+        if (redeemedLog == null) {
+            return;
+        }
+        try {
+            redeemedIndex.close();
+            redeemedLog.close();
+            redeemedAppender.close();
+        } catch (IOException e) {
+            System.err.println("Could not close promo redemptions: " + e.getMessage());
+        }
+    }
+
+    /** Issues the code with the given serial number for a campaign prefix. */
+    String issue(String campaign, long serial) {
+        String prefix = campaign.toUpperCase(Locale.ROOT);
+        Promo promo = campaigns.get(prefix);
+        if (promo == null) {
+            throw new IllegalArgumentException("Unknown campaign " + campaign);
+        }
+        String body = Long.toString(serial, 36).toUpperCase(Locale.ROOT);
+        return prefix + "-" + body + checkChars(promo.secret, prefix, body);
+    }
+
+    /**
+     * Checks the order's code at the validate stage and holds a single-use
+     * code until commit() or release(), so no two orders spend it, on this
+     * terminal or another one sharing the redemption file.
+     */
+    void reserve(Order order) {
+        if (order.promoCode == null || order.promoCode.trim().isEmpty()) {
+            return;
+        }
+        String code = order.promoCode.trim().toUpperCase(Locale.ROOT);
+        Promo promo = resolve(code);
+        if (promo == null) {
+            throw new IllegalArgumentException("Promo code " + code + " is not valid.");
+        }
+        double subtotal = 0;
+        for (Order.Line line : order.lines) {
+            subtotal += line.lineTotal();
+        }
+        if (subtotal < promo.minSubtotal) {
+            throw new IllegalArgumentException(String.format("Promo code %s needs an order of at least OMR %.3f.", code, promo.minSubtotal));
+        }
+        if (promo.singleUse) {
+            long fingerprint = fingerprint(code);
+            synchronized (this) {
+                if (pending.containsKey(fingerprint)) {
+                    throw new IllegalArgumentException("Promo code " + code + " has already been used.");
+                }
+                pending.put(fingerprint, order.id);
+            }
+            // Held before the file is checked: a terminal committing the code appends it before dropping its hold
+            boolean held = false;
+            try {
+                held = hold(fingerprint);
+                if (!held) {
+                    throw new IllegalArgumentException("Promo code " + code + " is in use at another terminal.");
+                }
+                if (isRedeemed(fingerprint)) {
+                    throw new IllegalArgumentException("Promo code " + code + " has already been used.");
+                }
+            } catch (IllegalArgumentException e) {
+                if (held) {
+                    unhold(fingerprint);
+                }
+                synchronized (this) {
+                    pending.remove(fingerprint, order.id);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /** Records a single-use code as spent once its order went through. */
+    void commit(Order order) {
+        if (order.promoCode == null || order.promoCode.trim().isEmpty()) {
+            return;
+        }
+        String code = order.promoCode.trim().toUpperCase(Locale.ROOT);
+        long fingerprint = fingerprint(code);
+        synchronized (this) {
+            if (!pending.remove(fingerprint, order.id)) {
+                return;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, fingerprint);
+                redeemedAppender.write(buffer);
+            } catch (IOException e) {
+                System.err.println("Could not record promo redemption: " + e.getMessage());
+            }
+            redeemed.add(fingerprint);
+            catchUp();
+        }
+        unhold(fingerprint);
+    }
+
+    /** Frees a code held by reserve() when checkout failed later on. */
+    void release(Order order) {
+        if (order.promoCode == null) {
+            return;
+        }
+        long fingerprint = fingerprint(order.promoCode.trim().toUpperCase(Locale.ROOT));
+        synchronized (this) {
+            if (!pending.remove(fingerprint, order.id)) {
+                return;
+            }
+        }
+        unhold(fingerprint);
+    }
+
+    synchronized long redeemedCount() {
+        return redeemedCount;
+    }
+
+    @Override
+    public double discount(Order order, double subtotal) {
+        if (order.promoCode == null || order.promoCode.trim().isEmpty()) {
+            return 0.0;
+        }
+        Promo promo = resolve(order.promoCode.trim().toUpperCase(Locale.ROOT));
+        return promo == null || subtotal < promo.minSubtotal ? 0.0 : promo.rule.discount(order, subtotal);
+    }
+
+    private Promo resolve(String code) {
+        Promo promo = codes.get(code);
+        if (promo != null) {
+            return promo;
+        }
+        int dash = code.lastIndexOf('-');
+        if (dash <= 0 || code.length() - dash - 1 <= CHECK_CHARS) {
+            return null;
+        }
+        String prefix = code.substring(0, dash);
+        promo = campaigns.get(prefix);
+        if (promo == null) {
+            return null;
+        }
+        String body = code.substring(dash + 1, code.length() - CHECK_CHARS);
+        return code.endsWith(checkChars(promo.secret, prefix, body)) ? promo : null;
+    }
+
+    // Filter says no: never redeemed. Filter says maybe: confirm in the index, outside the engine lock.
+    private boolean isRedeemed(long fingerprint) {
+        synchronized (this) {
+            catchUp();
+            if (!redeemed.mightContain(fingerprint)) {
+                return false;
+            }
+        }
+        try {
+            return redeemedIndex.contains(fingerprint);
+        } catch (IOException e) {
+            // Cannot prove it unused, so refuse it
+            System.err.println("Could not check promo redemptions: " + e.getMessage());
+            return true;
+        }
+    }
+
+    // Adds redemptions other terminals appended since the last look to the filter
+    private void catchUp() {
+        try {
+            // A record still being written is left for next time
+            long size = redeemedLog.size() / Long.BYTES * Long.BYTES;
+            if (size > filteredBytes) {
+                forEachFingerprint(redeemedLog, filteredBytes, size, redeemed::add);
+                filteredBytes = size;
+                redeemedCount = size / Long.BYTES;
+            }
+        } catch (IOException e) {
+            // Unreadable; the confirming lookup reports it
+        }
+    }
+
+    private static void forEachFingerprint(FileChannel log, long from, long to, LongConsumer action) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        for (long position = from; position < to; ) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunk.capacity(), to - position));
+            while (chunk.hasRemaining()) {
+                if (log.read(chunk, position + chunk.position()) < 0) {
+                    throw new IOException("redemption file ended early");
+                }
+            }
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                action.accept(chunk.getLong());
+            }
+            position += chunk.limit();
+        }
+    }
+
+    // Only one terminal can create a code's hold file; a stale one is taken over
+    private boolean hold(long fingerprint) {
+        Path hold = holdsDir.resolve(Long.toHexString(fingerprint));
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                Files.createFile(hold);
+                return true;
+            } catch (FileAlreadyExistsException e) {
+                try {
+                    if (System.currentTimeMillis() - Files.getLastModifiedTime(hold).toMillis() < HOLD_EXPIRY_MILLIS) {
+                        return false;
+                    }
+                    Files.deleteIfExists(hold);
+                } catch (IOException gone) {
+                    // Released meanwhile; try again
+                }
+            } catch (IOException e) {
+                // Cannot hold it, so refuse it
+                System.err.println("Could not hold promo code: " + e.getMessage());
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void unhold(long fingerprint) {
+        try {
+            Files.deleteIfExists(holdsDir.resolve(Long.toHexString(fingerprint)));
+        } catch (IOException e) {
+            System.err.println("Could not release promo hold: " + e.getMessage());
+        }
+    }
+
+    private Promo compile(String rule, boolean singleUse, String secret) {
+        Matcher m = PERCENT_OFF.matcher(rule);
+        if (m.matches()) {
+            double rate = Double.parseDouble(m.group(1)) / 100.0;
+            if (rate <= 0 || rate > 1) {
+                throw new IllegalArgumentException("percentage must be between 0 and 100");
+            }
+            double min = m.group(3) != null ? Double.parseDouble(m.group(3)) : 0.0;
+            if (m.group(2) == null) {
+                return new Promo((order, subtotal) -> subtotal * rate, min, singleUse, secret);
+            }
+            String item = menuItem(m.group(2));
+            return new Promo((order, subtotal) -> {
+                double off = 0.0;
+                for (Order.Line line : order.lines) {
+                    if (line.item.equals(item)) {
+                        off += line.lineTotal() * rate;
+                    }
+                }
+                return off;
+            }, min, singleUse, secret);
+        }
+        m = AMOUNT_OFF.matcher(rule);
+        if (m.matches()) {
+            double amount = Double.parseDouble(m.group(1));
+            double min = m.group(2) != null ? Double.parseDouble(m.group(2)) : 0.0;
+            return new Promo((order, subtotal) -> Math.min(amount, subtotal), min, singleUse, secret);
+        }
+        m = FREE_TOPPING.matcher(rule);
+        if (m.matches()) {
+            String topping = topping(m.group(1));
+            double price = toppingPrices.get(topping);
+            int size = size(m.group(2));
+            double min = m.group(3) != null ? Double.parseDouble(m.group(3)) : 0.0;
+            return new Promo((order, subtotal) -> {
+                double off = 0.0;
+                for (Order.Line line : order.lines) {
+                    if (line.customizations.contains(topping) && sizeOf(line) == size) {
+                        off += price * line.quantity;
+                    }
+                }
+                return off;
+            }, min, singleUse, secret);
+        }
+        throw new IllegalArgumentException("cannot understand rule '" + rule + "'");
+    }
+
+    private int sizeOf(Order.Line line) {
+        for (int i = 1; i < sizes.length; i++) {
+            if (line.customizations.contains(sizes[i] + " Size")) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private String menuItem(String name) {
+        for (String item : menuItems) {
+            if (item.equalsIgnoreCase(name.trim())) {
+                return item;
+            }
+        }
+        throw new IllegalArgumentException("unknown menu item '" + name + "'");
+    }
+
+    private String topping(String name) {
+        for (String topping : toppingPrices.keySet()) {
+            if (topping.equalsIgnoreCase(name.trim())) {
+                return topping;
+            }
+        }
+        throw new IllegalArgumentException("unknown topping '" + name + "'");
+    }
+
+    private int size(String name) {
+        for (int i = 0; i < sizes.length; i++) {
+            if (sizes[i].equalsIgnoreCase(name.trim())) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unknown size '" + name + "'");
+    }
+
+    private static String checkChars(String secret, String prefix, String body) {
+        long hash = fingerprint(secret + ':' + prefix + '-' + body);
+        String check = Long.toString(Long.remainderUnsigned(hash, CHECK_RANGE), 36).toUpperCase(Locale.ROOT);
+        StringBuilder padded = new StringBuilder(CHECK_CHARS);
+        for (int i = check.length(); i < CHECK_CHARS; i++) {
+            padded.append('0');
+        }
+        return padded.append(check).toString();
+    }
+
+    // FNV-1a followed by a 64-bit finalizer
+    private static long fingerprint(String code) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < code.length(); i++) {
+            hash ^= code.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,775 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Order summary template compiled once into a flat list of fragments.
+ * Rendering walks the fragments and streams them into a Target (plain
+ * text, HTML, ESC/POS bytes or the on-screen ReceiptView) without building
+ * the whole receipt as an intermediate String.
+ *
+ * Template syntax: {{field}} inserts a value, {{#section}}...{{/section}}
+ * repeats or conditionally includes a block, and each template line is one
+ * receipt line. Line directives: {{center}} at the start of a line centers
+ * it, {{right}} right-aligns the rest of the line, {{rule}} draws a
+ * separator, and {{bold}}/{{small}} (closed with {{/bold}}/{{/small}})
+ * style text.
+ */
+final class ReceiptTemplate {
+    static final String DEFAULT_SOURCE =
+        "{{center}}{{bold}}Order Summary{{/bold}}\n"
+        + "{{center}}{{small}}Order #{{order_id}}{{/small}}\n"
+        + "{{rule}}\n"
+        + "{{#lines}}{{item}} x{{qty}}{{right}}OMR {{line_total}}\n"
+        + "{{#customizations}}{{small}}  • {{customizations}}{{/small}}\n{{/customizations}}"
+        + "{{/lines}}"
+        + "{{rule}}\n"
+        + "{{#discount}}Discount{{right}}-OMR {{discount}}\n{{/discount}}"
+        + "{{#delivery}}Delivery fee{{right}}OMR {{delivery_fee}}\n{{/delivery}}"
+        + "{{bold}}Total{{right}}OMR {{total}}{{/bold}}\n"
+        + "\n"
+        + "{{bold}}Delivery to:{{/bold}} {{destination}}\n"
+        + "{{#scheduled}}{{bold}}Deliver at:{{/bold}} {{deliver_at}}\n{{/scheduled}}"
+        + "{{bold}}Confirmation will be sent to:{{/bold}} {{email}}\n"
+        + "\n"
+        + "{{center}}Thank you for your order, {{customer}}!\n";
+
+    static final int STYLE_BOLD = 1;
+    static final int STYLE_SMALL = 2;
+    /** Size of the buffer render() formats numbers in. */
+    static final int SCRATCH_CHARS = 24;
+
+    /** Receives one receipt, line by line. */
+    interface Target {
+        void beginLine(boolean centered);
+
+        /** Plain literal text; the HTML form is passed pre-escaped. */
+        void literal(char[] text, char[] html);
+
+        /** Text from order data; the target escapes it as needed. */
+        void text(CharSequence value);
+
+        /** Generated characters such as formatted numbers. */
+        void chars(char[] buffer, int length);
+
+        void style(int style, boolean on);
+
+        void right();
+
+        void endLine();
+
+        void rule();
+    }
+
+    private enum Op {
+        LITERAL, FIELD, BEGIN_LINE, END_LINE, STYLE_ON, STYLE_OFF, RIGHT, RULE, SECTION
+    }
+
+    private enum Field {
+        ORDER_ID, CUSTOMER, EMAIL, DESTINATION, SUBTOTAL, DISCOUNT, DELIVERY_FEE, TOTAL, DELIVER_AT,
+        ITEM, QTY, LINE_TOTAL, CUSTOMIZATIONS
+    }
+
+    private enum Section {
+        LINES, DISCOUNT, DELIVERY, SCHEDULED, CUSTOMIZATIONS
+    }
+
+    private static final class Fragment {
+        final Op op;
+        final char[] text;
+        final char[] html;
+        final Field field;
+        final Section section;
+        final int arg;
+        // For SECTION: index just past the matching close tag
+        int end;
+
+        Fragment(Op op, char[] text, char[] html, Field field, Section section, int arg) {
+            this.op = op;
+            this.text = text;
+            this.html = html;
+            this.field = field;
+            this.section = section;
+            this.arg = arg;
+        }
+    }
+
+    private static volatile ReceiptTemplate defaultTemplate;
+
+    private final Fragment[] fragments;
+
+    private ReceiptTemplate(Fragment[] fragments) {
+        this.fragments = fragments;
+    }
+
+    static ReceiptTemplate defaultTemplate() {
+        ReceiptTemplate template = defaultTemplate;
+        if (template == null) {
+            template = compile(DEFAULT_SOURCE);
+            defaultTemplate = template;
+        }
+        return template;
+    }
+
+    static ReceiptTemplate compile(String source) {
+        List<Fragment> out = new ArrayList<>();
+        List<Integer> openSections = new ArrayList<>();
+        String[] lines = source.split("\n", -1);
+        // A trailing newline does not start another receipt line
+        int lineCount = source.endsWith("\n") ? lines.length - 1 : lines.length;
+        for (int l = 0; l < lineCount; l++) {
+            String line = lines[l];
+            int pos = 0;
+            boolean centered = false;
+            boolean started = false;
+            while (pos <= line.length()) {
+                int open = line.indexOf("{{", pos);
+                String literal = open < 0 ? line.substring(pos) : line.substring(pos, open);
+                if (!literal.isEmpty()) {
+                    if (!started) {
+                        out.add(new Fragment(Op.BEGIN_LINE, null, null, null, null, centered ? 1 : 0));
+                        started = true;
+                    }
+                    out.add(new Fragment(Op.LITERAL, literal.toCharArray(), escapeHtml(literal).toCharArray(), null, null, 0));
+                }
+                if (open < 0) {
+                    break;
+                }
+                int close = line.indexOf("}}", open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed tag on template line " + (l + 1));
+                }
+                String tag = line.substring(open + 2, close).trim();
+                pos = close + 2;
+                if (tag.startsWith("#")) {
+                    openSections.add(out.size());
+                    out.add(new Fragment(Op.SECTION, null, null, null, section(tag.substring(1)), 0));
+                } else if (tag.startsWith("/") && isSection(tag.substring(1))) {
+                    if (openSections.isEmpty()) {
+                        throw new IllegalArgumentException("Unbalanced {{" + tag + "}}");
+                    }
+                    Fragment start = out.get(openSections.remove(openSections.size() - 1));
+                    if (start.section != section(tag.substring(1))) {
+                        throw new IllegalArgumentException("Mismatched {{" + tag + "}}");
+                    }
+                    start.end = out.size();
+                } else if (tag.equals("rule")) {
+                    out.add(new Fragment(Op.RULE, null, null, null, null, 0));
+                } else if (tag.equals("center")) {
+                    centered = true;
+                } else {
+                    if (!started) {
+                        out.add(new Fragment(Op.BEGIN_LINE, null, null, null, null, centered ? 1 : 0));
+                        started = true;
+                    }
+                    switch (tag) {
+                        case "right":
+                            out.add(new Fragment(Op.RIGHT, null, null, null, null, 0));
+                            break;
+                        case "bold":
+                            out.add(new Fragment(Op.STYLE_ON, null, null, null, null, STYLE_BOLD));
+                            break;
+                        case "/bold":
+                            out.add(new Fragment(Op.STYLE_OFF, null, null, null, null, STYLE_BOLD));
+                            break;
+                        case "small":
+                            out.add(new Fragment(Op.STYLE_ON, null, null, null, null, STYLE_SMALL));
+                            break;
+                        case "/small":
+                            out.add(new Fragment(Op.STYLE_OFF, null, null, null, null, STYLE_SMALL));
+                            break;
+                        default:
+                            out.add(new Fragment(Op.FIELD, null, null, field(tag), null, 0));
+                    }
+                }
+            }
+            if (started) {
+                out.add(new Fragment(Op.END_LINE, null, null, null, null, 0));
+            } else if (line.isEmpty()) {
+                // Blank template line
+                out.add(new Fragment(Op.BEGIN_LINE, null, null, null, null, 0));
+                out.add(new Fragment(Op.END_LINE, null, null, null, null, 0));
+            }
+        }
+        if (!openSections.isEmpty()) {
+            throw new IllegalArgumentException("Unclosed section in template");
+        }
+        return new ReceiptTemplate(out.toArray(new Fragment[0]));
+    }
+
+    /** Streams the receipt for the order into the target. */
+    void render(Order order, Target target) {
+        render(order, target, new char[SCRATCH_CHARS]);
+    }
+
+    /** As render(Order, Target), formatting numbers in the caller's SCRATCH_CHARS buffer. */
+    void render(Order order, Target target, char[] scratch) {
+        render(order, null, target, 0, fragments.length, scratch);
+    }
+
+    /** Renders as plain text of the given column width. */
+    void renderText(Order order, Appendable out, int width) {
+        TextTarget target = new TextTarget(out, width);
+        render(order, target);
+    }
+
+    void renderHtml(Order order, Appendable out) {
+        render(order, new HtmlTarget(out));
+    }
+
+    /** Renders ESC/POS printer bytes, including init and paper cut, into the buffer. */
+    void renderEscPos(Order order, ByteBuffer out, int width) {
+        EscPosTarget target = new EscPosTarget(out, width);
+        target.init();
+        render(order, target);
+        target.cut();
+    }
+
+    private void render(Order order, Order.Line line, Target target, int from, int to, char[] scratch) {
+        int i = from;
+        while (i < to) {
+            Fragment f = fragments[i];
+            switch (f.op) {
+                case LITERAL:
+                    target.literal(f.text, f.html);
+                    break;
+                case FIELD:
+                    writeField(f.field, order, line, target, scratch);
+                    break;
+                case BEGIN_LINE:
+                    target.beginLine(f.arg == 1);
+                    break;
+                case END_LINE:
+                    target.endLine();
+                    break;
+                case STYLE_ON:
+                    target.style(f.arg, true);
+                    break;
+                case STYLE_OFF:
+                    target.style(f.arg, false);
+                    break;
+                case RIGHT:
+                    target.right();
+                    break;
+                case RULE:
+                    target.rule();
+                    break;
+                case SECTION:
+                    switch (f.section) {
+                        case LINES:
+                            for (Order.Line each : order.lines) {
+                                render(order, each, target, i + 1, f.end, scratch);
+                            }
+                            break;
+                        case DISCOUNT:
+                            if (order.discount > 0) {
+                                render(order, line, target, i + 1, f.end, scratch);
+                            }
+                            break;
+                        case DELIVERY:
+                            if (order.deliveryFee > 0) {
+                                render(order, line, target, i + 1, f.end, scratch);
+                            }
+                            break;
+                        case SCHEDULED:
+                            if (order.isPreOrder()) {
+                                render(order, line, target, i + 1, f.end, scratch);
+                            }
+                            break;
+                        case CUSTOMIZATIONS:
+                            if (line != null && !line.customizations.isEmpty()) {
+                                render(order, line, target, i + 1, f.end, scratch);
+                            }
+                            break;
+                    }
+                    i = f.end;
+                    continue;
+            }
+            i++;
+        }
+    }
+
+    private static void writeField(Field field, Order order, Order.Line line, Target target, char[] scratch) {
+        switch (field) {
+            case ORDER_ID:
+                target.chars(scratch, formatLong(order.id, scratch));
+                break;
+            case CUSTOMER:
+                target.text(order.customer);
+                break;
+            case EMAIL:
+                target.text(order.email);
+                break;
+            case DESTINATION:
+                target.text(order.destination);
+                break;
+            case SUBTOTAL:
+                target.chars(scratch, formatMoney(order.subtotal, scratch));
+                break;
+            case DISCOUNT:
+                target.chars(scratch, formatMoney(order.discount, scratch));
+                break;
+            case DELIVERY_FEE:
+                target.chars(scratch, formatMoney(order.deliveryFee, scratch));
+                break;
+            case TOTAL:
+                target.chars(scratch, formatMoney(order.total(), scratch));
+                break;
+            case DELIVER_AT:
+                target.text(deliverAt(order.deliverAtMillis));
+                break;
+            case ITEM:
+                target.text(line.item);
+                break;
+            case QTY:
+                target.chars(scratch, formatLong(line.quantity, scratch));
+                break;
+            case LINE_TOTAL:
+                target.chars(scratch, formatMoney(line.lineTotal(), scratch));
+                break;
+            case CUSTOMIZATIONS:
+                for (int i = 0; i < line.customizations.size(); i++) {
+                    if (i > 0) {
+                        target.literal(SEPARATOR, SEPARATOR);
+                    }
+                    target.text(line.customizations.get(i));
+                }
+                break;
+        }
+    }
+
+    private static final char[] SEPARATOR = {',', ' '};
+    private static final DateTimeFormatter DELIVER_AT_FORMAT =
+        DateTimeFormatter.ofPattern("EEE d MMM, HH:mm").withZone(ZoneId.systemDefault());
+
+    private static final class FormattedTime {
+        final long millis;
+        final String text;
+
+        FormattedTime(long millis, String text) {
+            this.millis = millis;
+            this.text = text;
+        }
+    }
+
+    // Last delivery time formatted; a receipt is repainted far more often than its time changes
+    private static volatile FormattedTime lastDeliverAt = new FormattedTime(Long.MIN_VALUE, "");
+
+    private static String deliverAt(long millis) {
+        FormattedTime last = lastDeliverAt;
+        if (last.millis != millis) {
+            last = new FormattedTime(millis, DELIVER_AT_FORMAT.format(Instant.ofEpochMilli(millis)));
+            lastDeliverAt = last;
+        }
+        return last.text;
+    }
+
+    // Writes value with three decimals (OMR baisa) into buf, returns length
+    static int formatMoney(double value, char[] buf) {
+        long milli = Math.round(Math.abs(value) * 1000);
+        int len = formatLong(milli / 1000, buf);
+        if (value < 0 && milli != 0) {
+            System.arraycopy(buf, 0, buf, 1, len);
+            buf[0] = '-';
+            len++;
+        }
+        long frac = milli % 1000;
+        buf[len++] = '.';
+        buf[len++] = (char) ('0' + frac / 100);
+        buf[len++] = (char) ('0' + frac / 10 % 10);
+        buf[len++] = (char) ('0' + frac % 10);
+        return len;
+    }
+
+    static int formatLong(long value, char[] buf) {
+        if (value == 0) {
+            buf[0] = '0';
+            return 1;
+        }
+        int len = 0;
+        boolean negative = value < 0;
+        long v = Math.abs(value);
+        while (v > 0) {
+            buf[len++] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        if (negative) {
+            buf[len++] = '-';
+        }
+        for (int a = 0, b = len - 1; a < b; a++, b--) {
+            char t = buf[a];
+            buf[a] = buf[b];
+            buf[b] = t;
+        }
+        return len;
+    }
+
+    private static boolean isSection(String name) {
+        for (Section s : Section.values()) {
+            if (s.name().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Section section(String name) {
+        try {
+            return Section.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown section {{#" + name + "}}");
+        }
+    }
+
+    private static Field field(String name) {
+        try {
+            return Field.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown field {{" + name + "}}");
+        }
+    }
+
+    static String escapeHtml(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            appendHtml(sb, s.charAt(i));
+        }
+        return sb.toString();
+    }
+
+    static void appendHtml(Appendable out, char c) {
+        try {
+            switch (c) {
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '&': out.append("&amp;"); break;
+                case '"': out.append("&quot;"); break;
+                case '\'': out.append("&#39;"); break;
+                default: out.append(c);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Buffers one line as left and right character runs with a style per
+     * character, so fixed-width targets can right-align columns.
+     */
+    abstract static class LineTarget implements Target {
+        char[] left = new char[64];
+        byte[] leftStyles = new byte[64];
+        int leftLen;
+        char[] right = new char[64];
+        byte[] rightStyles = new byte[64];
+        int rightLen;
+        boolean inRight;
+        boolean centered;
+        int style;
+
+        @Override
+        public void beginLine(boolean centered) {
+            this.centered = centered;
+            leftLen = 0;
+            rightLen = 0;
+            inRight = false;
+        }
+
+        @Override
+        public void literal(char[] text, char[] html) {
+            chars(text, text.length);
+        }
+
+        @Override
+        public void text(CharSequence value) {
+            if (value == null) {
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                put(value.charAt(i));
+            }
+        }
+
+        @Override
+        public void chars(char[] buffer, int length) {
+            for (int i = 0; i < length; i++) {
+                put(buffer[i]);
+            }
+        }
+
+        @Override
+        public void style(int style, boolean on) {
+            this.style = on ? this.style | style : this.style & ~style;
+        }
+
+        @Override
+        public void right() {
+            inRight = true;
+        }
+
+        @Override
+        public void endLine() {
+            flushLine();
+        }
+
+        abstract void flushLine();
+
+        private void put(char c) {
+            if (inRight) {
+                if (rightLen == right.length) {
+                    right = Arrays.copyOf(right, rightLen * 2);
+                    rightStyles = Arrays.copyOf(rightStyles, rightLen * 2);
+                }
+                rightStyles[rightLen] = (byte) style;
+                right[rightLen++] = c;
+            } else {
+                if (leftLen == left.length) {
+                    left = Arrays.copyOf(left, leftLen * 2);
+                    leftStyles = Arrays.copyOf(leftStyles, leftLen * 2);
+                }
+                leftStyles[leftLen] = (byte) style;
+                left[leftLen++] = c;
+            }
+        }
+    }
+
+    /** Fixed-width plain text. */
+    static final class TextTarget extends LineTarget {
+        private final Appendable out;
+        private final int width;
+
+        TextTarget(Appendable out, int width) {
+            this.out = out;
+            this.width = width;
+        }
+
+        @Override
+        void flushLine() {
+            try {
+                int pad = 0;
+                if (rightLen > 0) {
+                    pad = Math.max(1, width - leftLen - rightLen);
+                } else if (centered) {
+                    pad = Math.max(0, (width - leftLen) / 2);
+                    spaces(pad);
+                    pad = 0;
+                }
+                for (int i = 0; i < leftLen; i++) {
+                    out.append(left[i]);
+                }
+                if (rightLen > 0) {
+                    spaces(pad);
+                    for (int i = 0; i < rightLen; i++) {
+                        out.append(right[i]);
+                    }
+                }
+                out.append('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void rule() {
+            try {
+                for (int i = 0; i < width; i++) {
+                    out.append('-');
+                }
+                out.append('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void spaces(int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                out.append(' ');
+            }
+        }
+    }
+
+    /** HTML fragment suitable for an email body; streams without line buffering. */
+    static final class HtmlTarget implements Target {
+        private final Appendable out;
+        private boolean inRight;
+        private boolean empty;
+        private int openStyles;
+
+        HtmlTarget(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void beginLine(boolean centered) {
+            inRight = false;
+            empty = true;
+            write(centered ? "<div style='text-align:center'>" : "<div>");
+        }
+
+        @Override
+        public void literal(char[] text, char[] html) {
+            empty &= html.length == 0;
+            try {
+                for (char c : html) {
+                    out.append(c);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void text(CharSequence value) {
+            if (value == null) {
+                return;
+            }
+            empty &= value.length() == 0;
+            for (int i = 0; i < value.length(); i++) {
+                appendHtml(out, value.charAt(i));
+            }
+        }
+
+        @Override
+        public void chars(char[] buffer, int length) {
+            empty &= length == 0;
+            for (int i = 0; i < length; i++) {
+                appendHtml(out, buffer[i]);
+            }
+        }
+
+        @Override
+        public void style(int style, boolean on) {
+            openStyles = on ? openStyles | style : openStyles & ~style;
+            writeStyle(style, on);
+        }
+
+        @Override
+        public void right() {
+            inRight = true;
+            // Close open styles around the span so tags stay properly nested
+            writeStyle(openStyles & STYLE_SMALL, false);
+            writeStyle(openStyles & STYLE_BOLD, false);
+            write("<span style='float:right'>");
+            writeStyle(openStyles & STYLE_BOLD, true);
+            writeStyle(openStyles & STYLE_SMALL, true);
+        }
+
+        @Override
+        public void endLine() {
+            if (empty) {
+                write("&nbsp;");
+            }
+            write(inRight ? "</span></div>\n" : "</div>\n");
+        }
+
+        @Override
+        public void rule() {
+            write("<hr>\n");
+        }
+
+        private void writeStyle(int style, boolean on) {
+            if (style == STYLE_BOLD) {
+                write(on ? "<b>" : "</b>");
+            } else if (style == STYLE_SMALL) {
+                write(on ? "<small>" : "</small>");
+            }
+        }
+
+        private void write(String s) {
+            try {
+                out.append(s);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** ESC/POS thermal printer output (single-byte code page, font B for small text). */
+    static final class EscPosTarget extends LineTarget {
+        private static final byte ESC = 0x1B;
+        private static final byte GS = 0x1D;
+        private final ByteBuffer out;
+        private final int width;
+        private int printerStyle;
+
+        EscPosTarget(ByteBuffer out, int width) {
+            this.out = out;
+            this.width = width;
+        }
+
+        void init() {
+            out.put(ESC).put((byte) '@');
+        }
+
+        void cut() {
+            out.put((byte) '\n').put((byte) '\n').put((byte) '\n');
+            out.put(GS).put((byte) 'V').put((byte) 66).put((byte) 0);
+        }
+
+        @Override
+        void flushLine() {
+            out.put(ESC).put((byte) 'a').put((byte) (centered && rightLen == 0 ? 1 : 0));
+            emit(left, leftStyles, leftLen);
+            if (rightLen > 0) {
+                setStyle(0);
+                int pad = Math.max(1, width - leftLen - rightLen);
+                for (int i = 0; i < pad; i++) {
+                    out.put((byte) ' ');
+                }
+                emit(right, rightStyles, rightLen);
+            }
+            setStyle(0);
+            out.put((byte) '\n');
+        }
+
+        @Override
+        public void rule() {
+            setStyle(0);
+            out.put(ESC).put((byte) 'a').put((byte) 0);
+            for (int i = 0; i < width; i++) {
+                out.put((byte) '-');
+            }
+            out.put((byte) '\n');
+        }
+
+        private void emit(char[] chars, byte[] styles, int len) {
+            for (int i = 0; i < len; i++) {
+                setStyle(styles[i]);
+                out.put(encode(chars[i]));
+            }
+        }
+
+        private void setStyle(int style) {
+            if (style == printerStyle) {
+                return;
+            }
+            if ((style & STYLE_BOLD) != (printerStyle & STYLE_BOLD)) {
+                out.put(ESC).put((byte) 'E').put((byte) ((style & STYLE_BOLD) != 0 ? 1 : 0));
+            }
+            if ((style & STYLE_SMALL) != (printerStyle & STYLE_SMALL)) {
+                out.put(ESC).put((byte) 'M').put((byte) ((style & STYLE_SMALL) != 0 ? 1 : 0));
+            }
+            printerStyle = style;
+        }
+
+        private static byte encode(char c) {
+            if (c < 0x80) {
+                return (byte) c;
+            }
+            switch (c) {
+                case '•': return (byte) '*';
+                case 'ñ': return (byte) 0xA4; // CP437
+                case 'é': return (byte) 0x82;
+                default: return (byte) '?';
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.mycompany.pizzaordersystem;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Custom-painted order summary. Draws the compiled receipt template
+ * directly with drawChars, replacing the HTML JLabel and its parser.
+ */
+final class ReceiptView extends JComponent {
+    private static final int LINE_GAP = 4;
+    private static final int RULE_HEIGHT = 9;
+    private static final int RULE_ALPHA = 140;
+
+    private final ReceiptTemplate template;
+    private final Font[] fonts = new Font[4];
+    private final PaintTarget target = new PaintTarget();
+    private final char[] scratch = new char[ReceiptTemplate.SCRATCH_CHARS];
+    private Order order;
+
+    ReceiptView(ReceiptTemplate template, Font font) {
+        this.template = template;
+        setFont(font);
+        setOpaque(false);
+    }
+
+    void setOrder(Order order) {
+        this.order = order;
+        revalidate();
+        repaint();
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        fonts[0] = font;
+        fonts[ReceiptTemplate.STYLE_BOLD] = font.deriveFont(Font.BOLD);
+        fonts[ReceiptTemplate.STYLE_SMALL] = font.deriveFont(font.getSize2D() - 2f);
+        fonts[ReceiptTemplate.STYLE_BOLD | ReceiptTemplate.STYLE_SMALL] = fonts[ReceiptTemplate.STYLE_SMALL].deriveFont(Font.BOLD);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet() || order == null) {
+            return super.getPreferredSize();
+        }
+        Insets insets = getInsets();
+        target.begin(null, insets.left, insets.top, 0);
+        template.render(order, target, scratch);
+        return new Dimension(target.maxWidth + insets.left + insets.right, target.y + insets.bottom);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (order == null) {
+            return;
+        }
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setColor(getForeground());
+        Insets insets = getInsets();
+        int contentWidth = getWidth() - insets.left - insets.right;
+        target.begin(g2d, insets.left, insets.top, contentWidth);
+        template.render(order, target, scratch);
+    }
+
+    // Lays out (and, when given a Graphics, draws) one buffered line at a time
+    private final class PaintTarget extends ReceiptTemplate.LineTarget {
+        private Graphics2D g;
+        private int x;
+        private int y;
+        private int width;
+        private int maxWidth;
+        // Rule color, derived again only when the text color changes
+        private Color ruleFrom;
+        private Color rule;
+
+        void begin(Graphics2D g, int x, int y, int width) {
+            this.g = g;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.maxWidth = 0;
+            this.style = 0;
+        }
+
+        @Override
+        void flushLine() {
+            FontMetrics fm = lineMetrics();
+            int leftWidth = measure(left, leftStyles, leftLen);
+            int rightWidth = measure(right, rightStyles, rightLen);
+            maxWidth = Math.max(maxWidth, leftWidth + rightWidth + (rightLen > 0 ? 20 : 0));
+            int baseline = y + fm.getAscent();
+            if (g != null) {
+                int startX = centered && rightLen == 0 ? x + (width - leftWidth) / 2 : x;
+                draw(left, leftStyles, leftLen, startX, baseline);
+                if (rightLen > 0) {
+                    draw(right, rightStyles, rightLen, x + width - rightWidth, baseline);
+                }
+            }
+            y += fm.getHeight() + LINE_GAP;
+        }
+
+        @Override
+        public void rule() {
+            if (g != null) {
+                Color color = g.getColor();
+                if (!color.equals(ruleFrom)) {
+                    ruleFrom = color;
+                    rule = new Color(color.getRed(), color.getGreen(), color.getBlue(), RULE_ALPHA);
+                }
+                g.setColor(rule);
+                g.drawLine(x, y + RULE_HEIGHT / 2, x + width, y + RULE_HEIGHT / 2);
+                g.setColor(color);
+            }
+            y += RULE_HEIGHT;
+        }
+
+        // The tallest font used on the line decides its height
+        private FontMetrics lineMetrics() {
+            int present = leftLen + rightLen == 0 ? 1 : 0;
+            for (int i = 0; i < leftLen; i++) {
+                present |= 1 << leftStyles[i];
+            }
+            for (int i = 0; i < rightLen; i++) {
+                present |= 1 << rightStyles[i];
+            }
+            FontMetrics tallest = null;
+            for (int s = 0; s < fonts.length; s++) {
+                if ((present & (1 << s)) != 0) {
+                    FontMetrics fm = getFontMetrics(fonts[s]);
+                    if (tallest == null || fm.getHeight() > tallest.getHeight()) {
+                        tallest = fm;
+                    }
+                }
+            }
+            return tallest;
+        }
+
+        private int measure(char[] chars, byte[] styles, int len) {
+            int total = 0;
+            int start = 0;
+            while (start < len) {
+                int end = runEnd(styles, start, len);
+                total += getFontMetrics(fonts[styles[start]]).charsWidth(chars, start, end - start);
+                start = end;
+            }
+            return total;
+        }
+
+        private void draw(char[] chars, byte[] styles, int len, int drawX, int baseline) {
+            int start = 0;
+            while (start < len) {
+                int end = runEnd(styles, start, len);
+                Font font = fonts[styles[start]];
+                g.setFont(font);
+                g.drawChars(chars, start, end - start, drawX, baseline);
+                drawX += getFontMetrics(font).charsWidth(chars, start, end - start);
+                start = end;
+            }
+        }
+
+        private int runEnd(byte[] styles, int start, int len) {
+            int end = start + 1;
+            while (end < len && styles[end] == styles[start]) {
+                end++;
+            }
+            return end;
+        }
+    }
+}
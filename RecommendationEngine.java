@@ -0,0 +1,354 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ratings from every customer plus item-to-item recommendations. Each user
+ * keeps a sparse sorted array of the items they rated; per-item sums and
+ * counts give streaming means. Cosine similarity between items is kept as
+ * running dot products, so a rating only touches the items that user has
+ * also rated. A single background thread applies ratings in batches,
+ * appends them to a log and republishes the top-k table for the items that
+ * changed; lookups from the UI are a single map read.
+ */
+final class RecommendationEngine {
+    interface Listener {
+        /** Called on the engine thread after a batch changed the top-k table or a rating mean. */
+        void recommendationsChanged();
+    }
+
+    static final class Aggregate {
+        final double mean;
+        final int count;
+
+        Aggregate(double mean, int count) {
+            this.mean = mean;
+            this.count = count;
+        }
+    }
+
+    // Pairs rated together by fewer customers than this are not recommended
+    private static final int MIN_CO_RATERS = 2;
+    private static final int BATCH_SIZE = 256;
+    // How long shutdown() waits for queued ratings to reach the log
+    private static final long SHUTDOWN_MILLIS = 2000;
+
+    private static final class Rating {
+        final String user;
+        final String item;
+        final int score;
+
+        Rating(String user, String item, int score) {
+            this.user = user;
+            this.item = item;
+            this.score = score;
+        }
+    }
+
+    // Queued by shutdown(); everything queued before it is still applied and logged
+    private static final Rating STOP = new Rating("", "", 0);
+
+    // Sparse ratings of one customer, sorted by item id
+    private static final class UserRatings {
+        int[] items = new int[4];
+        byte[] scores = new byte[4];
+        int size;
+
+        int get(int item) {
+            int i = Arrays.binarySearch(items, 0, size, item);
+            return i >= 0 ? scores[i] : 0;
+        }
+
+        void put(int item, int score) {
+            int i = Arrays.binarySearch(items, 0, size, item);
+            if (i >= 0) {
+                scores[i] = (byte) score;
+                return;
+            }
+            i = -i - 1;
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            System.arraycopy(items, i, items, i + 1, size - i);
+            System.arraycopy(scores, i, scores, i + 1, size - i);
+            items[i] = item;
+            scores[i] = (byte) score;
+            size++;
+        }
+    }
+
+    private final Path log;
+    private final int k;
+    private final LinkedBlockingQueue<Rating> queue = new LinkedBlockingQueue<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, List<String>> topK = new ConcurrentHashMap<>();
+    private final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    private Thread worker;
+
+    // Owned by the engine thread
+    private final Map<String, UserRatings> users = new HashMap<>();
+    private final Map<String, Integer> itemIds = new HashMap<>();
+    private final List<String> itemNames = new ArrayList<>();
+    private long[] sums = new long[16];
+    private int[] counts = new int[16];
+    private double[] normSq = new double[16];
+    private double[][] dot = new double[16][16];
+    private int[][] coRaters = new int[16][16];
+    private boolean[] dirty = new boolean[16];
+
+    RecommendationEngine(Path log, int k) {
+        this.log = log;
+        this.k = k;
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** Replays the rating log and starts applying new ratings in the background. */
+    synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(this::workLoop, "recommendations");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Waits, up to SHUTDOWN_MILLIS, for the ratings already queued to be applied and logged. */
+    void shutdown() {
+        Thread stopping;
+        synchronized (this) {
+            stopping = worker;
+            worker = null;
+        }
+        if (stopping == null) {
+            return;
+        }
+        // Not interrupted: an interrupt mid-append would close the log and lose the batch
+        queue.offer(STOP);
+        try {
+            stopping.join(SHUTDOWN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Queues a rating; a score of 0 clears the user's rating for the item. */
+    void rate(String user, String item, int score) {
+        if (score < 0 || score > 5) {
+            throw new IllegalArgumentException("Rating must be between 0 and 5");
+        }
+        queue.offer(new Rating(user, item, score));
+    }
+
+    /** Precomputed "you might also like" list, most similar first. */
+    List<String> alsoLike(String item) {
+        return topK.getOrDefault(item, Collections.emptyList());
+    }
+
+    Aggregate aggregate(String item) {
+        return aggregates.get(item);
+    }
+
+    private void workLoop() {
+        if (log != null && Files.exists(log)) {
+            try {
+                replay();
+            } catch (IOException e) {
+                System.err.println("Could not replay ratings: " + e.getMessage());
+            }
+            publish();
+        }
+        List<Rating> batch = new ArrayList<>(BATCH_SIZE);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Rating first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                stopping = batch.remove(STOP);
+                for (Rating rating : batch) {
+                    apply(rating.user, rating.item, rating.score);
+                }
+                append(batch);
+                batch.clear();
+                publish();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                batch.clear();
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length == 3) {
+                    try {
+                        apply(parts[0], parts[1], Integer.parseInt(parts[2]));
+                    } catch (NumberFormatException e) {
+                        // Torn last line from a crash
+                    }
+                }
+            }
+        }
+    }
+
+    private void append(List<Rating> batch) {
+        if (log == null) {
+            return;
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(log, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Rating rating : batch) {
+                out.write(rating.user + '\t' + rating.item + '\t' + rating.score);
+                out.newLine();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not persist ratings: " + e.getMessage());
+        }
+    }
+
+    // Moves one user's rating and adjusts every running total it feeds
+    private void apply(String user, String itemName, int score) {
+        int item = itemId(itemName);
+        UserRatings ratings = users.computeIfAbsent(user, u -> new UserRatings());
+        int old = ratings.get(item);
+        if (old == score) {
+            return;
+        }
+        int delta = score - old;
+        sums[item] += delta;
+        counts[item] += (score > 0 ? 1 : 0) - (old > 0 ? 1 : 0);
+        normSq[item] += score * score - old * old;
+        int coDelta = (score > 0 ? 1 : 0) - (old > 0 ? 1 : 0);
+        for (int i = 0; i < ratings.size; i++) {
+            int other = ratings.items[i];
+            int otherScore = ratings.scores[i];
+            if (other == item || otherScore == 0) {
+                continue;
+            }
+            dot[item][other] += delta * otherScore;
+            dot[other][item] = dot[item][other];
+            coRaters[item][other] += coDelta;
+            coRaters[other][item] = coRaters[item][other];
+            dirty[other] = true;
+        }
+        ratings.put(item, score);
+        dirty[item] = true;
+    }
+
+    // Recomputes the top-k rows and means of items touched since the last batch
+    private void publish() {
+        int n = itemNames.size();
+        boolean changed = false;
+        for (int item = 0; item < n; item++) {
+            if (!dirty[item]) {
+                continue;
+            }
+            dirty[item] = false;
+            String name = itemNames.get(item);
+            Aggregate aggregate = new Aggregate(counts[item] == 0 ? 0 : (double) sums[item] / counts[item], counts[item]);
+            Aggregate previous = aggregates.put(name, aggregate);
+            // Means feed the rating tooltips, so they count as a change too
+            if (previous == null || previous.mean != aggregate.mean || previous.count != aggregate.count) {
+                changed = true;
+            }
+            List<String> best = topKFor(item, n);
+            if (!best.equals(topK.get(name))) {
+                topK.put(name, best);
+                changed = true;
+            }
+        }
+        if (changed) {
+            for (Listener listener : listeners) {
+                listener.recommendationsChanged();
+            }
+        }
+    }
+
+    private List<String> topKFor(int item, int n) {
+        int[] best = new int[k];
+        double[] bestSim = new double[k];
+        int found = 0;
+        for (int other = 0; other < n; other++) {
+            if (other == item || coRaters[item][other] < MIN_CO_RATERS || normSq[item] == 0 || normSq[other] == 0) {
+                continue;
+            }
+            double sim = dot[item][other] / Math.sqrt(normSq[item] * normSq[other]);
+            // Insertion into a k-sized sorted buffer
+            int pos = found;
+            while (pos > 0 && bestSim[pos - 1] < sim) {
+                if (pos < k) {
+                    best[pos] = best[pos - 1];
+                    bestSim[pos] = bestSim[pos - 1];
+                }
+                pos--;
+            }
+            if (pos < k) {
+                best[pos] = other;
+                bestSim[pos] = sim;
+                found = Math.min(found + 1, k);
+            }
+        }
+        List<String> names = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            names.add(itemNames.get(best[i]));
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    private int itemId(String name) {
+        Integer id = itemIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        id = itemNames.size();
+        if (id == sums.length) {
+            grow(id * 2);
+        }
+        itemIds.put(name, id);
+        itemNames.add(name);
+        return id;
+    }
+
+    private void grow(int capacity) {
+        sums = Arrays.copyOf(sums, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        normSq = Arrays.copyOf(normSq, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        double[][] newDot = new double[capacity][capacity];
+        int[][] newCo = new int[capacity][capacity];
+        for (int i = 0; i < dot.length; i++) {
+            System.arraycopy(dot[i], 0, newDot[i], 0, dot.length);
+            System.arraycopy(coRaters[i], 0, newCo[i], 0, dot.length);
+        }
+        dot = newDot;
+        coRaters = newCo;
+    }
+}
@@ -0,0 +1,138 @@
+package com.mycompany.pizzaordersystem;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps pre-rendered gradient backgrounds and rounded button skins so that
+ * paintComponent only has to blit an image. Entries are keyed by pixel size
+ * and color, and the whole cache is dropped when the theme changes.
+ */
+final class RenderCache {
+    // Skins larger than this are painted directly instead of being cached
+    private static final int MAX_CACHED_PIXELS = 4096 * 4096;
+    // Upper bound on cached skins per color before that bucket is recycled
+    private static final int MAX_SKINS_PER_COLOR = 32;
+
+    private final Map<Integer, Map<Long, BufferedImage>> skins = new HashMap<>();
+    private final GradientLayer verticalGradient = new GradientLayer(true);
+    private final GradientLayer horizontalGradient = new GradientLayer(false);
+
+    /** Paints a top-to-bottom gradient filling the component. */
+    void paintVerticalGradient(Graphics g, Component c, Color top, Color bottom) {
+        verticalGradient.paint(g, c, top, bottom);
+    }
+
+    /** Paints a left-to-right gradient filling the component. */
+    void paintHorizontalGradient(Graphics g, Component c, Color left, Color right) {
+        horizontalGradient.paint(g, c, left, right);
+    }
+
+    /** Paints an antialiased rounded rectangle of the given color filling the component. */
+    void paintRoundRect(Graphics g, Component c, Color color, int arc) {
+        int w = c.getWidth();
+        int h = c.getHeight();
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        double scale = deviceScale(g);
+        int pw = (int) Math.ceil(w * scale);
+        int ph = (int) Math.ceil(h * scale);
+        if ((long) pw * ph > MAX_CACHED_PIXELS) {
+            Graphics2D g2d = (Graphics2D) g;
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setColor(color);
+            g2d.fillRoundRect(0, 0, w, h, arc, arc);
+            return;
+        }
+        Map<Long, BufferedImage> bucket = skins.get(color.getRGB());
+        if (bucket == null) {
+            bucket = new HashMap<>();
+            skins.put(color.getRGB(), bucket);
+        }
+        long key = sizeKey(pw, ph) << 8 | (arc & 0xFF);
+        BufferedImage skin = bucket.get(key);
+        if (skin == null) {
+            if (bucket.size() >= MAX_SKINS_PER_COLOR) {
+                // Sizes only accumulate while a window is being dragged around
+                bucket.clear();
+            }
+            skin = createImage(c, pw, ph, Transparency.TRANSLUCENT);
+            Graphics2D g2d = skin.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setColor(color);
+            int scaledArc = (int) Math.round(arc * scale);
+            g2d.fillRoundRect(0, 0, pw, ph, scaledArc, scaledArc);
+            g2d.dispose();
+            bucket.put(key, skin);
+        }
+        g.drawImage(skin, 0, 0, w, h, null);
+    }
+
+    /** Drops every cached layer; called when the theme changes. */
+    void invalidate() {
+        skins.clear();
+        verticalGradient.image = null;
+        horizontalGradient.image = null;
+    }
+
+    private static long sizeKey(int w, int h) {
+        return ((long) w << 24) | (h & 0xFFFFFFL);
+    }
+
+    private static double deviceScale(Graphics g) {
+        if (g instanceof Graphics2D) {
+            AffineTransform tx = ((Graphics2D) g).getTransform();
+            return Math.max(1.0, tx.getScaleX());
+        }
+        return 1.0;
+    }
+
+    private static BufferedImage createImage(Component c, int w, int h, int transparency) {
+        GraphicsConfiguration gc = c.getGraphicsConfiguration();
+        if (gc != null) {
+            return gc.createCompatibleImage(w, h, transparency);
+        }
+        int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        return new BufferedImage(w, h, type);
+    }
+
+    // A single full-size gradient, re-rendered only when its size or colors change
+    private static final class GradientLayer {
+        private final boolean vertical;
+        private BufferedImage image;
+        private Color from;
+        private Color to;
+
+        GradientLayer(boolean vertical) {
+            this.vertical = vertical;
+        }
+
+        void paint(Graphics g, Component c, Color from, Color to) {
+            int w = c.getWidth();
+            int h = c.getHeight();
+            if (w <= 0 || h <= 0) {
+                return;
+            }
+            double scale = deviceScale(g);
+            int pw = (int) Math.ceil(w * scale);
+            int ph = (int) Math.ceil(h * scale);
+            if (image == null || image.getWidth() != pw || image.getHeight() != ph
+                    || !from.equals(this.from) || !to.equals(this.to)) {
+                image = createImage(c, pw, ph, Transparency.OPAQUE);
+                Graphics2D g2d = image.createGraphics();
+                g2d.setPaint(vertical
+                    ? new GradientPaint(0, 0, from, 0, ph, to)
+                    : new GradientPaint(0, 0, from, pw, 0, to));
+                g2d.fillRect(0, 0, pw, ph);
+                g2d.dispose();
+                this.from = from;
+                this.to = to;
+            }
+            g.drawImage(image, 0, 0, w, h, null);
+        }
+    }
+}
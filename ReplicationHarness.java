@@ -0,0 +1,145 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs several terminals as separate JVMs against one replica directory.
+ * Every terminal makes random concurrent edits to the same cart lines and
+ * customer details, stamps a ping register now and then so the others can
+ * measure propagation delay, and finally prints a digest of its merged
+ * state. The run passes when all digests are equal.
+ *
+ * Usage: java com.mycompany.pizzaordersystem.ReplicationHarness [terminals] [editsPerTerminal] [dir]
+ */
+final class ReplicationHarness {
+    private static final String[] LINES = {
+        "MARGHERITA", "PEPPERONI", "HAWAIIAN", "VEGGIE",
+        "BBQ CHICKEN", "HAWAIIAN (Large Size, Olives)", "MEAT LOVERS", "FOUR CHEESE"
+    };
+    private static final int PING_EVERY = 25;
+    private static final long SETTLE_MILLIS = 200;
+    private static final long TIMEOUT_MILLIS = 60_000;
+
+    private ReplicationHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("worker")) {
+            worker(Paths.get(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            return;
+        }
+        int terminals = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        Path dir = args.length > 2 ? Paths.get(args[2]) : Files.createTempDirectory("napuli-replicas");
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < terminals; i++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ReplicationHarness.class.getName(), "worker", dir.toString(),
+                String.valueOf(i), String.valueOf(terminals), String.valueOf(edits))
+                .redirectErrorStream(true).start());
+        }
+        System.out.printf("%d terminals x %d edits in %s%n", terminals, edits, dir);
+        String firstDigest = null;
+        boolean converged = true;
+        for (int i = 0; i < terminals; i++) {
+            String digest = null;
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(processes.get(i).getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    System.out.println("  " + line);
+                    if (line.startsWith("terminal-" + i + " digest ")) {
+                        digest = line.substring(line.indexOf(" digest ") + 8);
+                    }
+                }
+            }
+            processes.get(i).waitFor();
+            if (digest == null || (firstDigest != null && !firstDigest.equals(digest))) {
+                converged = false;
+            }
+            if (firstDigest == null) {
+                firstDigest = digest;
+            }
+        }
+        System.out.println(converged ? "CONVERGED" : "DIVERGED");
+        if (!converged) {
+            System.exit(1);
+        }
+    }
+
+    private static void worker(Path dir, int index, int terminals, int edits) throws IOException, InterruptedException {
+        String name = "terminal-" + index;
+        CartReplicator replicator = new CartReplicator(dir, name);
+        List<Long> delays = Collections.synchronizedList(new ArrayList<>());
+        replicator.addListener(new CartReplicator.Listener() {
+            @Override
+            public void lineChanged(String line) {
+            }
+
+            @Override
+            public void customerChanged(String field) {
+                String value = replicator.customer(field);
+                if (field.startsWith("ping-") && !value.isEmpty()) {
+                    delays.add(System.nanoTime() - Long.parseLong(value));
+                }
+            }
+        });
+        replicator.start();
+
+        Random random = new Random(index);
+        for (int i = 0; i < edits; i++) {
+            String line = LINES[random.nextInt(LINES.length)];
+            if (random.nextInt(10) < 3 && replicator.quantity(line) > 0) {
+                replicator.change(line, -1, 3.5, line, Collections.emptyList());
+            } else {
+                replicator.change(line, 1 + random.nextInt(3), 3.5, line, Collections.emptyList());
+            }
+            if (i % 50 == 0) {
+                replicator.setCustomer("destination", name + " address " + i);
+            }
+            if (i % PING_EVERY == 0) {
+                // System.nanoTime() shares one monotonic clock across processes on Linux
+                replicator.setCustomer("ping-" + name, String.valueOf(System.nanoTime()));
+            }
+            if (random.nextInt(4) == 0) {
+                Thread.sleep(1);
+            }
+        }
+        replicator.setCustomer("ping-" + name, "");
+        replicator.setCustomer("done-" + name, "yes");
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (int other = 0; other < terminals; other++) {
+            while (replicator.customer("done-terminal-" + other) == null) {
+                if (System.currentTimeMillis() > deadline) {
+                    System.out.println(name + " timed out waiting for terminal-" + other);
+                    System.exit(1);
+                }
+                Thread.sleep(5);
+            }
+        }
+        Thread.sleep(SETTLE_MILLIS);
+        replicator.shutdown();
+
+        List<Long> sorted = new ArrayList<>(delays);
+        Collections.sort(sorted);
+        if (!sorted.isEmpty()) {
+            System.out.printf("%s propagation ms: p50 %.2f  p99 %.2f  max %.2f (%d pings)%n", name,
+                sorted.get(sorted.size() / 2) / 1e6, sorted.get(sorted.size() * 99 / 100) / 1e6,
+                sorted.get(sorted.size() - 1) / 1e6, sorted.size());
+        }
+        System.out.println(name + " digest " + Integer.toHexString(replicator.digest().hashCode()) + " " + replicator.quantities());
+    }
+}
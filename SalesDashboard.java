@@ -0,0 +1,209 @@
+package com.mycompany.pizzaordersystem;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Manager view of the current sales window: orders per minute, revenue,
+ * average ticket, a bar per bucket and the best sellers. Orders only update
+ * the SalesWindow; this panel pulls a snapshot on a REFRESH_MILLIS timer,
+ * and only while it is on screen and something has changed, so a rush of
+ * orders never turns into a rush of repaints. Footer lines show the
+ * terminal's own health figures (image memory and the like), each a plain
+ * label that is only touched when its figure changed.
+ */
+final class SalesDashboard extends JPanel {
+    private static final int REFRESH_MILLIS = 1000;
+    private static final int TOP_ITEMS = 5;
+
+    private final SalesWindow window;
+    private final Theme theme;
+    private final DecimalFormat money = new DecimalFormat("0.000");
+    private final DecimalFormat rate = new DecimalFormat("0.0");
+    private final JLabel ordersPerMinute;
+    private final JLabel revenue;
+    private final JLabel averageTicket;
+    private final JLabel windowCaption;
+    private final JPanel diagnosticsPanel;
+    private final List<JLabel> diagnosticsLines = new ArrayList<>();
+    private final Supplier<List<String>> diagnostics;
+    private final JLabel[] topLabels = new JLabel[TOP_ITEMS];
+    private final Chart chart;
+    private final Timer refresh;
+    private long shownVersion = -1;
+
+    SalesDashboard(SalesWindow window, Theme theme, Color accent, Supplier<List<String>> diagnostics) {
+        super(new BorderLayout(0, 15));
+        this.window = window;
+        this.theme = theme;
+        this.diagnostics = diagnostics;
+        setOpaque(false);
+        setBorder(new EmptyBorder(15, 15, 15, 15));
+
+        JPanel tiles = new JPanel(new GridLayout(1, 3, 15, 0));
+        tiles.setOpaque(false);
+        ordersPerMinute = tileValue();
+        revenue = tileValue();
+        averageTicket = tileValue();
+        tiles.add(tile("Orders / min", ordersPerMinute));
+        tiles.add(tile("Revenue (OMR)", revenue));
+        tiles.add(tile("Average ticket (OMR)", averageTicket));
+        add(tiles, BorderLayout.NORTH);
+
+        chart = new Chart(accent);
+        add(chart, BorderLayout.CENTER);
+
+        JPanel side = new JPanel();
+        side.setLayout(new BoxLayout(side, BoxLayout.Y_AXIS));
+        side.setOpaque(false);
+        side.setPreferredSize(new Dimension(220, 0));
+        JLabel topHeader = new JLabel("Top sellers");
+        topHeader.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        theme.foreground(topHeader, Theme.Token.TEXT_STRONG);
+        side.add(topHeader);
+        side.add(Box.createRigidArea(new Dimension(0, 8)));
+        for (int i = 0; i < TOP_ITEMS; i++) {
+            topLabels[i] = new JLabel(" ");
+            topLabels[i].setFont(new Font("Segoe UI", Font.PLAIN, 14));
+            theme.foreground(topLabels[i], Theme.Token.TEXT_BODY);
+            side.add(topLabels[i]);
+            side.add(Box.createRigidArea(new Dimension(0, 4)));
+        }
+        add(side, BorderLayout.EAST);
+
+        JPanel footer = new JPanel(new BorderLayout(0, 4));
+        footer.setOpaque(false);
+        windowCaption = new JLabel(" ");
+        windowCaption.setFont(new Font("Segoe UI", Font.ITALIC, 12));
+        theme.foreground(windowCaption, Theme.Token.TEXT_MUTED);
+        footer.add(windowCaption, BorderLayout.NORTH);
+        diagnosticsPanel = new JPanel();
+        diagnosticsPanel.setLayout(new BoxLayout(diagnosticsPanel, BoxLayout.Y_AXIS));
+        diagnosticsPanel.setOpaque(false);
+        footer.add(diagnosticsPanel, BorderLayout.CENTER);
+        add(footer, BorderLayout.SOUTH);
+
+        refresh = new Timer(REFRESH_MILLIS, e -> update(false));
+        refresh.setInitialDelay(0);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refresh.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refresh.stop();
+        super.removeNotify();
+    }
+
+    /** Pulls a snapshot; skipped while hidden or unchanged unless forced. */
+    void update(boolean force) {
+        if (!force && !isShowing()) {
+            return;
+        }
+        // Not versioned, so compared line by line on every tick
+        showDiagnostics(diagnostics.get());
+        SalesWindow.Snapshot snapshot = window.snapshot(TOP_ITEMS);
+        if (!force && snapshot.version == shownVersion) {
+            return;
+        }
+        shownVersion = snapshot.version;
+        ordersPerMinute.setText(rate.format(snapshot.ordersPerMinute()));
+        revenue.setText(money.format(snapshot.revenue));
+        averageTicket.setText(money.format(snapshot.averageTicket()));
+        for (int i = 0; i < TOP_ITEMS; i++) {
+            topLabels[i].setText(i < snapshot.topItems.length
+                ? (i + 1) + ". " + snapshot.topItems[i] + "  x" + snapshot.topUnits[i] : " ");
+        }
+        windowCaption.setText(snapshot.orders + " orders in the last "
+            + Math.max(1, snapshot.coveredMillis / 60_000) + " min");
+        chart.setBars(snapshot.ordersPerBucket);
+    }
+
+    private void showDiagnostics(List<String> lines) {
+        if (lines.size() != diagnosticsLines.size()) {
+            // A service came up or went away; rare enough to rebuild
+            diagnosticsPanel.removeAll();
+            diagnosticsLines.clear();
+            for (int i = 0; i < lines.size(); i++) {
+                JLabel line = new JLabel(" ");
+                line.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+                theme.foreground(line, Theme.Token.TEXT_MUTED);
+                diagnosticsLines.add(line);
+                diagnosticsPanel.add(line);
+            }
+            diagnosticsPanel.revalidate();
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            JLabel line = diagnosticsLines.get(i);
+            if (!lines.get(i).equals(line.getText())) {
+                line.setText(lines.get(i));
+            }
+        }
+    }
+
+    private JPanel tile(String caption, JLabel value) {
+        JPanel tile = new JPanel();
+        tile.setLayout(new BoxLayout(tile, BoxLayout.Y_AXIS));
+        theme.background(tile, Theme.Token.CARD);
+        tile.setBorder(new EmptyBorder(12, 15, 12, 15));
+        JLabel label = new JLabel(caption);
+        label.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        theme.foreground(label, Theme.Token.TEXT_SUBTLE);
+        tile.add(label);
+        tile.add(value);
+        return tile;
+    }
+
+    private JLabel tileValue() {
+        JLabel value = new JLabel("0");
+        value.setFont(new Font("Segoe UI", Font.BOLD, 26));
+        theme.foreground(value, Theme.Token.TEXT_STRONG);
+        return value;
+    }
+
+    // Orders per bucket, oldest on the left
+    private static final class Chart extends JComponent {
+        private final Color bar;
+        private int[] bars = new int[0];
+
+        Chart(Color bar) {
+            this.bar = bar;
+            setPreferredSize(new Dimension(400, 200));
+        }
+
+        void setBars(int[] bars) {
+            this.bars = bars;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            if (bars.length == 0) {
+                return;
+            }
+            int max = 1;
+            for (int b : bars) {
+                max = Math.max(max, b);
+            }
+            int width = getWidth();
+            int height = getHeight() - 4;
+            double step = width / (double) bars.length;
+            g.setColor(bar);
+            for (int i = 0; i < bars.length; i++) {
+                int h = (int) Math.round(height * bars[i] / (double) max);
+                int x = (int) Math.round(i * step);
+                int w = Math.max(1, (int) Math.round((i + 1) * step) - x - 2);
+                g.fillRect(x, getHeight() - h, w, h);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.mycompany.pizzaordersystem;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sliding-window sales figures fed from the checkout stream. The window is
+ * a ring of fixed-width time buckets, each holding its order count, revenue
+ * (in baisa, so subtracting never drifts) and units per menu item, plus
+ * running totals over the whole ring. Recording an order adds to the
+ * current bucket and the totals; a bucket that slides out of the window is
+ * subtracted once and zeroed. Reading the totals never walks the ring.
+ */
+final class SalesWindow {
+    static final class Snapshot {
+        final int orders;
+        final double revenue;
+        final long coveredMillis;
+        /** Orders per bucket, oldest first. */
+        final int[] ordersPerBucket;
+        final String[] topItems;
+        final long[] topUnits;
+        /** Grows whenever any figure above may have changed. */
+        final long version;
+
+        Snapshot(int orders, double revenue, long coveredMillis, int[] ordersPerBucket,
+                 String[] topItems, long[] topUnits, long version) {
+            this.orders = orders;
+            this.revenue = revenue;
+            this.coveredMillis = coveredMillis;
+            this.ordersPerBucket = ordersPerBucket;
+            this.topItems = topItems;
+            this.topUnits = topUnits;
+            this.version = version;
+        }
+
+        double ordersPerMinute() {
+            return coveredMillis == 0 ? 0.0 : orders * 60_000.0 / coveredMillis;
+        }
+
+        double averageTicket() {
+            return orders == 0 ? 0.0 : revenue / orders;
+        }
+    }
+
+    private final String[] items;
+    private final Map<String, Integer> itemIndex = new HashMap<>();
+    private final long bucketMillis;
+    private final int buckets;
+    private final long startedAt;
+
+    private final int[] orders;
+    private final long[] revenue;
+    private final long[][] units;
+    private int totalOrders;
+    private long totalRevenue;
+    private final long[] totalUnits;
+    // Absolute index (time / bucketMillis) of the newest bucket
+    private long current;
+    private long records;
+
+    SalesWindow(String[] items, long bucketMillis, int buckets) {
+        this(items, bucketMillis, buckets, System.currentTimeMillis());
+    }
+
+    SalesWindow(String[] items, long bucketMillis, int buckets, long now) {
+        this.items = items.clone();
+        for (int i = 0; i < items.length; i++) {
+            itemIndex.put(items[i], i);
+        }
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+        this.startedAt = now;
+        this.orders = new int[buckets];
+        this.revenue = new long[buckets];
+        this.units = new long[buckets][items.length];
+        this.totalUnits = new long[items.length];
+        this.current = now / bucketMillis;
+    }
+
+    /** Checkout notifier; called once per placed order. */
+    void record(Order order) {
+        record(order, System.currentTimeMillis());
+    }
+
+    synchronized void record(Order order, long now) {
+        advance(now);
+        int slot = (int) (current % buckets);
+        long baisa = Math.round(order.total() * 1000);
+        orders[slot]++;
+        revenue[slot] += baisa;
+        totalOrders++;
+        totalRevenue += baisa;
+        for (Order.Line line : order.lines) {
+            Integer item = itemIndex.get(line.item);
+            if (item != null) {
+                units[slot][item] += line.quantity;
+                totalUnits[item] += line.quantity;
+            }
+        }
+        records++;
+    }
+
+    Snapshot snapshot(int topCount) {
+        return snapshot(topCount, System.currentTimeMillis());
+    }
+
+    synchronized Snapshot snapshot(int topCount, long now) {
+        advance(now);
+        int[] perBucket = new int[buckets];
+        for (int i = 0; i < buckets; i++) {
+            perBucket[i] = orders[(int) ((current + 1 + i) % buckets)];
+        }
+        // Partial selection; the menu is short and this runs at repaint rate, not per order
+        int count = Math.min(topCount, items.length);
+        String[] topItems = new String[count];
+        long[] topUnits = new long[count];
+        boolean[] taken = new boolean[items.length];
+        int found = 0;
+        for (; found < count; found++) {
+            int best = -1;
+            for (int i = 0; i < items.length; i++) {
+                if (!taken[i] && totalUnits[i] > 0 && (best < 0 || totalUnits[i] > totalUnits[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            taken[best] = true;
+            topItems[found] = items[best];
+            topUnits[found] = totalUnits[best];
+        }
+        if (found < count) {
+            topItems = Arrays.copyOf(topItems, found);
+            topUnits = Arrays.copyOf(topUnits, found);
+        }
+        long covered = Math.min(bucketMillis * buckets, now - startedAt);
+        return new Snapshot(totalOrders, totalRevenue / 1000.0, Math.max(0, covered), perBucket,
+            topItems, topUnits, records * 31 + current);
+    }
+
+    // Expires every bucket that slid out of the window since the last call
+    private void advance(long now) {
+        long target = now / bucketMillis;
+        if (target <= current) {
+            return;
+        }
+        long steps = Math.min(target - current, buckets);
+        for (long b = target - steps + 1; b <= target; b++) {
+            int slot = (int) (b % buckets);
+            totalOrders -= orders[slot];
+            totalRevenue -= revenue[slot];
+            long[] expired = units[slot];
+            for (int i = 0; i < expired.length; i++) {
+                totalUnits[i] -= expired[i];
+                expired[i] = 0;
+            }
+            orders[slot] = 0;
+            revenue[slot] = 0;
+        }
+        current = target;
+    }
+}
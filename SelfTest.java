@@ -0,0 +1,333 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Self-checking tests for the parts that are hard to watch go wrong from
+ * the UI: cart replication, shared stock, delivery zone lookup, pre-order
+ * release, the repeat-order window, campaign promo codes and confirmation
+ * mail. Each check prints one line;
+ * the run exits with status 1 if any of them failed. Everything is written
+ * to a fresh temporary directory.
+ *
+ * Usage: java com.mycompany.pizzaordersystem.SelfTest
+ */
+final class SelfTest {
+    private static final long WAIT_MILLIS = 10_000;
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+    private static int failures;
+
+    private SelfTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("napuli-selftest");
+        System.out.println("Self-test in " + dir);
+        replication(dir.resolve("replicas"));
+        sharedStock(dir.resolve("inventory-used.log"));
+        deliveryZones();
+        preOrders(dir.resolve("preorders.log"));
+        guardWindow();
+        promoCodes(dir.resolve("redeemed.bin"));
+        mail(dir.resolve("outbox-8bit"), true);
+        mail(dir.resolve("outbox-7bit"), false);
+        System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Two terminals edit the same lines concurrently; a third, and a restart, replay the logs
+    private static void replication(Path dir) throws IOException, InterruptedException {
+        System.out.println("Cart replication");
+        CartReplicator a = new CartReplicator(dir, "terminal-a");
+        CartReplicator b = new CartReplicator(dir, "terminal-b");
+        a.start();
+        b.start();
+        a.change("MARGHERITA", 2, 3.5, "MARGHERITA", Collections.emptyList());
+        b.change("MARGHERITA", 1, 3.5, "MARGHERITA", Collections.emptyList());
+        b.change("PEPPERONI", 3, 4.0, "PEPPERONI", Collections.emptyList());
+        a.change("PEPPERONI", -1, 4.0, "PEPPERONI", Collections.emptyList());
+        a.setCustomer("destination", "Al Khuwair");
+        boolean merged = await(() -> a.quantity("MARGHERITA") == 3 && b.quantity("MARGHERITA") == 3
+            && a.quantity("PEPPERONI") == 2 && b.quantity("PEPPERONI") == 2
+            && "Al Khuwair".equals(b.customer("destination")));
+        check("concurrent edits merge on both terminals", merged);
+        check("both terminals have the same digest", a.digest().equals(b.digest()));
+
+        // An entry written in two halves, split inside a two-byte character
+        byte[] torn = ("R\tnote\t" + System.currentTimeMillis() + "\tJalapeños\n").getBytes(StandardCharsets.UTF_8);
+        int split = new String(torn, StandardCharsets.UTF_8).indexOf('ñ') + 1;
+        Path writer = dir.resolve("terminal-z.crdt");
+        Files.write(writer, Arrays.copyOf(torn, split));
+        Thread.sleep(100);
+        Files.write(writer, Arrays.copyOfRange(torn, split, torn.length), StandardOpenOption.APPEND);
+        check("a character split between two reads arrives intact", await(() -> "Jalapeños".equals(b.customer("note"))));
+
+        for (int i = 0; i < 200; i++) {
+            a.change("PEPPERONI", 1, 4.0, "PEPPERONI", Collections.emptyList());
+            a.change("PEPPERONI", -1, 4.0, "PEPPERONI", Collections.emptyList());
+        }
+        long logged = Files.size(dir.resolve("terminal-a.crdt"));
+        a.compact();
+        check("compaction replaces a long log with a short snapshot", !Files.exists(dir.resolve("terminal-a.crdt"))
+            && Files.size(dir.resolve("terminal-a~1.crdt")) < logged / 10);
+        a.setCustomer("destination", "Ruwi");
+        check("the other terminal keeps up across the compaction",
+            await(() -> "Ruwi".equals(b.customer("destination")) && a.digest().equals(b.digest())));
+        String digest = a.digest();
+        a.shutdown();
+        b.shutdown();
+
+        CartReplicator c = new CartReplicator(dir, "terminal-c");
+        c.start();
+        check("a new terminal replays the logs to the same state", digest.equals(c.digest()));
+        c.shutdown();
+        CartReplicator again = new CartReplicator(dir, "terminal-a");
+        again.start();
+        check("replaying the logs again changes nothing", digest.equals(again.digest()));
+        again.shutdown();
+    }
+
+    // Two terminals sell from one stock through the usage log; a restart replays it
+    private static void sharedStock(Path log) throws IOException {
+        System.out.println("Shared stock");
+        Inventory a = stockedInventory(log);
+        Inventory b = stockedInventory(log);
+        check("a terminal takes two of five", takes(a, sample(1)) && a.getStock("Dough") == 3);
+        check("the other terminal sees it before reserving", takes(b, sample(2)) && b.getStock("Dough") == 1);
+        check("the first terminal cannot oversell", !takes(a, sample(3)));
+        b.release(sample(2));
+        check("a release is seen by the other terminal", takes(a, sample(3)) && a.getStock("Dough") == 1);
+        a.commit(sample(1));
+        a.commit(sample(3));
+        a.shutdown();
+        b.shutdown();
+        Inventory restarted = stockedInventory(log);
+        check("a restart replays what was taken", restarted.getStock("Dough") == 1);
+        restarted.shutdown();
+    }
+
+    // A grid of small zones plus one covering the whole region, far too large for the grid
+    private static void deliveryZones() {
+        System.out.println("Delivery zones");
+        List<DeliveryZones.Zone> zones = new ArrayList<>();
+        for (int row = 0; row < 100; row++) {
+            for (int col = 0; col < 100; col++) {
+                double lat = 23 + row * 0.01;
+                double lon = 58 + col * 0.01;
+                zones.add(new DeliveryZones.Zone(row + "-" + col, 1.0,
+                    new double[] {lat, lat, lat + 0.01, lat + 0.01}, new double[] {lon, lon + 0.01, lon + 0.01, lon}));
+            }
+        }
+        zones.add(new DeliveryZones.Zone("region", 2.5, new double[] {20, 20, 27, 27}, new double[] {55, 62, 62, 55}));
+        DeliveryZones index = DeliveryZones.build(zones);
+        check("an oversized zone does not stop the load", index.size() == 10_001);
+        DeliveryZones.Zone inTown = index.locate(23.505, 58.505);
+        check("a point in town gets its small zone", inTown != null && inTown.id.equals("50-50"));
+        DeliveryZones.Zone outOfTown = index.locate(21, 56);
+        check("a point outside them gets the oversized zone", outOfTown != null && outOfTown.id.equals("region"));
+        check("a point outside every zone gets none", index.locate(10, 10) == null);
+    }
+
+    // One order on each wheel level; released in order, none early, and kept across a restart
+    private static void preOrders(Path log) throws IOException, InterruptedException {
+        System.out.println("Pre-order scheduler");
+        long start = System.currentTimeMillis();
+        AtomicLong now = new AtomicLong(start);
+        List<Long> released = Collections.synchronizedList(new ArrayList<>());
+        PreOrderScheduler scheduler = new PreOrderScheduler(log, 0, order -> released.add(order.id), now::get);
+        scheduler.open();
+        scheduler.schedule(sample(1).withDeliverAt(start + 30_000));
+        scheduler.schedule(sample(2).withDeliverAt(start + 20 * 60_000));
+        scheduler.schedule(sample(3).withDeliverAt(start + 3 * HOUR_MILLIS));
+        scheduler.schedule(sample(4).withDeliverAt(start + 6 * 24 * HOUR_MILLIS));
+        check("four orders wait", scheduler.pending() == 4);
+
+        now.set(start + 20 * 60_000 - 2000);
+        check("the first order is released on time", await(() -> released.size() == 1));
+        Thread.sleep(PreOrderScheduler.TICK_MILLIS * 2);
+        check("the second order is not released early", released.size() == 1);
+        now.set(start + 4 * HOUR_MILLIS);
+        check("orders cascade down the wheels and come out in order",
+            await(() -> released.size() == 3) && released.equals(Arrays.asList(1L, 2L, 3L)));
+        scheduler.shutdown();
+
+        // Restarted a day later: the last order is still five days out
+        now.set(start + 24 * HOUR_MILLIS);
+        released.clear();
+        PreOrderScheduler restarted = new PreOrderScheduler(log, 0, order -> released.add(order.id), now::get);
+        restarted.open();
+        check("a restart keeps the order still waiting", restarted.pending() == 1 && released.isEmpty());
+        restarted.shutdown();
+
+        // Restarted after the app was down past its time: released at once, then gone from the log
+        now.set(start + 7 * 24 * HOUR_MILLIS);
+        PreOrderScheduler late = new PreOrderScheduler(log, 0, order -> released.add(order.id), now::get);
+        late.open();
+        check("a restart releases what fell due while down",
+            late.pending() == 0 && released.equals(Collections.singletonList(4L)));
+        late.shutdown();
+        released.clear();
+        PreOrderScheduler empty = new PreOrderScheduler(log, 0, order -> released.add(order.id), now::get);
+        empty.open();
+        check("a released order is not released again", empty.pending() == 0 && released.isEmpty());
+        empty.shutdown();
+    }
+
+    // Uses explicit clock readings, so the window can be crossed without waiting
+    private static void guardWindow() {
+        System.out.println("Order guard");
+        long window = 60_000;
+        OrderGuard guard = new OrderGuard(window, 6, 10, 5, 60, 100);
+        long base = System.nanoTime();
+        check("a first order passes", passes(guard, sample(1), base));
+        check("the same cart is turned away a second later", !passes(guard, sample(2), base + 1_000_000_000L));
+        check("and still just inside the window",
+            !passes(guard, sample(3), base + (window - window / 6) * 1_000_000L));
+        check("the same cart passes once the window has gone by",
+            passes(guard, sample(4), base + (window + window / 6) * 1_000_000L));
+        check("the repeats were counted", guard.duplicateCount() == 2);
+    }
+
+    // Campaign codes carry check characters: an issued code resolves, an altered one does not
+    private static void promoCodes(Path redeemed) throws IOException {
+        System.out.println("Promo codes");
+        Map<String, Double> toppings = new HashMap<>();
+        toppings.put("Olives", 0.5);
+        PromoEngine engine = new PromoEngine(Collections.singleton("MARGHERITA"),
+            new String[] {"Small", "Medium", "Large"}, toppings, redeemed);
+        engine.define("SPRING-*", "10% off", true, "s3cret");
+        engine.open();
+        String code = engine.issue("spring", 12345);
+        Order order = sample(1).withPromoCode(code.toLowerCase(Locale.ROOT));
+        check("an issued code is accepted", accepts(engine, order));
+        check("it takes 10% off", Math.abs(engine.discount(order, 10.0) - 1.0) < 1e-9);
+        engine.commit(order);
+        check("a single-use code is spent once", !accepts(engine, sample(2).withPromoCode(code)));
+        char last = code.charAt(code.length() - 1);
+        String altered = code.substring(0, code.length() - 1) + (last == '0' ? '1' : '0');
+        check("an altered code is rejected", !accepts(engine, sample(3).withPromoCode(altered)));
+        check("another serial's code is distinct", !engine.issue("SPRING", 12346).equals(code));
+        // Enough redemptions to outgrow the first index file
+        for (long serial = 20_000; serial < 60_000; serial++) {
+            Order spent = sample(serial).withPromoCode(engine.issue("SPRING", serial));
+            engine.reserve(spent);
+            engine.commit(spent);
+        }
+        check("codes are still refused once the index has grown",
+            !accepts(engine, sample(5).withPromoCode(code)) && !accepts(engine, sample(6).withPromoCode(engine.issue("SPRING", 59_999))));
+        check("and unspent ones still accepted", accepts(engine, sample(7).withPromoCode(engine.issue("SPRING", 60_000))));
+        engine.shutdown();
+
+        PromoEngine other = new PromoEngine(Collections.singleton("MARGHERITA"),
+            new String[] {"Small", "Medium", "Large"}, toppings, redeemed);
+        other.define("SPRING-*", "10% off", true, "another secret");
+        other.open();
+        check("a code does not resolve under another secret", !accepts(other, sample(4).withPromoCode(code)));
+        other.shutdown();
+    }
+
+    // Delivers one confirmation to a local sink, with and without 8BITMIME on offer
+    private static void mail(Path outbox, boolean eightBitMime) throws IOException, InterruptedException {
+        System.out.println("Confirmation mail, " + (eightBitMime ? "8BITMIME server" : "7-bit server"));
+        SmtpSink sink = SmtpSink.start(0, 0, eightBitMime);
+        ConfirmationMailer mailer = new ConfirmationMailer(outbox, "127.0.0.1", sink.getPort(),
+            "orders@napuli-oven.test", ReceiptTemplate.defaultTemplate());
+        try {
+            mailer.start();
+            mailer.enqueue(new Order(7, System.currentTimeMillis(), "Zoë", "zoe@example.test", "Qurum",
+                Collections.singletonList(new Order.Line("MARGHERITA", 1, 3.5, Collections.singletonList("Extra käse")))));
+            check("the message arrives", await(() -> !sink.getMessages().isEmpty()));
+            if (sink.getMessages().isEmpty()) {
+                return;
+            }
+            SmtpSink.Message message = sink.getMessages().get(0);
+            check("it goes to the customer", message.recipients.contains("zoe@example.test"));
+            check("it has Date and Message-ID headers",
+                message.data.contains("\r\nDate: ") && message.data.contains("\r\nMessage-ID: <order-7."));
+            if (eightBitMime) {
+                check("the body goes out as 8bit UTF-8", message.data.contains("Zoë"));
+            } else {
+                check("the body is converted to quoted-printable", message.data.contains("quoted-printable")
+                    && message.data.contains("Zo=C3=AB") && message.data.chars().allMatch(ch -> ch < 128));
+            }
+        } finally {
+            mailer.shutdown();
+            sink.close();
+        }
+    }
+
+    private static boolean passes(OrderGuard guard, Order order, long now) {
+        try {
+            guard.check(order, now);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean accepts(PromoEngine engine, Order order) {
+        try {
+            engine.reserve(order);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean takes(Inventory inventory, Order order) {
+        try {
+            inventory.reserve(order);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static Inventory stockedInventory(Path log) throws IOException {
+        Inventory inventory = new Inventory();
+        inventory.defineRecipe("MARGHERITA", "Dough:1");
+        inventory.setStock("Dough", 5, 1);
+        inventory.openUsageLog(log, "1");
+        return inventory;
+    }
+
+    // The same cart each time; only the id differs
+    private static Order sample(long id) {
+        return new Order(id, System.currentTimeMillis(), "Test Customer", "test@example.test", "Ruwi",
+            Collections.singletonList(new Order.Line("MARGHERITA", 2, 5.0, Collections.emptyList())));
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "  ok    " : "  FAIL  ") + name);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
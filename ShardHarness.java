@@ -0,0 +1,161 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures order throughput against 1, 2, 4 ... store shards, each shard a
+ * separate JVM running its own checkout pipeline and journal. The parent
+ * routes synthetic orders over the consistent-hash ring and streams each
+ * one to its shard's stdin; it also reports how evenly the ring spreads
+ * zones and how many move when a store is added.
+ *
+ * Usage: java com.mycompany.pizzaordersystem.ShardHarness [maxShards] [orders] [zones]
+ */
+final class ShardHarness {
+    private static final String[][] MENU = {
+        {"MARGHERITA", "3.500"}, {"PEPPERONI", "4.200"}, {"HAWAIIAN", "4.000"}, {"VEGGIE", "3.800"}
+    };
+    private static final int WINDOW = 16;
+
+    private ShardHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("worker")) {
+            worker(args[1], Paths.get(args[2]));
+            return;
+        }
+        int maxShards = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int orders = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int zones = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        Path dir = Files.createTempDirectory("napuli-shards");
+
+        System.out.printf("%d orders over %d zones, %d cpus, journals in %s%n",
+            orders, zones, Runtime.getRuntime().availableProcessors(), dir);
+        System.out.printf("%6s %10s %12s %10s %14s%n", "shards", "wall ms", "orders/s", "max/avg", "moved on +1");
+        StoreRouter.Ring ring = StoreRouter.Ring.EMPTY;
+        for (int shards = 1; shards <= maxShards; shards *= 2) {
+            while (ring.stores().size() < shards) {
+                ring = ring.with("store-" + ring.stores().size());
+            }
+            int[] load = new int[shards];
+            for (int z = 0; z < zones; z++) {
+                load[index(ring.storeFor("zone-" + z))]++;
+            }
+            int max = 0;
+            for (int l : load) {
+                max = Math.max(max, l);
+            }
+            StoreRouter.Ring grown = ring.with("store-" + shards);
+            int moved = 0;
+            for (int z = 0; z < zones; z++) {
+                if (!ring.storeFor("zone-" + z).equals(grown.storeFor("zone-" + z))) {
+                    moved++;
+                }
+            }
+            long wallNanos = run(ring, orders, zones, dir);
+            System.out.printf("%6d %10.0f %12.0f %10.2f %13.1f%%%n", shards, wallNanos / 1e6,
+                orders / (wallNanos / 1e9), max / ((double) zones / shards), 100.0 * moved / zones);
+        }
+    }
+
+    // Sends every order to its shard and waits until all shards have finished
+    private static long run(StoreRouter.Ring ring, int orders, int zones, Path dir) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        List<Writer> inputs = new ArrayList<>();
+        List<BufferedReader> outputs = new ArrayList<>();
+        for (String store : ring.stores()) {
+            Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ShardHarness.class.getName(), "worker", store, dir.resolve(store + ".log").toString())
+                .redirectErrorStream(true).start();
+            processes.add(process);
+            inputs.add(new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), 1 << 16));
+            // Wait for the JVM to come up so start-up time is not measured
+            BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            output.readLine();
+            outputs.add(output);
+        }
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < orders; i++) {
+            String zone = "zone-" + random.nextInt(zones);
+            inputs.get(index(ring.storeFor(zone))).write(zone + "\t" + random.nextInt(MENU.length) + "\n");
+        }
+        for (Writer input : inputs) {
+            input.close();
+        }
+        for (Process process : processes) {
+            process.waitFor();
+        }
+        long elapsed = System.nanoTime() - start;
+        for (BufferedReader output : outputs) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                System.out.println("  " + line);
+            }
+        }
+        return elapsed;
+    }
+
+    private static void worker(String store, Path journal) throws IOException, InterruptedException {
+        Map<String, Double> menu = new HashMap<>();
+        for (String[] item : MENU) {
+            menu.put(item[0], Double.valueOf(item[1]));
+        }
+        StoreRouter router = new StoreRouter(menu, rule -> (order, subtotal) -> 0.0, order -> order.destination);
+        router.addStore(store, Collections.emptyMap(), Collections.emptyList());
+        CheckoutPipeline pipeline = new CheckoutPipeline(new KitchenQueue(), journal);
+        pipeline.setStoreRouter(router);
+        System.out.println("ready");
+        System.out.flush();
+
+        // Stay well under the pipeline's in-flight limit so no order is turned away as busy
+        Semaphore window = new Semaphore(WINDOW);
+        AtomicLong failed = new AtomicLong();
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16);
+        String line;
+        while ((line = in.readLine()) != null) {
+            int tab = line.indexOf('\t');
+            String[] item = MENU[Integer.parseInt(line.substring(tab + 1))];
+            Order order = new Order(CheckoutPipeline.nextOrderId(), System.currentTimeMillis(), "Harness",
+                "harness@napuli-oven.local", line.substring(0, tab),
+                Collections.singletonList(new Order.Line(item[0], 2, Double.parseDouble(item[1]), null)));
+            window.acquire();
+            CompletableFuture<Order> placed = pipeline.submit(order);
+            placed.whenComplete((priced, error) -> {
+                if (error != null) {
+                    failed.incrementAndGet();
+                }
+                window.release();
+            });
+        }
+        window.acquire(WINDOW);
+        pipeline.shutdown();
+        if (failed.get() > 0) {
+            System.out.println(store + ": " + failed.get() + " orders failed");
+        }
+    }
+
+    private static int index(String store) {
+        return Integer.parseInt(store.substring(store.indexOf('-') + 1));
+    }
+}
@@ -0,0 +1,165 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tiny in-process SMTP server that accepts every message and keeps it in
+ * memory. Stands in for a real relay during local testing; start it with
+ * -Dnapuli.smtp.sink=PORT (0 picks a free port), or from SelfTest. An
+ * optional reply delay simulates a slow server, and the 8BITMIME extension
+ * can be withheld to mimic an old relay.
+ */
+final class SmtpSink implements Closeable {
+    static final class Message {
+        final String from;
+        final List<String> recipients;
+        final String data;
+
+        Message(String from, List<String> recipients, String data) {
+            this.from = from;
+            this.recipients = recipients;
+            this.data = data;
+        }
+    }
+
+    private final ServerSocket server;
+    private final ConcurrentLinkedQueue<Message> received = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final long replyDelayMillis;
+    private final boolean eightBitMime;
+    private volatile boolean running = true;
+
+    private SmtpSink(int port, long replyDelayMillis, boolean eightBitMime) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.replyDelayMillis = replyDelayMillis;
+        this.eightBitMime = eightBitMime;
+    }
+
+    static SmtpSink start(int port, long replyDelayMillis) throws IOException {
+        return start(port, replyDelayMillis, true);
+    }
+
+    static SmtpSink start(int port, long replyDelayMillis, boolean eightBitMime) throws IOException {
+        SmtpSink sink = new SmtpSink(port, replyDelayMillis, eightBitMime);
+        Thread acceptor = new Thread(sink::acceptLoop, "smtp-sink");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return sink;
+    }
+
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    List<Message> getMessages() {
+        return new ArrayList<>(received);
+    }
+
+    int getSessionCount() {
+        return sessions.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                sessions.incrementAndGet();
+                Thread session = new Thread(() -> serve(socket), "smtp-sink-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (SocketException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("SMTP sink accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII)) {
+            reply(out, "220 napuli-sink ready");
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                        reply(out, eightBitMime ? "250-napuli-sink\r\n250 8BITMIME" : "250 napuli-sink");
+                        break;
+                    case "HELO":
+                        reply(out, "250 napuli-sink");
+                        break;
+                    case "MAIL":
+                        from = address(line);
+                        recipients.clear();
+                        reply(out, "250 OK");
+                        break;
+                    case "RCPT":
+                        recipients.add(address(line));
+                        reply(out, "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder data = new StringBuilder();
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+                        }
+                        received.add(new Message(from, new ArrayList<>(recipients), data.toString()));
+                        reply(out, "250 OK queued");
+                        break;
+                    case "RSET":
+                        from = null;
+                        recipients.clear();
+                        reply(out, "250 OK");
+                        break;
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private void reply(Writer out, String line) throws IOException {
+        if (replyDelayMillis > 0) {
+            try {
+                Thread.sleep(replyDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        out.write(line + "\r\n");
+        out.flush();
+    }
+
+    private static String address(String line) {
+        int open = line.indexOf('<');
+        int close = line.indexOf('>', open + 1);
+        return open >= 0 && close > open ? line.substring(open + 1, close) : line.substring(line.indexOf(':') + 1).trim();
+    }
+}
@@ -0,0 +1,44 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wall-clock breakdown of start-up, from JVM launch to a usable window.
+ * Each mark() closes the phase that started at the previous mark; the
+ * first phase is the time the JVM spent before main() (class-data sharing
+ * shows up here and in every phase that loads classes).
+ *
+ * Fast start (-Dnapuli.fastStart=true) defers audio and the tabs that are
+ * not on screen until after the first paint. fast-start.sh adds an AppCDS
+ * archive recorded by a training run (-Dnapuli.startup.train=true visits
+ * every tab and exits, which is when -XX:ArchiveClassesAtExit writes it).
+ */
+final class StartupProfile {
+    private final List<String> phases = new ArrayList<>();
+    private final List<Long> nanos = new ArrayList<>();
+    private final long createdMillis = System.currentTimeMillis();
+    private long last = System.nanoTime();
+
+    /** Ends the current phase under the given name. */
+    synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        phases.add(phase);
+        nanos.add(now - last);
+        last = now;
+    }
+
+    synchronized void report(PrintStream out) {
+        // Looked up only here: the management classes cost ~20 ms to load
+        long total = Math.max(0, createdMillis - ManagementFactory.getRuntimeMXBean().getStartTime()) * 1_000_000L;
+        out.println("Start-up phases (ms):");
+        out.printf("  %-28s %8.1f%n", "JVM start to main", total / 1e6);
+        for (int i = 0; i < phases.size(); i++) {
+            out.printf("  %-28s %8.1f%n", phases.get(i), nanos.get(i) / 1e6);
+            total += nanos.get(i);
+        }
+        out.printf("  %-28s %8.1f%n", "total", total / 1e6);
+    }
+}
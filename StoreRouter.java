@@ -0,0 +1,246 @@
+package com.mycompany.pizzaordersystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Routes orders to store shards. Every store has its own menu prices,
+ * standing deals and kitchen queue. An order's routing key (its delivery
+ * zone, or the destination when no zone matches) is placed on a
+ * consistent-hash ring with VIRTUAL_NODES points per store, so adding a
+ * store moves only about 1/n of the keys. A key that is itself a store ID
+ * always goes to that store.
+ *
+ * The ring is immutable and replaced in one volatile write when stores are
+ * added; orders already routed keep their store, and nothing stops while
+ * the ring is rebuilt.
+ */
+final class StoreRouter {
+    static final class Store {
+        final String id;
+        final Map<String, Double> prices;
+        final List<CheckoutPipeline.PricingRule> deals;
+        final KitchenQueue kitchen;
+
+        Store(String id, Map<String, Double> prices, List<CheckoutPipeline.PricingRule> deals, KitchenQueue kitchen) {
+            this.id = id;
+            this.prices = prices;
+            this.deals = deals;
+            this.kitchen = kitchen;
+        }
+    }
+
+    /** Sorted ring points; lookups binary-search for the first point at or after the key's hash. */
+    static final class Ring {
+        static final Ring EMPTY = new Ring(new String[0]);
+
+        private final String[] stores;
+        private final long[] points;
+        private final int[] owners;
+
+        private Ring(String[] stores) {
+            this.stores = stores;
+            int count = stores.length * VIRTUAL_NODES;
+            long[] hashes = new long[count];
+            Integer[] order = new Integer[count];
+            for (int s = 0; s < stores.length; s++) {
+                for (int v = 0; v < VIRTUAL_NODES; v++) {
+                    hashes[s * VIRTUAL_NODES + v] = hash(stores[s] + "#" + v);
+                    order[s * VIRTUAL_NODES + v] = s * VIRTUAL_NODES + v;
+                }
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+            points = new long[count];
+            owners = new int[count];
+            for (int i = 0; i < count; i++) {
+                points[i] = hashes[order[i]];
+                owners[i] = order[i] / VIRTUAL_NODES;
+            }
+        }
+
+        Ring with(String store) {
+            if (Arrays.asList(stores).contains(store)) {
+                return this;
+            }
+            String[] more = Arrays.copyOf(stores, stores.length + 1);
+            more[stores.length] = store;
+            return new Ring(more);
+        }
+
+        /** Store owning the key, or null on an empty ring. */
+        String storeFor(String key) {
+            if (points.length == 0) {
+                return null;
+            }
+            int i = Arrays.binarySearch(points, hash(key));
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return stores[owners[i == points.length ? 0 : i]];
+        }
+
+        List<String> stores() {
+            return Collections.unmodifiableList(Arrays.asList(stores));
+        }
+    }
+
+    static final int VIRTUAL_NODES = 160;
+
+    private final Map<String, Double> menuPrices;
+    private final Function<String, CheckoutPipeline.PricingRule> dealCompiler;
+    private final Function<Order, String> routingKey;
+    private final Map<String, Store> stores = new ConcurrentHashMap<>();
+    private volatile Ring ring = Ring.EMPTY;
+
+    /**
+     * menuPrices are the base prices the cart was priced with; a store's
+     * own price replaces the base and keeps any customization surcharge.
+     */
+    StoreRouter(Map<String, Double> menuPrices, Function<String, CheckoutPipeline.PricingRule> dealCompiler,
+                Function<Order, String> routingKey) {
+        this.menuPrices = menuPrices;
+        this.dealCompiler = dealCompiler;
+        this.routingKey = routingKey;
+    }
+
+    /**
+     * Reads "store\tITEM=price,ITEM=price\tdeal;deal" lines (prices and
+     * deals are optional). New stores join the ring; known stores get the
+     * new prices and deals but keep their kitchen. Safe while orders are
+     * being routed; returns the number of stores added.
+     */
+    int load(Path file) throws IOException {
+        List<String[]> definitions = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                try {
+                    String id = parts[0].trim();
+                    if (id.isEmpty()) {
+                        throw new IllegalArgumentException("missing store ID");
+                    }
+                    // Compile now so a bad line leaves every store untouched
+                    parsePrices(parts.length > 1 ? parts[1] : "");
+                    compileDeals(parts.length > 2 ? parts[2] : "");
+                    definitions.add(parts);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file.getFileName() + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        int added = 0;
+        for (String[] parts : definitions) {
+            if (addStore(parts[0].trim(), parsePrices(parts.length > 1 ? parts[1] : ""),
+                    compileDeals(parts.length > 2 ? parts[2] : ""))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /** Adds or updates a store; returns true when it is new to the ring. */
+    synchronized boolean addStore(String id, Map<String, Double> prices, List<CheckoutPipeline.PricingRule> deals) {
+        Store old = stores.get(id);
+        stores.put(id, new Store(id, prices, deals, old == null ? new KitchenQueue() : old.kitchen));
+        if (old != null) {
+            return false;
+        }
+        ring = ring.with(id);
+        return true;
+    }
+
+    Ring ring() {
+        return ring;
+    }
+
+    Store store(String id) {
+        return stores.get(id);
+    }
+
+    /** Store for the order, or null when no stores are defined. */
+    Store route(Order order) {
+        String key = routingKey.apply(order);
+        Store pinned = stores.get(key);
+        if (pinned != null) {
+            return pinned;
+        }
+        String id = ring.storeFor(key);
+        return id == null ? null : stores.get(id);
+    }
+
+    Order reprice(Order order, Store store) {
+        List<Order.Line> lines = new ArrayList<>(order.lines.size());
+        for (Order.Line line : order.lines) {
+            Double base = menuPrices.get(line.item);
+            Double local = store.prices.get(line.item);
+            double unitPrice = base == null || local == null ? line.unitPrice : line.unitPrice - base + local;
+            lines.add(new Order.Line(line.item, line.quantity, unitPrice, line.customizations));
+        }
+        return order.withStore(store.id, lines);
+    }
+
+    private Map<String, Double> parsePrices(String column) {
+        Map<String, Double> prices = new HashMap<>();
+        for (String entry : column.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int eq = entry.lastIndexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("expected ITEM=price, got '" + entry.trim() + "'");
+            }
+            String item = entry.substring(0, eq).trim();
+            if (!menuPrices.containsKey(item)) {
+                throw new IllegalArgumentException("unknown menu item '" + item + "'");
+            }
+            double price = Double.parseDouble(entry.substring(eq + 1).trim());
+            if (price < 0) {
+                throw new IllegalArgumentException("negative price for " + item);
+            }
+            prices.put(item, price);
+        }
+        return prices;
+    }
+
+    private List<CheckoutPipeline.PricingRule> compileDeals(String column) {
+        List<CheckoutPipeline.PricingRule> deals = new ArrayList<>();
+        for (String rule : column.split(";")) {
+            if (!rule.trim().isEmpty()) {
+                deals.add(dealCompiler.apply(rule.trim()));
+            }
+        }
+        return deals;
+    }
+
+    // FNV-1a, then a 64-bit finalizer so similar keys spread over the ring
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,141 @@
+package com.mycompany.pizzaordersystem;
+
+import javax.swing.*;
+import java.awt.*;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Light/dark palette with named color tokens. Components are bound to a token
+ * once when they are created; switching the theme re-applies the bound colors
+ * in place instead of reinstalling every UI delegate.
+ */
+final class Theme {
+    enum Token {
+        BACKGROUND_TOP,
+        BACKGROUND_BOTTOM,
+        SURFACE,
+        DIALOG,
+        CARD,
+        TAB_BACKGROUND,
+        TEXT_STRONG,
+        TEXT_BODY,
+        TEXT_SUBTLE,
+        TEXT_MUTED
+    }
+
+    private static final Color[] LIGHT = palette(
+        new Color(247, 247, 247),     // BACKGROUND_TOP
+        new Color(230, 230, 230),     // BACKGROUND_BOTTOM
+        Color.WHITE,                  // SURFACE
+        Color.WHITE,                  // DIALOG
+        new Color(255, 255, 255, 200),// CARD
+        new Color(236, 240, 241),     // TAB_BACKGROUND
+        new Color(44, 62, 80),        // TEXT_STRONG
+        new Color(52, 73, 94),        // TEXT_BODY
+        new Color(100, 100, 100),     // TEXT_SUBTLE
+        Color.GRAY                    // TEXT_MUTED
+    );
+
+    private static final Color[] DARK = palette(
+        new Color(60, 60, 60),        // BACKGROUND_TOP
+        new Color(40, 40, 40),        // BACKGROUND_BOTTOM
+        new Color(50, 50, 50),        // SURFACE
+        new Color(60, 60, 60),        // DIALOG
+        new Color(70, 70, 70, 200),   // CARD
+        new Color(44, 62, 80),        // TAB_BACKGROUND
+        Color.WHITE,                  // TEXT_STRONG
+        new Color(220, 220, 220),     // TEXT_BODY
+        Color.LIGHT_GRAY,             // TEXT_SUBTLE
+        Color.LIGHT_GRAY              // TEXT_MUTED
+    );
+
+    private final List<Binding> bindings = new ArrayList<>();
+    private final List<Runnable> listeners = new ArrayList<>();
+    private Color[] colors = LIGHT;
+    private boolean dark;
+    private int pruneThreshold = 256;
+
+    boolean isDark() {
+        return dark;
+    }
+
+    Color get(Token token) {
+        return colors[token.ordinal()];
+    }
+
+    /** Sets the component's foreground from the token and keeps it in sync with later switches. */
+    <T extends JComponent> T foreground(T component, Token token) {
+        component.setForeground(get(token));
+        bind(component, token, true);
+        return component;
+    }
+
+    /** Sets the component's background from the token and keeps it in sync with later switches. */
+    <T extends JComponent> T background(T component, Token token) {
+        component.setBackground(get(token));
+        bind(component, token, false);
+        return component;
+    }
+
+    /** Registers a callback run after every switch, e.g. to drop cached skins. */
+    void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /** Switches palettes and re-applies every live binding; returns the time taken in nanoseconds. */
+    long setDark(boolean dark) {
+        long start = System.nanoTime();
+        this.dark = dark;
+        colors = dark ? DARK : LIGHT;
+        int live = 0;
+        for (int i = 0; i < bindings.size(); i++) {
+            Binding binding = bindings.get(i);
+            JComponent component = binding.component.get();
+            if (component == null) {
+                continue;
+            }
+            Color color = colors[binding.token.ordinal()];
+            if (binding.foreground) {
+                component.setForeground(color);
+            } else {
+                component.setBackground(color);
+            }
+            bindings.set(live++, binding);
+        }
+        bindings.subList(live, bindings.size()).clear();
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void bind(JComponent component, Token token, boolean foreground) {
+        if (bindings.size() >= pruneThreshold) {
+            // Rebuilt panels leave collected components behind; sweep them before growing
+            bindings.removeIf(binding -> binding.component.get() == null);
+            pruneThreshold = Math.max(256, bindings.size() * 2);
+        }
+        bindings.add(new Binding(component, token, foreground));
+    }
+
+    private static Color[] palette(Color... colors) {
+        if (colors.length != Token.values().length) {
+            throw new IllegalArgumentException("Palette must define every token");
+        }
+        return colors;
+    }
+
+    private static final class Binding {
+        final WeakReference<JComponent> component;
+        final Token token;
+        final boolean foreground;
+
+        Binding(JComponent component, Token token, boolean foreground) {
+            this.component = new WeakReference<>(component);
+            this.token = token;
+            this.foreground = foreground;
+        }
+    }
+}
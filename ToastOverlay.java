@@ -0,0 +1,122 @@
+package com.mycompany.pizzaordersystem;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.ArrayDeque;
+
+/**
+ * Lightweight toast painted on the frame's layered pane. One instance is
+ * reused for every notification; messages are queued, and a repeat of the
+ * message on screen (or of the last queued one) is merged into a counter
+ * instead of producing another toast.
+ */
+final class ToastOverlay extends JComponent {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 50;
+    private static final int DISPLAY_MS = 2000;
+    private static final int MAX_QUEUED = 16;
+    private static final Color TOAST_COLOR = new Color(50, 50, 50, 200);
+    private static final Font TOAST_FONT = new Font("Segoe UI", Font.PLAIN, 14);
+
+    private final RenderCache renderCache;
+    private final ArrayDeque<Notice> queue = new ArrayDeque<>();
+    private final Timer dismissTimer;
+    private Notice current;
+    private String currentText;
+
+    ToastOverlay(RenderCache renderCache) {
+        this.renderCache = renderCache;
+        setOpaque(false);
+        setVisible(false);
+        setFont(TOAST_FONT);
+        setForeground(Color.WHITE);
+        dismissTimer = new Timer(DISPLAY_MS, e -> showNext());
+        dismissTimer.setRepeats(false);
+    }
+
+    /** Installs the overlay above the content of the given frame, centred however the frame is resized. */
+    void install(JFrame frame) {
+        JLayeredPane layeredPane = frame.getLayeredPane();
+        layeredPane.add(this, JLayeredPane.POPUP_LAYER);
+        layeredPane.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                center();
+            }
+        });
+    }
+
+    /** Queues a message; must be called on the EDT. */
+    void toast(String message) {
+        if (current != null && current.message.equals(message)) {
+            // Same message still on screen: bump the counter and restart the timer
+            current.count++;
+            currentText = null;
+            dismissTimer.restart();
+            repaint();
+            return;
+        }
+        Notice last = queue.peekLast();
+        if (last != null && last.message.equals(message)) {
+            last.count++;
+            return;
+        }
+        if (queue.size() >= MAX_QUEUED) {
+            queue.pollFirst();
+        }
+        queue.addLast(new Notice(message));
+        if (current == null) {
+            showNext();
+        }
+    }
+
+    private void showNext() {
+        current = queue.pollFirst();
+        currentText = null;
+        if (current == null) {
+            setVisible(false);
+            return;
+        }
+        center();
+        setVisible(true);
+        repaint();
+        dismissTimer.restart();
+    }
+
+    private void center() {
+        Container parent = getParent();
+        if (parent != null) {
+            setBounds((parent.getWidth() - WIDTH) / 2, (parent.getHeight() - HEIGHT) / 2, WIDTH, HEIGHT);
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (current == null) {
+            return;
+        }
+        renderCache.paintRoundRect(g, this, TOAST_COLOR, 15);
+        if (currentText == null) {
+            currentText = current.count > 1 ? current.message + " ×" + current.count : current.message;
+        }
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(getFont());
+        g2d.setColor(getForeground());
+        FontMetrics fm = g2d.getFontMetrics();
+        int x = Math.max(15, (getWidth() - fm.stringWidth(currentText)) / 2);
+        int y = (getHeight() - fm.getHeight()) / 2 + fm.getAscent();
+        g2d.drawString(currentText, x, y);
+    }
+
+    private static final class Notice {
+        final String message;
+        int count = 1;
+
+        Notice(String message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+#!/bin/sh
+# Fast-start launcher. The first launch on a machine (or after a JDK
+# update) is a training run that records every class the app loads into
+# an AppCDS archive; later launches map that archive instead of parsing
+# and verifying those classes again, and defer audio and off-screen tabs.
+#
+# Usage: ./fast-start.sh [app.jar]
+#   The application must be packaged as a jar: AppCDS does not archive
+#   classes loaded from class directories. A missing jar is built from
+#   the sources next to this script (javac into build/classes, then
+#   jar cfe), which also retires the archive recorded from the old one.
+#   NAPULI_CDS   archive location (default: napuli-cds.jsa)
+
+CP="${1:-pizza-order-system.jar}"
+ARCHIVE="${NAPULI_CDS:-napuli-cds.jsa}"
+MAIN=com.mycompany.pizzaordersystem.PizzaOrderSystem
+SRC=$(dirname "$0")
+
+if [ ! -f "$CP" ]; then
+    rm -rf "$SRC/build/classes" && mkdir -p "$SRC/build/classes" || exit 1
+    javac -encoding UTF-8 -d "$SRC/build/classes" "$SRC"/*.java || exit 1
+    for dir in icons images sounds; do
+        if [ -d "$SRC/$dir" ]; then
+            cp -R "$SRC/$dir" "$SRC/build/classes/" || exit 1
+        fi
+    done
+    jar cfe "$CP" "$MAIN" -C "$SRC/build/classes" . || exit 1
+    rm -f "$ARCHIVE"
+fi
+
+if [ ! -f "$ARCHIVE" ]; then
+    java -XX:ArchiveClassesAtExit="$ARCHIVE" -Dnapuli.startup.train=true -cp "$CP" "$MAIN" || exit 1
+fi
+# A stale or foreign archive is ignored with a warning, never fatal
+exec java -XX:SharedArchiveFile="$ARCHIVE" -Dnapuli.fastStart=true -cp "$CP" "$MAIN"